@@ -0,0 +1,70 @@
+package org.renci.canvas.primer.commons;
+
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Decodes VCF INFO attribute values as handed out by htsjdk's CommonInfo.getAttribute(), either a List or the raw comma delimited
+ * string, without going through the per value boxing of getAttributeAsDoubleList(). Missing and "." values decode to 0.
+ */
+public class InfoAttributeDecoder {
+
+    /**
+     * decodes up to target.length values into target, positions without a value are left untouched
+     */
+    public static void decodeDoubles(Object value, double[] target) {
+        decode(value, target.length, (a, i) -> target[i] = parseDouble(a));
+    }
+
+    /**
+     * decodes up to target.length values into target, positions without a value are left untouched
+     */
+    public static void decodeInts(Object value, int[] target) {
+        decode(value, target.length, (a, i) -> target[i] = parseInt(a));
+    }
+
+    public static String firstValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            return values.isEmpty() ? null : String.valueOf(values.get(0));
+        }
+        String s = value.toString();
+        int idx = s.indexOf(',');
+        return idx == -1 ? s : s.substring(0, idx);
+    }
+
+    public static double parseDouble(String value) {
+        return value == null || value.isEmpty() || ".".equals(value) ? 0D : Double.parseDouble(value);
+    }
+
+    public static int parseInt(String value) {
+        return value == null || value.isEmpty() || ".".equals(value) ? 0 : Integer.parseInt(value);
+    }
+
+    private static void decode(Object value, int length, ObjIntConsumer<String> consumer) {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof List) {
+            List<?> values = (List<?>) value;
+            for (int i = 0; i < length && i < values.size(); i++) {
+                consumer.accept(String.valueOf(values.get(i)), i);
+            }
+            return;
+        }
+        String s = value.toString();
+        int from = 0;
+        for (int i = 0; i < length && from <= s.length(); i++) {
+            int to = s.indexOf(',', from);
+            if (to == -1) {
+                to = s.length();
+            }
+            consumer.accept(s.substring(from, to), i);
+            from = to + 1;
+        }
+    }
+
+}
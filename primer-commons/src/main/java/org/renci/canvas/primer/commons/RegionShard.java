@@ -0,0 +1,108 @@
+package org.renci.canvas.primer.commons;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+
+/**
+ * A contig window of a tabix indexed VCF. A record belongs to the shard its start position falls in, so records overlapping a
+ * window boundary are only seen once.
+ */
+public class RegionShard {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionShard.class);
+
+    // largest position addressable through the tabix binning scheme
+    private static final int MAX_POSITION = (1 << 29) - 1;
+
+    private final String contig;
+
+    private final int start;
+
+    private final int end;
+
+    public RegionShard(String contig, int start, int end) {
+        super();
+        this.contig = contig;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * splits the VCF into windows using the contig lengths from the header, or one shard per indexed contig if the header has no
+     * sequence dictionary
+     */
+    public static List<RegionShard> split(File vcf, File index, int windowSize) {
+        List<RegionShard> ret = new ArrayList<>();
+
+        SAMSequenceDictionary sequenceDictionary = null;
+        try (VCFFileReader reader = new VCFFileReader(vcf, index, true)) {
+            sequenceDictionary = reader.getFileHeader().getSequenceDictionary();
+        }
+
+        if (sequenceDictionary != null && !sequenceDictionary.isEmpty()) {
+            for (SAMSequenceRecord sequenceRecord : sequenceDictionary.getSequences()) {
+                for (int i = 1; i <= sequenceRecord.getSequenceLength(); i += windowSize) {
+                    ret.add(new RegionShard(sequenceRecord.getSequenceName(), i,
+                            Math.min(i + windowSize - 1, sequenceRecord.getSequenceLength())));
+                }
+            }
+        } else {
+            Index tabixIndex = IndexFactory.loadIndex(index.getAbsolutePath());
+            for (String sequenceName : tabixIndex.getSequenceNames()) {
+                ret.add(new RegionShard(sequenceName, 1, MAX_POSITION));
+            }
+        }
+
+        logger.info("{} split into {} shards", vcf.getName(), ret.size());
+        return ret;
+    }
+
+    /**
+     * streams the shard's records to the consumer through a reader of its own, so shards can be read concurrently
+     */
+    public long forEach(File vcf, File index, Consumer<VariantContext> consumer) {
+        long ret = 0;
+        try (VCFFileReader reader = new VCFFileReader(vcf, index, true);
+                CloseableIterator<VariantContext> iter = reader.query(contig, start, end)) {
+            while (iter.hasNext()) {
+                VariantContext variantContext = iter.next();
+                if (variantContext.getStart() >= start) {
+                    consumer.accept(variantContext);
+                    ret++;
+                }
+            }
+        }
+        return ret;
+    }
+
+    public String getContig() {
+        return contig;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RegionShard [contig=%s, start=%s, end=%s]", contig, start, end);
+    }
+
+}
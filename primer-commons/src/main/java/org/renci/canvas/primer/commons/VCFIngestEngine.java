@@ -0,0 +1,107 @@
+package org.renci.canvas.primer.commons;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Function;
+
+import org.renci.canvas.primer.commons.metrics.Counter;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.renci.canvas.primer.commons.pipeline.Pipeline;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.renci.canvas.primer.commons.pipeline.PipelineStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Skeleton of the release file loaders, files are read concurrently on a "read" stage which emits items of type R to a separate
+ * "persist" stage. Subclasses decide what an item is, {@link #readVCF(File, Function)} takes care of the record loop for VCF input.
+ *
+ * Records read are reported to {@link PrimerMetrics} as &lt;name&gt;.records.
+ */
+public abstract class VCFIngestEngine<R> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VCFIngestEngine.class);
+
+    private final String name;
+
+    protected final Counter records;
+
+    /**
+     * handles the records of one file
+     */
+    @FunctionalInterface
+    public interface VCFRecordHandler {
+
+        public void handle(VariantContext variantContext) throws Exception;
+
+    }
+
+    public VCFIngestEngine(String name) {
+        super();
+        this.name = name;
+        this.records = PrimerMetrics.counter(PrimerMetrics.name(name, "records"));
+    }
+
+    /**
+     * reads a file and emits its items, called concurrently for different files
+     */
+    protected abstract void read(File file, PipelineEmitter<R> emitter) throws Exception;
+
+    /**
+     * persists an item, called concurrently by the persist workers
+     */
+    protected abstract void persist(R item) throws Exception;
+
+    /**
+     * ingests the files through a {@link Pipeline}, returns the number of items emitted by the read stage
+     */
+    public long ingest(List<File> files, int threads) throws PrimerException {
+        logger.debug("ENTERING ingest(List<File>, int)");
+
+        PipelineStats stats = Pipeline.<File> from(name, emitter -> files.forEach(emitter::emit))
+                .flatMap("read", Math.min(threads, Math.max(files.size(), 1)), this::read).sink("persist", threads, this::persist)
+                .run();
+
+        long total = stats.getStage("read").getEmitted();
+        logger.info("{}: {} items read from {} files", name, total, files.size());
+        return total;
+    }
+
+    /**
+     * hands each record of the VCF to the handler the factory returns for the file's header, returns the number of records
+     */
+    protected long readVCF(File vcfFile, Function<VCFHeader, VCFRecordHandler> handlerFactory) throws Exception {
+        logger.debug("ENTERING readVCF(File, Function<VCFHeader, VCFRecordHandler>)");
+        long start = System.currentTimeMillis();
+
+        long count = 0;
+        try (VCFFileReader vcfFileReader = new VCFFileReader(vcfFile, false)) {
+
+            VCFRecordHandler handler = handlerFactory.apply(vcfFileReader.getFileHeader());
+
+            for (VariantContext variantContext : vcfFileReader) {
+                count++;
+                records.inc();
+                handler.handle(variantContext);
+
+                if ((count % 100000) == 0) {
+                    logger.info("{}: {} records", vcfFile.getName(), count);
+                }
+            }
+
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("{}: {} records in {} seconds", vcfFile.getName(), count, (end - start) / 1000);
+        return count;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+}
@@ -0,0 +1,240 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.metrics.Counter;
+import org.renci.canvas.primer.commons.metrics.Histogram;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.renci.canvas.primer.commons.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers entities and, per batch, loads them into a transaction scoped temp table which is then merged into the target table with
+ * set-based statements. Subclasses only decide how rows get into the staging table.
+ *
+ * Batches of full buffers are written by the thread that filled them, concurrently with each other. {@link #flush()} also waits for
+ * those in flight, so once it returns every row handed to the writer before the call has been committed.
+ *
+ * Rows, batch sizes and per batch write time are reported to {@link PrimerMetrics} as bulk.&lt;schema.table&gt;.rows/batch-size/write.
+ */
+public abstract class AbstractStagingBulkWriter<T> implements BulkWriter<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStagingBulkWriter.class);
+
+    private final DataSource dataSource;
+
+    private final EntityTableMapping<T> mapping;
+
+    private final MergeStrategy mergeStrategy;
+
+    private final int batchSize;
+
+    private final Object lock = new Object();
+
+    // writes hold the read lock, flush takes the write lock to wait for the batches in flight
+    private final ReentrantReadWriteLock inFlight = new ReentrantReadWriteLock();
+
+    private final List<BulkWriter<?>> upstream = new CopyOnWriteArrayList<>();
+
+    private List<T> buffer;
+
+    private final AtomicLong rowCount = new AtomicLong();
+
+    private final Counter rowCounter;
+
+    private final Histogram batchSizes;
+
+    private final Timer writeTimer;
+
+    public AbstractStagingBulkWriter(DataSource dataSource, EntityTableMapping<T> mapping, MergeStrategy mergeStrategy, int batchSize) {
+        super();
+        this.dataSource = dataSource;
+        this.mapping = mapping;
+        this.mergeStrategy = mergeStrategy;
+        this.batchSize = batchSize;
+        this.buffer = new ArrayList<>(batchSize);
+        String prefix = PrimerMetrics.name("bulk", mapping.getQualifiedTableName());
+        this.rowCounter = PrimerMetrics.counter(PrimerMetrics.name(prefix, "rows"));
+        this.batchSizes = PrimerMetrics.histogram(PrimerMetrics.name(prefix, "batch-size"));
+        this.writeTimer = PrimerMetrics.timer(PrimerMetrics.name(prefix, "write"));
+    }
+
+    protected abstract void loadStagingTable(Connection connection, String stagingTable, List<Object[]> rows)
+            throws SQLException, IOException;
+
+    @Override
+    public void write(T entity) throws PrimerException {
+        // held from taking the entity until its batch, if it fills one, has been written, so a flush can't slip in between
+        inFlight.readLock().lock();
+        try {
+            List<T> batch = null;
+            synchronized (lock) {
+                buffer.add(entity);
+                if (buffer.size() >= batchSize) {
+                    batch = buffer;
+                    buffer = new ArrayList<>(batchSize);
+                }
+            }
+            if (batch != null) {
+                writeBatch(batch);
+            }
+        } finally {
+            inFlight.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void writeAll(Collection<T> entities) throws PrimerException {
+        for (T entity : entities) {
+            write(entity);
+        }
+    }
+
+    @Override
+    public void flush() throws PrimerException {
+        inFlight.writeLock().lock();
+        try {
+            List<T> batch = null;
+            synchronized (lock) {
+                if (!buffer.isEmpty()) {
+                    batch = buffer;
+                    buffer = new ArrayList<>(batchSize);
+                }
+            }
+            if (batch != null) {
+                writeBatch(batch);
+            }
+        } finally {
+            inFlight.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public BulkWriter<T> dependsOn(BulkWriter<?> upstream) {
+        this.upstream.add(upstream);
+        return this;
+    }
+
+    @Override
+    public void close() throws PrimerException {
+        flush();
+        logger.info("{} rows written to {}", rowCount.get(), mapping.getQualifiedTableName());
+    }
+
+    protected void writeBatch(List<T> batch) throws PrimerException {
+        logger.debug("ENTERING writeBatch(List<T>)");
+        long start = System.currentTimeMillis();
+
+        for (BulkWriter<?> writer : upstream) {
+            writer.flush();
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            List<T> assigned = Collections.emptyList();
+            try {
+                assigned = mapping.assignIds(connection, batch);
+
+                List<Object[]> rows = batch.stream().map(a -> mapping.toRow(a)).collect(Collectors.toList());
+
+                String stagingTable = String.format("primer_staging_%s", mapping.getTable());
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(String.format("create temp table %s (like %s including defaults) on commit drop", stagingTable,
+                            mapping.getQualifiedTableName()));
+                }
+
+                loadStagingTable(connection, stagingTable, rows);
+
+                try (Statement stmt = connection.createStatement()) {
+                    for (String sql : mergeStatements(stagingTable)) {
+                        stmt.executeUpdate(sql);
+                    }
+                }
+
+                connection.commit();
+                rowCount.addAndGet(rows.size());
+                rowCounter.inc(rows.size());
+                batchSizes.update(rows.size());
+            } catch (SQLException | IOException e) {
+                connection.rollback();
+                mapping.clearIds(assigned);
+                throw new PrimerException(e.getMessage(), e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+
+        long end = System.currentTimeMillis();
+        writeTimer.record(end - start, TimeUnit.MILLISECONDS);
+        logger.debug("wrote {} rows to {} in {} ms", batch.size(), mapping.getQualifiedTableName(), end - start);
+    }
+
+    protected List<String> mergeStatements(String stagingTable) {
+        List<String> ret = new ArrayList<>();
+
+        String target = mapping.getQualifiedTableName();
+        List<String> columns = mapping.getColumnNames();
+        List<String> keys = mapping.getKeyColumnNames();
+        String columnList = String.join(", ", columns);
+        String stagedColumnList = columns.stream().map(a -> String.format("s.%s", a)).collect(Collectors.joining(", "));
+
+        if (mergeStrategy == MergeStrategy.APPEND) {
+            ret.add(String.format("insert into %s (%s) select %s from %s s", target, columnList, stagedColumnList, stagingTable));
+            return ret;
+        }
+
+        String keyJoin = keys.stream().map(a -> String.format("t.%s = s.%s", a, a)).collect(Collectors.joining(" and "));
+
+        if (mergeStrategy == MergeStrategy.UPSERT) {
+            List<String> nonKeyColumns = columns.stream().filter(a -> !keys.contains(a)).collect(Collectors.toList());
+            if (!nonKeyColumns.isEmpty()) {
+                ret.add(String.format("update %s t set %s from %s s where %s", target,
+                        nonKeyColumns.stream().map(a -> String.format("%s = s.%s", a, a)).collect(Collectors.joining(", ")), stagingTable,
+                        keyJoin));
+            }
+        }
+
+        ret.add(String.format("insert into %s (%s) select distinct on (%s) %s from %s s where not exists (select 1 from %s t where %s)",
+                target, columnList, keys.stream().map(a -> String.format("s.%s", a)).collect(Collectors.joining(", ")), stagedColumnList,
+                stagingTable, target, keyJoin));
+
+        return ret;
+    }
+
+    public EntityTableMapping<T> getMapping() {
+        return mapping;
+    }
+
+    public MergeStrategy getMergeStrategy() {
+        return mergeStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+}
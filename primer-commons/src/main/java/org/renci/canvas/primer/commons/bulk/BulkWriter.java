@@ -0,0 +1,26 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.util.Collection;
+
+import org.renci.canvas.primer.commons.PrimerException;
+
+public interface BulkWriter<T> extends AutoCloseable {
+
+    public void write(T entity) throws PrimerException;
+
+    public void writeAll(Collection<T> entities) throws PrimerException;
+
+    public void flush() throws PrimerException;
+
+    public long getRowCount();
+
+    /**
+     * flushes upstream before each batch of this writer, ie the writer of the rows this writer's rows reference, so a batch never
+     * commits ahead of the rows its foreign keys point to
+     */
+    public BulkWriter<T> dependsOn(BulkWriter<?> upstream);
+
+    @Override
+    public void close() throws PrimerException;
+
+}
@@ -0,0 +1,64 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.collections4.CollectionUtils;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceReference;
+import org.postgresql.PGConnection;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class BulkWriterFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkWriterFactory.class);
+
+    public static final String CANVAS_DATA_SOURCE_NAME = "canvasNoJTA";
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    public static DataSource lookupDataSource(BundleContext bundleContext, String name) throws PrimerException {
+        try {
+            Collection<ServiceReference<DataSource>> references = bundleContext.getServiceReferences(DataSource.class,
+                    String.format("(osgi.jndi.service.name=%s)", name));
+            if (CollectionUtils.isEmpty(references)) {
+                throw new PrimerException(String.format("DataSource not found: %s", name));
+            }
+            return bundleContext.getService(references.iterator().next());
+        } catch (InvalidSyntaxException e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+    }
+
+    public static <T> BulkWriter<T> create(DataSource dataSource, Class<T> entityClass, MergeStrategy mergeStrategy)
+            throws PrimerException {
+        return create(dataSource, entityClass, mergeStrategy, DEFAULT_BATCH_SIZE);
+    }
+
+    public static <T> BulkWriter<T> create(DataSource dataSource, Class<T> entityClass, MergeStrategy mergeStrategy, int batchSize)
+            throws PrimerException {
+        EntityTableMapping<T> mapping = EntityTableMapping.of(entityClass);
+        if (mergeStrategy != MergeStrategy.APPEND && mapping.getKeyColumnNames().isEmpty()) {
+            throw new PrimerException(String.format("%s has no natural key to merge on, only APPEND is supported", entityClass.getName()));
+        }
+        boolean copySupported = false;
+        try (Connection connection = dataSource.getConnection()) {
+            copySupported = connection.isWrapperFor(PGConnection.class);
+        } catch (SQLException | AbstractMethodError e) {
+            logger.warn("unable to unwrap connection, falling back to JDBC batching: {}", e.getMessage());
+        }
+        if (copySupported) {
+            logger.info("using COPY for {}", mapping.getQualifiedTableName());
+            return new CopyBulkWriter<>(dataSource, mapping, mergeStrategy, batchSize);
+        }
+        logger.info("using JDBC batch inserts for {}", mapping.getQualifiedTableName());
+        return new JDBCBatchBulkWriter<>(dataSource, mapping, mergeStrategy, batchSize);
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+/**
+ * Streams the staging rows through the PostgreSQL COPY protocol (text format).
+ */
+public class CopyBulkWriter<T> extends AbstractStagingBulkWriter<T> {
+
+    public CopyBulkWriter(DataSource dataSource, EntityTableMapping<T> mapping, MergeStrategy mergeStrategy, int batchSize) {
+        super(dataSource, mapping, mergeStrategy, batchSize);
+    }
+
+    @Override
+    protected void loadStagingTable(Connection connection, String stagingTable, List<Object[]> rows) throws SQLException, IOException {
+        StringBuilder sb = new StringBuilder(rows.size() * 64);
+        for (Object[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    sb.append('\t');
+                }
+                appendValue(sb, row[i]);
+            }
+            sb.append('\n');
+        }
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        copyManager.copyIn(
+                String.format("copy %s (%s) from stdin", stagingTable, String.join(", ", getMapping().getColumnNames())),
+                new StringReader(sb.toString()));
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("\\N");
+            return;
+        }
+        if (value instanceof Boolean) {
+            sb.append((Boolean) value ? 't' : 'f');
+            return;
+        }
+        if (value instanceof Number || value instanceof Timestamp) {
+            sb.append(value.toString());
+            return;
+        }
+        String s = value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+
+}
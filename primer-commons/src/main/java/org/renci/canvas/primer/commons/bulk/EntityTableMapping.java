@@ -0,0 +1,362 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.persistence.Column;
+import javax.persistence.ElementCollection;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.apache.commons.lang3.StringUtils;
+import org.renci.canvas.primer.commons.PrimerException;
+
+/**
+ * Flattens the JPA annotations of an entity class into an ordered list of insertable columns so rows can be written with plain
+ * JDBC/COPY instead of going through the EntityManager.
+ *
+ * Only the entity's own table is covered, @ManyToMany and @ElementCollection join tables are skipped, so entities that own such
+ * associations (eg ReferenceClinicalAssertion's versions and submission assertions) still have to be saved through their DAO.
+ */
+public class EntityTableMapping<T> {
+
+    private static final Map<Class<?>, EntityTableMapping<?>> cache = new ConcurrentHashMap<>();
+
+    private final Class<T> entityClass;
+
+    private String schema;
+
+    private String table;
+
+    private final List<String> columnNames = new ArrayList<>();
+
+    private final List<Function<T, Object>> accessors = new ArrayList<>();
+
+    private final List<String> keyColumnNames = new ArrayList<>();
+
+    private final Map<String, String> fieldColumnNames = new ConcurrentHashMap<>();
+
+    private Field idField;
+
+    private String sequenceName;
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityTableMapping<T> of(Class<T> entityClass) throws PrimerException {
+        EntityTableMapping<?> ret = cache.get(entityClass);
+        if (ret == null) {
+            ret = new EntityTableMapping<>(entityClass);
+            cache.putIfAbsent(entityClass, ret);
+        }
+        return (EntityTableMapping<T>) ret;
+    }
+
+    private EntityTableMapping(Class<T> entityClass) throws PrimerException {
+        super();
+        this.entityClass = entityClass;
+
+        Table tableAnnotation = entityClass.getAnnotation(Table.class);
+        if (tableAnnotation == null) {
+            throw new PrimerException(String.format("%s is not annotated with @Table", entityClass.getName()));
+        }
+        this.schema = tableAnnotation.schema();
+        this.table = StringUtils.isNotEmpty(tableAnnotation.name()) ? tableAnnotation.name() : entityClass.getSimpleName();
+
+        List<Class<?>> hierarchy = new ArrayList<>();
+        Class<?> c = entityClass;
+        while (c != null && c != Object.class) {
+            if (c == entityClass || c.isAnnotationPresent(MappedSuperclass.class)) {
+                hierarchy.add(c);
+            }
+            c = c.getSuperclass();
+        }
+        Collections.reverse(hierarchy);
+
+        for (Class<?> clazz : hierarchy) {
+            for (Field field : clazz.getDeclaredFields()) {
+                addField(field);
+            }
+        }
+
+        if (columnNames.isEmpty()) {
+            throw new PrimerException(String.format("no insertable columns found on %s", entityClass.getName()));
+        }
+
+    }
+
+    private void addField(Field field) throws PrimerException {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isAnnotationPresent(Transient.class)
+                || field.isAnnotationPresent(OneToMany.class) || field.isAnnotationPresent(ManyToMany.class)
+                || field.isAnnotationPresent(ElementCollection.class)) {
+            return;
+        }
+        field.setAccessible(true);
+
+        if (field.isAnnotationPresent(EmbeddedId.class)) {
+            Class<?> embeddableClass = field.getType();
+            if (!embeddableClass.isAnnotationPresent(Embeddable.class)) {
+                throw new PrimerException(String.format("%s is not @Embeddable", embeddableClass.getName()));
+            }
+            for (Field embeddedField : embeddableClass.getDeclaredFields()) {
+                if (Modifier.isStatic(embeddedField.getModifiers())) {
+                    continue;
+                }
+                embeddedField.setAccessible(true);
+                String columnName = columnName(embeddedField);
+                fieldColumnNames.put(embeddedField.getName(), columnName);
+                keyColumnNames.add(columnName);
+                addColumn(columnName, entity -> {
+                    Object key = read(field, entity);
+                    return key != null ? convert(embeddedField, read(embeddedField, key)) : null;
+                });
+            }
+            return;
+        }
+
+        if (field.isAnnotationPresent(ManyToOne.class) || field.isAnnotationPresent(OneToOne.class)) {
+            OneToOne oneToOne = field.getAnnotation(OneToOne.class);
+            if (oneToOne != null && StringUtils.isNotEmpty(oneToOne.mappedBy())) {
+                return;
+            }
+            // no @JoinColumn means the JPA default, <field>_id
+            JoinColumn joinColumn = field.getAnnotation(JoinColumn.class);
+            if (joinColumn != null && !joinColumn.insertable()) {
+                return;
+            }
+            Field referencedIdField = findIdField(field.getType());
+            if (referencedIdField == null) {
+                throw new PrimerException(String.format("no @Id found on %s", field.getType().getName()));
+            }
+            String columnName = joinColumn != null && StringUtils.isNotEmpty(joinColumn.name()) ? joinColumn.name()
+                    : String.format("%s_id", field.getName());
+            fieldColumnNames.put(field.getName(), columnName);
+            addColumn(columnName, entity -> {
+                Object referenced = read(field, entity);
+                return referenced != null ? read(referencedIdField, referenced) : null;
+            });
+            return;
+        }
+
+        Column column = field.getAnnotation(Column.class);
+        if (column != null && !column.insertable()) {
+            return;
+        }
+
+        String columnName = columnName(field);
+        fieldColumnNames.put(field.getName(), columnName);
+
+        if (field.isAnnotationPresent(Id.class)) {
+            if (field.isAnnotationPresent(GeneratedValue.class)) {
+                // a generated id is new on every row, so it is not a merge key
+                this.idField = field;
+                SequenceGenerator sequenceGenerator = field.getAnnotation(SequenceGenerator.class);
+                if (sequenceGenerator != null && StringUtils.isNotEmpty(sequenceGenerator.sequenceName())) {
+                    String sequenceSchema = StringUtils.isNotEmpty(sequenceGenerator.schema()) ? sequenceGenerator.schema() : schema;
+                    this.sequenceName = StringUtils.isNotEmpty(sequenceSchema)
+                            ? String.format("%s.%s", sequenceSchema, sequenceGenerator.sequenceName())
+                            : sequenceGenerator.sequenceName();
+                }
+            } else {
+                keyColumnNames.add(columnName);
+            }
+        }
+
+        addColumn(columnName, entity -> convert(field, read(field, entity)));
+    }
+
+    private void addColumn(String columnName, Function<T, Object> accessor) {
+        // @MapsId & friends map the same column twice, first one wins
+        if (columnNames.contains(columnName)) {
+            return;
+        }
+        columnNames.add(columnName);
+        accessors.add(accessor);
+    }
+
+    private static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column != null && StringUtils.isNotEmpty(column.name())) {
+            return column.name();
+        }
+        return field.getName();
+    }
+
+    private static Field findIdField(Class<?> clazz) {
+        Class<?> c = clazz;
+        while (c != null && c != Object.class) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class)) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+            c = c.getSuperclass();
+        }
+        return null;
+    }
+
+    private static Object read(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object convert(Field field, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Enum) {
+            Enumerated enumerated = field.getAnnotation(Enumerated.class);
+            return enumerated != null && enumerated.value() == EnumType.STRING ? ((Enum<?>) value).name() : ((Enum<?>) value).ordinal();
+        }
+        if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+            return new Timestamp(((Date) value).getTime());
+        }
+        return value;
+    }
+
+    public boolean isGeneratedId() {
+        return idField != null && sequenceName != null;
+    }
+
+    /**
+     * pulls a block of identifiers from the entity's sequence in a single round trip and assigns them to the entities that
+     * don't have one yet, returns the entities that were assigned
+     */
+    public List<T> assignIds(Connection connection, List<T> entities) throws SQLException {
+        List<T> unassigned = new ArrayList<>();
+        if (!isGeneratedId()) {
+            return unassigned;
+        }
+        for (T entity : entities) {
+            if (read(idField, entity) == null) {
+                unassigned.add(entity);
+            }
+        }
+        if (unassigned.isEmpty()) {
+            return unassigned;
+        }
+        long[] ids = nextIds(connection, unassigned.size());
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                Object id = idField.getType().equals(Integer.class) ? Integer.valueOf((int) ids[i]) : Long.valueOf(ids[i]);
+                idField.set(unassigned.get(i), id);
+            }
+        } catch (IllegalAccessException e) {
+            throw new SQLException(e);
+        }
+        return unassigned;
+    }
+
+    /**
+     * pulls count values from the entity's sequence in a single round trip
+     */
+    public long[] nextIds(Connection connection, int count) throws SQLException {
+        if (!isGeneratedId()) {
+            throw new SQLException(String.format("%s has no sequence generated id", entityClass.getName()));
+        }
+        long[] ret = new long[count];
+        String sql = String.format("select nextval('%s') from generate_series(1, ?)", sequenceName);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                int idx = 0;
+                while (rs.next()) {
+                    ret[idx++] = rs.getLong(1);
+                }
+                if (idx != count) {
+                    throw new SQLException(String.format("expected %d values from %s, got %d", count, sequenceName, idx));
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * undoes {@link #assignIds(Connection, List)}, sequence values are not transactional so entities of a rolled back batch would
+     * otherwise carry ids that were never written
+     */
+    public void clearIds(List<T> entities) {
+        if (idField == null) {
+            return;
+        }
+        for (T entity : entities) {
+            try {
+                idField.set(entity, null);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    public Object[] toRow(T entity) {
+        Object[] row = new Object[accessors.size()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = accessors.get(i).apply(entity);
+        }
+        return row;
+    }
+
+    public String getColumnName(String fieldName) {
+        return fieldColumnNames.get(fieldName);
+    }
+
+    public String getQualifiedTableName() {
+        return StringUtils.isNotEmpty(schema) ? String.format("%s.%s", schema, table) : table;
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    /**
+     * the natural key columns, ie the @EmbeddedId columns or a non generated @Id, empty when the only id is generated
+     */
+    public List<String> getKeyColumnNames() {
+        return Collections.unmodifiableList(keyColumnNames);
+    }
+
+    public String getSequenceName() {
+        return sequenceName;
+    }
+
+}
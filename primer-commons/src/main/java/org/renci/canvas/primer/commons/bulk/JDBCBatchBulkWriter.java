@@ -0,0 +1,45 @@
+package org.renci.canvas.primer.commons.bulk;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+/**
+ * Fallback for connections that can't be unwrapped to a {@link org.postgresql.PGConnection}, loads the staging table with
+ * batched INSERTs.
+ */
+public class JDBCBatchBulkWriter<T> extends AbstractStagingBulkWriter<T> {
+
+    private static final int JDBC_BATCH_SIZE = 1000;
+
+    public JDBCBatchBulkWriter(DataSource dataSource, EntityTableMapping<T> mapping, MergeStrategy mergeStrategy, int batchSize) {
+        super(dataSource, mapping, mergeStrategy, batchSize);
+    }
+
+    @Override
+    protected void loadStagingTable(Connection connection, String stagingTable, List<Object[]> rows) throws SQLException {
+        List<String> columns = getMapping().getColumnNames();
+        String sql = String.format("insert into %s (%s) values (%s)", stagingTable, String.join(", ", columns),
+                String.join(", ", Collections.nCopies(columns.size(), "?")));
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int count = 0;
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    ps.setObject(i + 1, row[i]);
+                }
+                ps.addBatch();
+                if (++count % JDBC_BATCH_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            if (count % JDBC_BATCH_SIZE != 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.renci.canvas.primer.commons.bulk;
+
+public enum MergeStrategy {
+
+    /**
+     * plain INSERT ... SELECT from the staging table, caller guarantees the rows are new
+     */
+    APPEND,
+
+    /**
+     * insert only the rows whose natural key is not already present in the target table, entities with only a generated id
+     * are rejected
+     */
+    INSERT_MISSING,
+
+    /**
+     * update the non-key columns of rows already present, then insert the missing ones, same natural key requirement as
+     * INSERT_MISSING
+     */
+    UPSERT;
+
+}
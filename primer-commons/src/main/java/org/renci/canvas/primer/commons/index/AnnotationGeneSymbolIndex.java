@@ -0,0 +1,109 @@
+package org.renci.canvas.primer.commons.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.annotation.model.AnnotationGene;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneSynonym;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.metrics.Counter;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * gene symbol -> AnnotationGene, built from every preferred name and synonym up front so loaders resolve symbols without a query per
+ * line. Lookups are case insensitive, preferred names win over synonyms and a synonym shared by more than one gene resolves to nothing.
+ * The index is immutable once loaded, so it is shared between threads without locking.
+ */
+public class AnnotationGeneSymbolIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnnotationGeneSymbolIndex.class);
+
+    private static final Counter lookups = PrimerMetrics.counter("index.gene-symbol.lookups");
+
+    private static final Counter misses = PrimerMetrics.counter("index.gene-symbol.misses");
+
+    private final Map<String, AnnotationGene> preferredNames;
+
+    private final Map<String, AnnotationGene> synonyms;
+
+    private AnnotationGeneSymbolIndex(Map<String, AnnotationGene> preferredNames, Map<String, AnnotationGene> synonyms) {
+        super();
+        this.preferredNames = Collections.unmodifiableMap(preferredNames);
+        this.synonyms = Collections.unmodifiableMap(synonyms);
+    }
+
+    public static AnnotationGeneSymbolIndex load(CANVASDAOBeanService canvasDAOBeanService) throws PrimerException {
+        logger.debug("ENTERING load(CANVASDAOBeanService)");
+        long start = System.currentTimeMillis();
+
+        Map<String, AnnotationGene> preferredNames = new HashMap<>();
+        Map<String, AnnotationGene> synonyms = new HashMap<>();
+        Set<String> ambiguousSynonyms = new HashSet<>();
+        try {
+            List<AnnotationGene> allAnnotationGenes = canvasDAOBeanService.getAnnotationGeneDAO().findAll();
+            Map<Integer, AnnotationGene> annotationGeneMap = new HashMap<>();
+            for (AnnotationGene annotationGene : allAnnotationGenes) {
+                annotationGeneMap.put(annotationGene.getId(), annotationGene);
+                if (annotationGene.getPreferredName() != null) {
+                    preferredNames.putIfAbsent(annotationGene.getPreferredName().toUpperCase(), annotationGene);
+                }
+            }
+
+            List<AnnotationGeneSynonym> allAnnotationGeneSynonyms = canvasDAOBeanService.getAnnotationGeneSynonymDAO().findAll();
+            for (AnnotationGeneSynonym annotationGeneSynonym : allAnnotationGeneSynonyms) {
+                AnnotationGene annotationGene = annotationGeneMap.get(annotationGeneSynonym.getGene().getId());
+                String synonym = annotationGeneSynonym.getId().getSynonym();
+                if (annotationGene == null || synonym == null) {
+                    continue;
+                }
+                String key = synonym.toUpperCase();
+                if (ambiguousSynonyms.contains(key)) {
+                    continue;
+                }
+                AnnotationGene existing = synonyms.putIfAbsent(key, annotationGene);
+                if (existing != null && !existing.getId().equals(annotationGene.getId())) {
+                    synonyms.remove(key);
+                    ambiguousSynonyms.add(key);
+                }
+            }
+        } catch (Exception e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("indexed {} preferred names and {} synonyms ({} ambiguous) in {} seconds", preferredNames.size(), synonyms.size(),
+                ambiguousSynonyms.size(), (end - start) / 1000D);
+        return new AnnotationGeneSymbolIndex(preferredNames, synonyms);
+    }
+
+    /**
+     * returns the gene whose preferred name, or else unambiguous synonym, is the symbol, null if there is none
+     */
+    public AnnotationGene get(String symbol) {
+        if (symbol == null) {
+            return null;
+        }
+        lookups.inc();
+        String key = symbol.trim().toUpperCase();
+        AnnotationGene ret = preferredNames.get(key);
+        if (ret == null) {
+            ret = synonyms.get(key);
+        }
+        if (ret == null) {
+            misses.inc();
+        }
+        return ret;
+    }
+
+    public int size() {
+        return preferredNames.size() + synonyms.size();
+    }
+
+}
@@ -0,0 +1,525 @@
+package org.renci.canvas.primer.commons.index;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.sql.DataSource;
+
+import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.bulk.EntityTableMapping;
+import org.renci.canvas.primer.commons.bulk.MergeStrategy;
+import org.renci.canvas.primer.commons.metrics.Counter;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.renci.canvas.primer.commons.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (genomeRef, genomeRefSeq, position, ref, alt, variantType) -> LocatedVariant id
+ *
+ * Keys are never stored, only a 64 bit fingerprint plus a 24 bit check hash, packed next to the id (max 2^40) in open addressing
+ * tables that live in direct (off-heap) buffers, 16 bytes per slot. Tables double once they pass the 0.7 load factor, so the
+ * footprint is {@link #getAllocatedBytes()}, between 1.4 and 2.9 times 16 bytes per variant, not 16 bytes per variant.
+ *
+ * Misses are inserted outside of the segment locks, concurrent callers resolving the same variant wait on the one insert in flight.
+ * A miss takes its id from a block pulled off the loc_var sequence and is published right away, the row itself goes through a
+ * buffered bulk writer. Rows referencing a resolved variant must not commit before it: bulk writers declare
+ * {@code dependsOn(index.getWriter())}, DAO writes call {@link #flush()} first.
+ */
+public class LocatedVariantIndex implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocatedVariantIndex.class);
+
+    private static final int SEGMENT_BITS = 8;
+
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+
+    private static final int SLOT_BYTES = 16;
+
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 26;
+
+    private static final long ID_MASK = (1L << 40) - 1;
+
+    private static final float LOAD_FACTOR = 0.7F;
+
+    private static final int FETCH_SIZE = 50000;
+
+    private static final int ID_BLOCK_SIZE = 1000;
+
+    private static final Counter lookups = PrimerMetrics.counter("index.located-variant.lookups");
+
+    private static final Timer misses = PrimerMetrics.timer("index.located-variant.misses");
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    private final Map<Key, CompletableFuture<Long>> pending = new ConcurrentHashMap<>();
+
+    private final Object idLock = new Object();
+
+    private long[] idBlock = new long[0];
+
+    private int idBlockPosition;
+
+    private DataSource dataSource;
+
+    private BulkWriter<LocatedVariant> writer;
+
+    public LocatedVariantIndex() {
+        this(1 << 20);
+    }
+
+    public LocatedVariantIndex(long expectedSize) {
+        super();
+        int segmentCapacity = tableSizeFor((long) (expectedSize / SEGMENT_COUNT / LOAD_FACTOR) + 1);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    /**
+     * streams the existing loc_var rows for the given genome refs into a new index
+     */
+    public static LocatedVariantIndex load(DataSource dataSource, Integer... genomeRefIds) throws PrimerException {
+        logger.debug("ENTERING load(DataSource, Integer...)");
+        long start = System.currentTimeMillis();
+
+        EntityTableMapping<LocatedVariant> mapping = EntityTableMapping.of(LocatedVariant.class);
+        String sql = String.format("select %s, %s, %s, %s, %s, %s, %s from %s where %s = ?", mapping.getColumnName("id"),
+                mapping.getColumnName("genomeRef"), mapping.getColumnName("genomeRefSeq"), mapping.getColumnName("position"),
+                mapping.getColumnName("ref"), mapping.getColumnName("seq"), mapping.getColumnName("variantType"),
+                mapping.getQualifiedTableName(), mapping.getColumnName("genomeRef"));
+
+        LocatedVariantIndex ret = null;
+        try (Connection connection = dataSource.getConnection()) {
+
+            long estimate = 0;
+            try (PreparedStatement ps = connection.prepareStatement("select reltuples::bigint from pg_class where oid = ?::regclass")) {
+                ps.setString(1, mapping.getQualifiedTableName());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        estimate = rs.getLong(1);
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("could not estimate size of {}", mapping.getQualifiedTableName());
+            }
+            ret = new LocatedVariantIndex(Math.max(estimate, 1 << 20));
+            ret.setDataSource(dataSource);
+            ret.setWriter(BulkWriterFactory.create(dataSource, LocatedVariant.class, MergeStrategy.APPEND));
+
+            boolean autoCommit = connection.getAutoCommit();
+            // postgres only honors the fetch size (ie, uses a cursor) outside of autocommit
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setFetchSize(FETCH_SIZE);
+                for (Integer genomeRefId : genomeRefIds) {
+                    ps.setInt(1, genomeRefId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ret.put(rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getInt(4), rs.getString(5), rs.getString(6),
+                                    rs.getString(7));
+                        }
+                    }
+                    logger.info("indexed genomeRef {}: {} variants, {} MB of direct memory allocated", genomeRefId, ret.size(),
+                            ret.getAllocatedBytes() >>> 20);
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("duration = {}", String.format("%s seconds", (end - start) / 1000D));
+        return ret;
+    }
+
+    public Long get(LocatedVariant locatedVariant) {
+        return get(locatedVariant.getGenomeRef().getId(), locatedVariant.getGenomeRefSeq().getId(), locatedVariant.getPosition(),
+                locatedVariant.getRef(), locatedVariant.getSeq(), locatedVariant.getVariantType().getId());
+    }
+
+    public Long get(Integer genomeRefId, String genomeRefSeqAccession, Integer position, String ref, String alt, String variantType) {
+        long fingerprint = fingerprint(genomeRefId, genomeRefSeqAccession, position, ref, alt, variantType);
+        int check = check(genomeRefId, genomeRefSeqAccession, position, ref, alt, variantType);
+        return segmentFor(fingerprint).get(fingerprint, check);
+    }
+
+    public void put(LocatedVariant locatedVariant) {
+        if (locatedVariant.getId() == null) {
+            throw new IllegalArgumentException("LocatedVariant has not been persisted");
+        }
+        put(locatedVariant.getId(), locatedVariant.getGenomeRef().getId(), locatedVariant.getGenomeRefSeq().getId(),
+                locatedVariant.getPosition(), locatedVariant.getRef(), locatedVariant.getSeq(), locatedVariant.getVariantType().getId());
+    }
+
+    public void put(long id, Integer genomeRefId, String genomeRefSeqAccession, Integer position, String ref, String alt,
+            String variantType) {
+        long fingerprint = fingerprint(genomeRefId, genomeRefSeqAccession, position, ref, alt, variantType);
+        int check = check(genomeRefId, genomeRefSeqAccession, position, ref, alt, variantType);
+        segmentFor(fingerprint).put(fingerprint, check, id);
+    }
+
+    /**
+     * looks the variant up and, if missing, runs the loader without holding any segment lock and publishes its id afterwards,
+     * concurrent callers missing the same variant wait for that one loader, loader calls are timed as index.located-variant.misses
+     */
+    public Long computeIfAbsent(LocatedVariant locatedVariant, Callable<Long> loader) throws Exception {
+        long fingerprint = fingerprint(locatedVariant.getGenomeRef().getId(), locatedVariant.getGenomeRefSeq().getId(),
+                locatedVariant.getPosition(), locatedVariant.getRef(), locatedVariant.getSeq(), locatedVariant.getVariantType().getId());
+        int check = check(locatedVariant.getGenomeRef().getId(), locatedVariant.getGenomeRefSeq().getId(), locatedVariant.getPosition(),
+                locatedVariant.getRef(), locatedVariant.getSeq(), locatedVariant.getVariantType().getId());
+        lookups.inc();
+
+        Segment segment = segmentFor(fingerprint);
+        Long ret = segment.get(fingerprint, check);
+        if (ret != null) {
+            return ret;
+        }
+
+        Key key = new Key(fingerprint, check);
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        CompletableFuture<Long> inFlight = pending.putIfAbsent(key, future);
+        if (inFlight != null) {
+            try {
+                return inFlight.get();
+            } catch (ExecutionException e) {
+                throw new PrimerException(e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        try {
+            // the previous owner of the key may have published between our lookup and the claim
+            ret = segment.get(fingerprint, check);
+            if (ret == null) {
+                try (Timer.Context context = misses.time()) {
+                    ret = loader.call();
+                }
+                segment.put(fingerprint, check, ret);
+            }
+            future.complete(ret);
+            return ret;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key, future);
+        }
+    }
+
+    /**
+     * returns the given LocatedVariant with its id set, a variant missing from the index gets the next id of the current block and is
+     * queued on the index's bulk writer, so it is only committed once the writer fills a batch or is flushed
+     */
+    public LocatedVariant resolve(LocatedVariant locatedVariant) throws PrimerException {
+        if (writer == null || dataSource == null) {
+            throw new PrimerException("LocatedVariantIndex has no writer, build it with load()");
+        }
+        try {
+            locatedVariant.setId(computeIfAbsent(locatedVariant, () -> {
+                if (locatedVariant.getId() != null) {
+                    // already persisted, only missing from the index
+                    return locatedVariant.getId();
+                }
+                locatedVariant.setId(nextId());
+                writer.write(locatedVariant);
+                return locatedVariant.getId();
+            }));
+        } catch (PrimerException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+        return locatedVariant;
+    }
+
+    /**
+     * commits every variant resolved so far, including batches other threads are writing
+     */
+    public void flush() throws PrimerException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void close() throws PrimerException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private long nextId() throws PrimerException {
+        synchronized (idLock) {
+            if (idBlockPosition == idBlock.length) {
+                try (Connection connection = dataSource.getConnection()) {
+                    idBlock = EntityTableMapping.of(LocatedVariant.class).nextIds(connection, ID_BLOCK_SIZE);
+                } catch (SQLException e) {
+                    throw new PrimerException(e.getMessage(), e);
+                }
+                idBlockPosition = 0;
+            }
+            return idBlock[idBlockPosition++];
+        }
+    }
+
+    public long size() {
+        long ret = 0;
+        for (Segment segment : segments) {
+            ret += segment.size();
+        }
+        return ret;
+    }
+
+    /**
+     * direct memory held by the segment tables, ie the allocated capacity (empty slots included) times 16 bytes, the tables are the
+     * only storage as keys are reduced to the fingerprint/check hashes and collisions probe within the table
+     */
+    public long getAllocatedBytes() {
+        long ret = 0;
+        for (Segment segment : segments) {
+            ret += (long) segment.capacity() * SLOT_BYTES;
+        }
+        return ret;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public BulkWriter<LocatedVariant> getWriter() {
+        return writer;
+    }
+
+    public void setWriter(BulkWriter<LocatedVariant> writer) {
+        this.writer = writer;
+    }
+
+    private Segment segmentFor(long fingerprint) {
+        return segments[(int) (fingerprint >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static int tableSizeFor(long n) {
+        int ret = 16;
+        while (ret < n && ret < MAX_SEGMENT_CAPACITY) {
+            ret <<= 1;
+        }
+        return ret;
+    }
+
+    private static long fingerprint(Integer genomeRefId, String accession, Integer position, String ref, String alt, String type) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ genomeRefId) * 0x100000001b3L;
+        h = (h ^ position) * 0x100000001b3L;
+        h = hash(h, accession, 0x100000001b3L);
+        h = hash(h, ref, 0x100000001b3L);
+        h = hash(h, alt, 0x100000001b3L);
+        h = hash(h, type, 0x100000001b3L);
+        h = mix(h);
+        // 0 marks an empty slot
+        return h != 0 ? h : 1;
+    }
+
+    private static int check(Integer genomeRefId, String accession, Integer position, String ref, String alt, String type) {
+        long h = 0x9e3779b97f4a7c15L;
+        h = hash(h, type, 0xc6a4a7935bd1e995L);
+        h = hash(h, alt, 0xc6a4a7935bd1e995L);
+        h = hash(h, ref, 0xc6a4a7935bd1e995L);
+        h = hash(h, accession, 0xc6a4a7935bd1e995L);
+        h = (h ^ position) * 0xc6a4a7935bd1e995L;
+        h = (h ^ genomeRefId) * 0xc6a4a7935bd1e995L;
+        return (int) (mix(h) & 0xFFFFFF);
+    }
+
+    private static long hash(long h, String value, long prime) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                h = (h ^ value.charAt(i)) * prime;
+            }
+        }
+        // field separator, keeps ("AC","G") and ("A","CG") apart
+        return (h ^ 0x1F) * prime;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class Key {
+
+        private final long fingerprint;
+
+        private final int check;
+
+        public Key(long fingerprint, int check) {
+            super();
+            this.fingerprint = fingerprint;
+            this.check = check;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fingerprint ^ (fingerprint >>> 32)) * 31 + check;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return fingerprint == other.fingerprint && check == other.check;
+        }
+
+    }
+
+    private static class Segment {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private ByteBuffer table;
+
+        private int capacity;
+
+        private int size;
+
+        public Segment(int capacity) {
+            super();
+            this.capacity = capacity;
+            this.table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+        }
+
+        public int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public int capacity() {
+            lock.readLock().lock();
+            try {
+                return capacity;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public Long get(long fingerprint, int check) {
+            lock.readLock().lock();
+            try {
+                return find(fingerprint, check);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public void put(long fingerprint, int check, long id) {
+            lock.writeLock().lock();
+            try {
+                insert(fingerprint, check, id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private Long find(long fingerprint, int check) {
+            int mask = capacity - 1;
+            int slot = (int) fingerprint & mask;
+            while (true) {
+                long current = table.getLong(slot * SLOT_BYTES);
+                if (current == 0) {
+                    return null;
+                }
+                if (current == fingerprint) {
+                    long value = table.getLong(slot * SLOT_BYTES + 8);
+                    if ((int) (value >>> 40) == check) {
+                        return value & ID_MASK;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void insert(long fingerprint, int check, long id) {
+            if (id > ID_MASK) {
+                throw new IllegalArgumentException(String.format("id too large for index: %s", id));
+            }
+            if (size + 1 > capacity * LOAD_FACTOR) {
+                resize();
+            }
+            int mask = capacity - 1;
+            int slot = (int) fingerprint & mask;
+            long value = ((long) check << 40) | id;
+            while (true) {
+                long current = table.getLong(slot * SLOT_BYTES);
+                if (current == 0) {
+                    table.putLong(slot * SLOT_BYTES, fingerprint);
+                    table.putLong(slot * SLOT_BYTES + 8, value);
+                    size++;
+                    return;
+                }
+                if (current == fingerprint && (int) (table.getLong(slot * SLOT_BYTES + 8) >>> 40) == check) {
+                    table.putLong(slot * SLOT_BYTES + 8, value);
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void resize() {
+            if (capacity >= MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("LocatedVariantIndex segment is full");
+            }
+            ByteBuffer oldTable = table;
+            int oldCapacity = capacity;
+            capacity = oldCapacity << 1;
+            table = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+            size = 0;
+            for (int i = 0; i < oldCapacity; i++) {
+                long fingerprint = oldTable.getLong(i * SLOT_BYTES);
+                if (fingerprint != 0) {
+                    long value = oldTable.getLong(i * SLOT_BYTES + 8);
+                    int mask = capacity - 1;
+                    int slot = (int) fingerprint & mask;
+                    while (table.getLong(slot * SLOT_BYTES) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table.putLong(slot * SLOT_BYTES, fingerprint);
+                    table.putLong(slot * SLOT_BYTES + 8, value);
+                    size++;
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.renci.canvas.primer.commons.job;
+
+import java.util.Date;
+import java.util.concurrent.Future;
+
+public class PrimerJob {
+
+    private final Long id;
+
+    private final String name;
+
+    private final String dataSource;
+
+    private final Date submitted = new Date();
+
+    private volatile Date started;
+
+    private volatile Date finished;
+
+    private volatile PrimerJobState state = PrimerJobState.QUEUED;
+
+    private volatile String message;
+
+    private volatile boolean cancelRequested;
+
+    private volatile Future<?> future;
+
+    public PrimerJob(Long id, String name, String dataSource) {
+        super();
+        this.id = id;
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public Date getSubmitted() {
+        return submitted;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    public PrimerJobState getState() {
+        return state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * seconds since the job started, up to when it finished
+     */
+    public Long getDuration() {
+        if (started == null) {
+            return null;
+        }
+        return ((finished != null ? finished.getTime() : System.currentTimeMillis()) - started.getTime()) / 1000;
+    }
+
+    Future<?> getFuture() {
+        return future;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    void requestCancel() {
+        this.cancelRequested = true;
+    }
+
+    synchronized void start() {
+        this.started = new Date();
+        this.state = PrimerJobState.RUNNING;
+    }
+
+    synchronized boolean finish(PrimerJobState state, String message) {
+        if (this.state.isDone()) {
+            return false;
+        }
+        this.finished = new Date();
+        this.state = state;
+        this.message = message;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PrimerJob [id=%s, name=%s, dataSource=%s, state=%s, submitted=%s, started=%s, finished=%s, message=%s]", id,
+                name, dataSource, state, submitted, started, finished, message);
+    }
+
+}
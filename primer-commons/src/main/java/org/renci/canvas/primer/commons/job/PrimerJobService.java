@@ -0,0 +1,29 @@
+package org.renci.canvas.primer.commons.job;
+
+import java.util.List;
+
+/**
+ * Runs long lived command work (downloads, loaders) on a shared, sized executor instead of a new single thread executor per command.
+ * Jobs naming a data source are limited to a configured number running at once per data source, the rest stay queued until a permit
+ * frees up.
+ */
+public interface PrimerJobService {
+
+    /**
+     * @param name
+     *            shown by primer:jobs, ie "refseq:persist"
+     * @param dataSource
+     *            JNDI name of the data source the job loads into, null for jobs that are not limited
+     */
+    public PrimerJob submit(String name, String dataSource, PrimerJobTask task);
+
+    public List<PrimerJob> getJobs();
+
+    public PrimerJob getJob(Long id);
+
+    /**
+     * interrupts a running job or drops a queued one, returns false if the job is unknown or already done
+     */
+    public boolean cancel(Long id);
+
+}
@@ -0,0 +1,269 @@
+package org.renci.canvas.primer.commons.job;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PrimerJobServiceImpl implements PrimerJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrimerJobServiceImpl.class);
+
+    private Integer poolSize = 8;
+
+    private Integer maxJobsPerDataSource = 1;
+
+    private Integer retainedJobs = 100;
+
+    private ExecutorService executor;
+
+    private final AtomicLong jobIds = new AtomicLong();
+
+    private final Map<Long, PrimerJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * guarded by itself, a job only reaches the executor once its data source has a free slot so waiting jobs never hold a pool thread
+     */
+    private final Map<String, DataSourceSlots> dataSourceSlots = new HashMap<>();
+
+    public PrimerJobServiceImpl() {
+        super();
+    }
+
+    public void init() {
+        logger.debug("ENTERING init()");
+        AtomicLong threadIds = new AtomicLong();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, String.format("primer-job-%d", threadIds.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newFixedThreadPool(poolSize, threadFactory);
+        logger.info("poolSize: {}, maxJobsPerDataSource: {}", poolSize, maxJobsPerDataSource);
+    }
+
+    public void destroy() {
+        logger.debug("ENTERING destroy()");
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public PrimerJob submit(String name, String dataSource, PrimerJobTask task) {
+        logger.debug("ENTERING submit(String, String, PrimerJobTask)");
+        PrimerJob job = new PrimerJob(jobIds.incrementAndGet(), name, dataSource);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            prune();
+        }
+        logger.info("submitted: {}", job.toString());
+        if (job.getDataSource() == null) {
+            dispatch(job, task);
+            return job;
+        }
+        synchronized (dataSourceSlots) {
+            DataSourceSlots slots = dataSourceSlots.computeIfAbsent(job.getDataSource(), a -> new DataSourceSlots());
+            if (slots.running < maxJobsPerDataSource) {
+                slots.running++;
+                dispatch(job, task);
+            } else {
+                slots.waiting.add(new QueuedJob(job, task));
+            }
+        }
+        return job;
+    }
+
+    private void dispatch(PrimerJob job, PrimerJobTask task) {
+        JobFutureTask future = new JobFutureTask(job, task);
+        job.setFuture(future);
+        executor.execute(future);
+    }
+
+    /**
+     * hands the slot of a finished job to the next waiting job of its data source, if there is one
+     */
+    private void release(String dataSource) {
+        synchronized (dataSourceSlots) {
+            DataSourceSlots slots = dataSourceSlots.get(dataSource);
+            QueuedJob next = slots.waiting.poll();
+            // jobs cancelled while waiting are already finished
+            while (next != null && next.job.getState().isDone()) {
+                next = slots.waiting.poll();
+            }
+            if (next != null) {
+                dispatch(next.job, next.task);
+            } else {
+                slots.running--;
+            }
+        }
+    }
+
+    private void run(PrimerJob job, PrimerJobTask task) {
+        String threadName = Thread.currentThread().getName();
+        try {
+            if (job.isCancelRequested()) {
+                job.finish(PrimerJobState.CANCELLED, "cancelled while queued");
+                return;
+            }
+            Thread.currentThread().setName(String.format("%s-%s", threadName, job.getName()));
+            job.start();
+            logger.info("started: {}", job.toString());
+            task.run();
+            job.finish(job.isCancelRequested() ? PrimerJobState.CANCELLED : PrimerJobState.SUCCEEDED, null);
+        } catch (InterruptedException e) {
+            job.finish(PrimerJobState.CANCELLED, e.getMessage());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            job.finish(job.isCancelRequested() ? PrimerJobState.CANCELLED : PrimerJobState.FAILED, e.getMessage());
+        } finally {
+            Thread.interrupted();
+            Thread.currentThread().setName(threadName);
+            if (job.getDataSource() != null) {
+                release(job.getDataSource());
+            }
+            logger.info("finished: {}", job.toString());
+        }
+    }
+
+    @Override
+    public List<PrimerJob> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    @Override
+    public PrimerJob getJob(Long id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    @Override
+    public boolean cancel(Long id) {
+        logger.debug("ENTERING cancel(Long)");
+        PrimerJob job = getJob(id);
+        if (job == null || job.getState().isDone()) {
+            return false;
+        }
+        job.requestCancel();
+        if (job.getFuture() != null) {
+            job.getFuture().cancel(true);
+        }
+        if (job.getState() == PrimerJobState.QUEUED) {
+            job.finish(PrimerJobState.CANCELLED, "cancelled while queued");
+        }
+        return true;
+    }
+
+    /**
+     * drops the oldest finished jobs once more than retainedJobs are held
+     */
+    private void prune() {
+        int excess = jobs.size() - retainedJobs;
+        Iterator<PrimerJob> iter = jobs.values().iterator();
+        while (excess > 0 && iter.hasNext()) {
+            if (iter.next().getState().isDone()) {
+                iter.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * a job cancelled while sitting in the executor's queue never reaches run(), so its slot is released here instead, whichever of
+     * run() and done() claims the job first owns the release
+     */
+    private class JobFutureTask extends FutureTask<Void> {
+
+        private final PrimerJob job;
+
+        private final AtomicBoolean claimed;
+
+        private JobFutureTask(PrimerJob job, PrimerJobTask task) {
+            this(job, task, new AtomicBoolean());
+        }
+
+        private JobFutureTask(PrimerJob job, PrimerJobTask task, AtomicBoolean claimed) {
+            super(() -> {
+                if (claimed.compareAndSet(false, true)) {
+                    PrimerJobServiceImpl.this.run(job, task);
+                }
+            }, null);
+            this.job = job;
+            this.claimed = claimed;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled() && claimed.compareAndSet(false, true)) {
+                job.finish(PrimerJobState.CANCELLED, "cancelled while queued");
+                if (job.getDataSource() != null) {
+                    release(job.getDataSource());
+                }
+                logger.info("finished: {}", job.toString());
+            }
+        }
+
+    }
+
+    private static class DataSourceSlots {
+
+        private int running;
+
+        private final Deque<QueuedJob> waiting = new ArrayDeque<>();
+
+    }
+
+    private static class QueuedJob {
+
+        private final PrimerJob job;
+
+        private final PrimerJobTask task;
+
+        private QueuedJob(PrimerJob job, PrimerJobTask task) {
+            this.job = job;
+            this.task = task;
+        }
+
+    }
+
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public Integer getMaxJobsPerDataSource() {
+        return maxJobsPerDataSource;
+    }
+
+    public void setMaxJobsPerDataSource(Integer maxJobsPerDataSource) {
+        this.maxJobsPerDataSource = maxJobsPerDataSource;
+    }
+
+    public Integer getRetainedJobs() {
+        return retainedJobs;
+    }
+
+    public void setRetainedJobs(Integer retainedJobs) {
+        this.retainedJobs = retainedJobs;
+    }
+
+}
@@ -0,0 +1,11 @@
+package org.renci.canvas.primer.commons.job;
+
+public enum PrimerJobState {
+
+    QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+    public boolean isDone() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+
+}
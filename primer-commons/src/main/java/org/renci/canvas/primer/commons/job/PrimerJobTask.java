@@ -0,0 +1,8 @@
+package org.renci.canvas.primer.commons.job;
+
+@FunctionalInterface
+public interface PrimerJobTask {
+
+    public void run() throws Exception;
+
+}
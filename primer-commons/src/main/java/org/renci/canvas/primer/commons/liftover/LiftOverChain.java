@@ -0,0 +1,19 @@
+package org.renci.canvas.primer.commons.liftover;
+
+public enum LiftOverChain {
+
+    HG38_TO_HG19("hg38ToHg19.over.chain.gz"),
+
+    HG19_TO_HG38("hg19ToHg38.over.chain.gz");
+
+    private String fileName;
+
+    private LiftOverChain(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+}
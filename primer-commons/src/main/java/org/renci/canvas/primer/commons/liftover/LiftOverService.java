@@ -0,0 +1,81 @@
+package org.renci.canvas.primer.commons.liftover;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.samtools.liftover.LiftOver;
+import htsjdk.samtools.util.Interval;
+
+/**
+ * Parses each chain file once and shares it between loader threads, htsjdk's LiftOver is read-only after construction. Results aren't
+ * cached, the variants of a load rarely repeat an interval and a lift against the parsed chain is a tree lookup.
+ */
+public class LiftOverService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiftOverService.class);
+
+    private static LiftOverService instance;
+
+    private final File chainDirectory;
+
+    private final Map<LiftOverChain, LiftOver> liftOverMap = new ConcurrentHashMap<>();
+
+    public static synchronized LiftOverService getInstance() {
+        if (instance == null) {
+            instance = new LiftOverService(Paths.get(System.getProperty("karaf.data"), "liftOver").toFile());
+        }
+        return instance;
+    }
+
+    public LiftOverService(File chainDirectory) {
+        super();
+        this.chainDirectory = chainDirectory;
+    }
+
+    public Interval liftOver(LiftOverChain chain, Interval interval) throws PrimerException {
+        return getLiftOver(chain).liftOver(interval);
+    }
+
+    /**
+     * lifts each interval over, the returned list lines up with the given one and holds null where an interval couldn't be lifted
+     */
+    public List<Interval> liftOver(LiftOverChain chain, List<Interval> intervals) throws PrimerException {
+        LiftOver liftOver = getLiftOver(chain);
+        List<Interval> ret = new ArrayList<>(intervals.size());
+        for (Interval interval : intervals) {
+            ret.add(liftOver.liftOver(interval));
+        }
+        return ret;
+    }
+
+    private LiftOver getLiftOver(LiftOverChain chain) throws PrimerException {
+        LiftOver ret = liftOverMap.get(chain);
+        if (ret == null) {
+            ret = loadLiftOver(chain);
+        }
+        return ret;
+    }
+
+    private synchronized LiftOver loadLiftOver(LiftOverChain chain) throws PrimerException {
+        LiftOver ret = liftOverMap.get(chain);
+        if (ret == null) {
+            File chainFile = new File(chainDirectory, chain.getFileName());
+            if (!chainFile.exists()) {
+                throw new PrimerException(String.format("chain file not found: %s", chainFile.getAbsolutePath()));
+            }
+            logger.info("loading chain file: {}", chainFile.getAbsolutePath());
+            ret = new LiftOver(chainFile);
+            liftOverMap.put(chain, ret);
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,57 @@
+package org.renci.canvas.primer.commons.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric, CounterMXBean {
+
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+
+    private volatile long startTime = System.nanoTime();
+
+    Counter(String name) {
+        super();
+        this.name = name;
+    }
+
+    public void inc() {
+        count.increment();
+    }
+
+    public void inc(long n) {
+        count.add(n);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getRate() {
+        return PrimerMetrics.rate(count.sum(), startTime);
+    }
+
+    @Override
+    public String getSummary() {
+        return "";
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        startTime = System.nanoTime();
+    }
+
+}
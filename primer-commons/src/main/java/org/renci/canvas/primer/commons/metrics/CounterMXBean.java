@@ -0,0 +1,11 @@
+package org.renci.canvas.primer.commons.metrics;
+
+public interface CounterMXBean {
+
+    public long getCount();
+
+    public double getRate();
+
+    public void reset();
+
+}
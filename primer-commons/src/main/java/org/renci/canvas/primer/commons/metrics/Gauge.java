@@ -0,0 +1,55 @@
+package org.renci.canvas.primer.commons.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reads its value from a supplier on demand, ie the depth of a pipeline queue.
+ */
+public class Gauge implements Metric, GaugeMXBean {
+
+    private final String name;
+
+    private final LongSupplier supplier;
+
+    Gauge(String name, LongSupplier supplier) {
+        super();
+        this.name = name;
+        this.supplier = supplier;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    public long getValue() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public long getCount() {
+        return getValue();
+    }
+
+    @Override
+    public double getRate() {
+        return 0D;
+    }
+
+    @Override
+    public String getSummary() {
+        return "";
+    }
+
+    @Override
+    public void reset() {
+        // nothing to reset, the value belongs to the supplier
+    }
+
+}
@@ -0,0 +1,7 @@
+package org.renci.canvas.primer.commons.metrics;
+
+public interface GaugeMXBean {
+
+    public long getValue();
+
+}
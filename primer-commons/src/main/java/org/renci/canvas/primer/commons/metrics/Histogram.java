@@ -0,0 +1,158 @@
+package org.renci.canvas.primer.commons.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non negative values, ie batch sizes. Values are counted in buckets that split every power of two in four, so updates
+ * never allocate or lock and percentiles are approximate (within 25%): the upper bound of the bucket the percentile falls in, capped at
+ * the max.
+ */
+public class Histogram implements Metric, HistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private volatile long startTime = System.nanoTime();
+
+    Histogram(String name) {
+        super();
+        this.name = name;
+    }
+
+    public void update(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        count.increment();
+        sum.add(value);
+        min.accumulate(value);
+        max.accumulate(value);
+        buckets.incrementAndGet(bucket(value));
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long next = (long) (SUB_BUCKETS + 1 + (bucket - SUB_BUCKETS) % SUB_BUCKETS) << shift;
+        return next > 0 ? next - 1 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "histogram";
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getRate() {
+        return PrimerMetrics.rate(count.sum(), startTime);
+    }
+
+    @Override
+    public long getMin() {
+        return count.sum() > 0 ? min.get() : 0L;
+    }
+
+    @Override
+    public long getMax() {
+        return max.get();
+    }
+
+    @Override
+    public double getMean() {
+        long n = count.sum();
+        return n > 0 ? (double) sum.sum() / n : 0D;
+    }
+
+    public long getPercentile(double quantile) {
+        long total = 0;
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public long get50thPercentile() {
+        return getPercentile(0.5D);
+    }
+
+    @Override
+    public long get95thPercentile() {
+        return getPercentile(0.95D);
+    }
+
+    @Override
+    public long get99thPercentile() {
+        return getPercentile(0.99D);
+    }
+
+    @Override
+    public String getSummary() {
+        return String.format("min=%d, mean=%.1f, p50=%d, p95=%d, p99=%d, max=%d", getMin(), getMean(), get50thPercentile(),
+                get95thPercentile(), get99thPercentile(), getMax());
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        sum.reset();
+        min.reset();
+        max.reset();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0L);
+        }
+        startTime = System.nanoTime();
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.renci.canvas.primer.commons.metrics;
+
+public interface HistogramMXBean {
+
+    public long getCount();
+
+    public long getMin();
+
+    public long getMax();
+
+    public double getMean();
+
+    public long get50thPercentile();
+
+    public long get95thPercentile();
+
+    public long get99thPercentile();
+
+    public void reset();
+
+}
@@ -0,0 +1,26 @@
+package org.renci.canvas.primer.commons.metrics;
+
+public interface Metric {
+
+    public String getName();
+
+    public String getType();
+
+    /**
+     * events counted since creation or the last reset, the current value for a gauge
+     */
+    public long getCount();
+
+    /**
+     * count per second since creation or the last reset
+     */
+    public double getRate();
+
+    /**
+     * one line rendering of the type specific values, used by primer:metrics
+     */
+    public String getSummary();
+
+    public void reset();
+
+}
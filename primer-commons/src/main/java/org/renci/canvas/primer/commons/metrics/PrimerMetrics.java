@@ -0,0 +1,143 @@
+package org.renci.canvas.primer.commons.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide registry of loader metrics. Every metric is also registered with the platform MBean server as
+ * org.renci.canvas.primer:type=Metrics,name="..." so a long running load can be watched from jconsole, and listed with primer:metrics.
+ * Names are dotted, loader (or pipeline) first, ie "dbsnp.persist.latency" or "bulk.var.loc_var.rows".
+ */
+public final class PrimerMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrimerMetrics.class);
+
+    public static final String JMX_DOMAIN = "org.renci.canvas.primer";
+
+    private static final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    private PrimerMetrics() {
+        super();
+    }
+
+    public static Counter counter(String name) {
+        return register(name, Counter.class, a -> new Counter(a));
+    }
+
+    public static Timer timer(String name) {
+        return register(name, Timer.class, a -> new Timer(a));
+    }
+
+    public static Histogram histogram(String name) {
+        return register(name, Histogram.class, a -> new Histogram(a));
+    }
+
+    /**
+     * registers a gauge, replacing any gauge of the same name, remove it once the supplier is gone
+     */
+    public static Gauge gauge(String name, LongSupplier supplier) {
+        Gauge gauge = new Gauge(name, supplier);
+        Metric existing = metrics.put(name, gauge);
+        if (existing != null) {
+            if (!(existing instanceof Gauge)) {
+                metrics.put(name, existing);
+                throw new IllegalArgumentException(String.format("%s is a %s", name, existing.getType()));
+            }
+            unregisterMBean(name);
+        }
+        registerMBean(gauge);
+        return gauge;
+    }
+
+    public static void remove(String name) {
+        if (metrics.remove(name) != null) {
+            unregisterMBean(name);
+        }
+    }
+
+    public static SortedMap<String, Metric> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    public static void reset() {
+        metrics.values().forEach(a -> a.reset());
+    }
+
+    /**
+     * joins non empty parts with '.'
+     */
+    public static String name(String... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (part == null || part.isEmpty()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('.');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    static double rate(long count, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1000000000D;
+        return seconds > 0 ? count / seconds : 0D;
+    }
+
+    private static <M extends Metric> M register(String name, Class<M> type, Function<String, M> factory) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = metrics.computeIfAbsent(name, a -> {
+                M ret = factory.apply(a);
+                registerMBean(ret);
+                return ret;
+            });
+        }
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException(String.format("%s is a %s", name, metric.getType()));
+        }
+        return type.cast(metric);
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(String.format("%s:type=Metrics,name=%s", JMX_DOMAIN, ObjectName.quote(name)));
+    }
+
+    private static void registerMBean(Metric metric) {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(metric.getName());
+            if (mbeanServer.isRegistered(objectName)) {
+                mbeanServer.unregisterMBean(objectName);
+            }
+            mbeanServer.registerMBean(metric, objectName);
+        } catch (JMException e) {
+            logger.warn("could not register {} with JMX: {}", metric.getName(), e.getMessage());
+        }
+    }
+
+    private static void unregisterMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (InstanceNotFoundException e) {
+            // never registered
+        } catch (JMException e) {
+            logger.warn("could not unregister {} from JMX: {}", name, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.renci.canvas.primer.commons.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate and latency distribution of an operation, durations are kept as a {@link Histogram} of microseconds.
+ *
+ * <pre>
+ * try (Timer.Context context = timer.time()) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class Timer implements Metric, TimerMXBean {
+
+    private final String name;
+
+    private final Histogram micros;
+
+    Timer(String name) {
+        super();
+        this.name = name;
+        this.micros = new Histogram(name);
+    }
+
+    public Context time() {
+        return new Context(this);
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        micros.update(unit.toMicros(duration));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return "timer";
+    }
+
+    @Override
+    public long getCount() {
+        return micros.getCount();
+    }
+
+    @Override
+    public double getRate() {
+        return micros.getRate();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return micros.getMean() / 1000D;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return micros.getMax() / 1000D;
+    }
+
+    @Override
+    public double getTotalSeconds() {
+        return micros.getMean() * micros.getCount() / 1000000D;
+    }
+
+    @Override
+    public long get50thPercentileMicros() {
+        return micros.get50thPercentile();
+    }
+
+    @Override
+    public long get99thPercentileMicros() {
+        return micros.get99thPercentile();
+    }
+
+    @Override
+    public String getSummary() {
+        return String.format("mean=%.3fms, p50=%dus, p99=%dus, max=%.3fms, total=%.1fs", getMeanMillis(), get50thPercentileMicros(),
+                get99thPercentileMicros(), getMaxMillis(), getTotalSeconds());
+    }
+
+    @Override
+    public void reset() {
+        micros.reset();
+    }
+
+    public static class Context implements AutoCloseable {
+
+        private final Timer timer;
+
+        private final long start = System.nanoTime();
+
+        private Context(Timer timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public void close() {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+    }
+
+}
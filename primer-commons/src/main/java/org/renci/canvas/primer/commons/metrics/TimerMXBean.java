@@ -0,0 +1,21 @@
+package org.renci.canvas.primer.commons.metrics;
+
+public interface TimerMXBean {
+
+    public long getCount();
+
+    public double getRate();
+
+    public double getMeanMillis();
+
+    public double getMaxMillis();
+
+    public double getTotalSeconds();
+
+    public long get50thPercentileMicros();
+
+    public long get99thPercentileMicros();
+
+    public void reset();
+
+}
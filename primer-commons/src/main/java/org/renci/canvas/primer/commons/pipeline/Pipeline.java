@@ -0,0 +1,405 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.metrics.Histogram;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Staged pipeline: a single threaded source followed by map, flatMap, batch and sink stages. Every stage runs on its own worker threads
+ * and stages are connected by bounded queues, so a source that reads faster than the database can write blocks instead of queueing
+ * work in memory. A failing item is logged and counted against its stage. By default the first failed item aborts the pipeline, with
+ * {@link #maxErrors(long)} that many failed items are tolerated and the stage moves on. A worker that dies (source failure, an Error)
+ * always aborts the pipeline.
+ *
+ * Each stage reports &lt;name&gt;.&lt;stage&gt;.received/emitted/failed counters and a latency timer to {@link PrimerMetrics}, batch
+ * stages a size histogram, and while the pipeline runs &lt;name&gt;.&lt;stage&gt;.queue is the depth of the stage's input queue, so the
+ * stage whose queue stays full is the one to speed up.
+ *
+ * A stage preceded by {@link #partitionBy(Function)} gets one input queue per worker and each item is routed by the hash of its key, so
+ * all items with the same key are processed one after another, in the order they were emitted, by the same worker.
+ *
+ * <pre>
+ * PipelineStats stats = Pipeline.&lt;File&gt; from("gnomad", emitter -&gt; files.forEach(emitter::emit))
+ *         .flatMap("read", 4, (file, emitter) -&gt; read(file, emitter)).map("resolve", 4, a -&gt; resolve(a))
+ *         .batch("batch", 1000, 5, TimeUnit.SECONDS).sink("write", 2, PipelineSink.writeAll(writer)).run();
+ * </pre>
+ */
+public class Pipeline<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(Pipeline.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final Object END_OF_STREAM = new Object();
+
+    private enum Kind {
+        SOURCE, STAGE, BATCH, SINK
+    }
+
+    private final Definition definition;
+
+    private Pipeline(Definition definition) {
+        super();
+        this.definition = definition;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Pipeline<T> from(String name, PipelineSource<T> source) {
+        Definition definition = new Definition(name);
+        StageDefinition stage = new StageDefinition("source", Kind.SOURCE, 1);
+        stage.source = (PipelineSource<Object>) source;
+        definition.stages.add(stage);
+        return new Pipeline<>(definition);
+    }
+
+    /**
+     * capacity of each queue between two stages, defaults to {@link #DEFAULT_QUEUE_CAPACITY}
+     */
+    public Pipeline<T> queueCapacity(int queueCapacity) {
+        definition.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * number of failed items tolerated before the pipeline is aborted, 0 (the default) aborts on the first one, negative for no limit
+     */
+    public Pipeline<T> maxErrors(long maxErrors) {
+        definition.maxErrors = maxErrors;
+        return this;
+    }
+
+    /**
+     * partitions the input of the next stage by key, see the class comment
+     */
+    public Pipeline<T> partitionBy(Function<T, ?> key) {
+        @SuppressWarnings("unchecked")
+        Function<Object, Object> partitionKey = (Function<Object, Object>) key;
+        definition.partitionKey = partitionKey;
+        return this;
+    }
+
+    public <R> Pipeline<R> map(String name, int parallelism, PipelineFunction<T, R> function) {
+        return flatMap(name, parallelism, (T item, PipelineEmitter<R> emitter) -> emitter.emit(function.apply(item)));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<R> flatMap(String name, int parallelism, PipelineStage<T, R> stage) {
+        StageDefinition stageDefinition = add(name, Kind.STAGE, parallelism);
+        stageDefinition.stage = (PipelineStage<Object, Object>) (PipelineStage<?, ?>) stage;
+        return new Pipeline<>(definition);
+    }
+
+    /**
+     * groups items into lists of batchSize, a partial batch is emitted once its first item has waited maxWait
+     */
+    public Pipeline<List<T>> batch(String name, int batchSize, long maxWait, TimeUnit unit) {
+        StageDefinition stageDefinition = add(name, Kind.BATCH, 1);
+        stageDefinition.batchSize = batchSize;
+        stageDefinition.maxWaitNanos = unit.toNanos(maxWait);
+        return new Pipeline<>(definition);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Pipeline<Void> sink(String name, int parallelism, PipelineSink<T> sink) {
+        StageDefinition stageDefinition = add(name, Kind.SINK, parallelism);
+        stageDefinition.sink = (PipelineSink<Object>) sink;
+        return new Pipeline<>(definition);
+    }
+
+    /**
+     * runs the pipeline on the calling thread until every stage has drained, items emitted by a last stage that is not a sink are
+     * dropped
+     */
+    public PipelineStats run() throws PrimerException {
+        logger.debug("ENTERING run()");
+        return new Execution(definition).run();
+    }
+
+    private StageDefinition add(String name, Kind kind, int parallelism) {
+        if (definition.stages.get(definition.stages.size() - 1).kind == Kind.SINK) {
+            throw new IllegalStateException(String.format("%s: nothing can follow a sink", definition.name));
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.format("%s: parallelism must be positive", name));
+        }
+        StageDefinition stage = new StageDefinition(name, kind, parallelism);
+        stage.partitionKey = definition.partitionKey;
+        definition.partitionKey = null;
+        definition.stages.add(stage);
+        return stage;
+    }
+
+    private static class Definition {
+
+        private final String name;
+
+        private final List<StageDefinition> stages = new ArrayList<>();
+
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        private long maxErrors = 0L;
+
+        private Function<Object, Object> partitionKey;
+
+        private Definition(String name) {
+            this.name = name;
+        }
+
+    }
+
+    private static class StageDefinition {
+
+        private final String name;
+
+        private final Kind kind;
+
+        private final int parallelism;
+
+        private PipelineSource<Object> source;
+
+        private PipelineStage<Object, Object> stage;
+
+        private PipelineSink<Object> sink;
+
+        private Function<Object, Object> partitionKey;
+
+        private int batchSize;
+
+        private long maxWaitNanos;
+
+        private StageDefinition(String name, Kind kind, int parallelism) {
+            this.name = name;
+            this.kind = kind;
+            this.parallelism = parallelism;
+        }
+
+    }
+
+    private static class Execution {
+
+        private final Definition definition;
+
+        private final List<List<BlockingQueue<Object>>> queues = new ArrayList<>();
+
+        private final PipelineStats stats;
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private ExecutorService es;
+
+        private Execution(Definition definition) {
+            this.definition = definition;
+            List<PipelineStageStats> stageStats = new ArrayList<>();
+            for (StageDefinition stage : definition.stages) {
+                stageStats.add(new PipelineStageStats(definition.name, stage.name, stage.parallelism));
+            }
+            this.stats = new PipelineStats(definition.name, stageStats);
+        }
+
+        private PipelineStats run() throws PrimerException {
+            List<StageDefinition> stages = definition.stages;
+            List<String> gauges = new ArrayList<>();
+            for (int i = 0; i < stages.size() - 1; i++) {
+                StageDefinition next = stages.get(i + 1);
+                List<BlockingQueue<Object>> partitions = new ArrayList<>();
+                if (next.partitionKey != null) {
+                    // the partitions share the capacity of a single queue
+                    for (int p = 0; p < next.parallelism; p++) {
+                        partitions.add(new ArrayBlockingQueue<>(Math.max(1, definition.queueCapacity / next.parallelism)));
+                    }
+                } else {
+                    partitions.add(new ArrayBlockingQueue<>(definition.queueCapacity));
+                }
+                queues.add(partitions);
+                String gauge = PrimerMetrics.name(definition.name, next.name, "queue");
+                PrimerMetrics.gauge(gauge, () -> partitions.stream().mapToInt(a -> a.size()).sum());
+                gauges.add(gauge);
+            }
+
+            es = Executors.newFixedThreadPool(stages.stream().mapToInt(a -> a.parallelism).sum());
+            for (int i = 0; i < stages.size(); i++) {
+                int stageIndex = i;
+                AtomicInteger remaining = new AtomicInteger(stages.get(i).parallelism);
+                for (int w = 0; w < stages.get(i).parallelism; w++) {
+                    int worker = w;
+                    es.execute(() -> work(stageIndex, worker, remaining));
+                }
+            }
+            es.shutdown();
+
+            try {
+                while (!es.awaitTermination(1L, TimeUnit.MINUTES)) {
+                    logger.info(stats.toString());
+                }
+            } catch (InterruptedException e) {
+                abort(e);
+                Thread.currentThread().interrupt();
+            } finally {
+                gauges.forEach(a -> PrimerMetrics.remove(a));
+            }
+
+            stats.finish();
+            logger.info(stats.toString());
+
+            Throwable t = failure.get();
+            if (t != null) {
+                throw new PrimerException(String.format("%s aborted: %s", definition.name, t.getMessage()), t);
+            }
+            return stats;
+        }
+
+        private void work(int stageIndex, int worker, AtomicInteger remaining) {
+            StageDefinition stage = definition.stages.get(stageIndex);
+            PipelineStageStats stageStats = stats.getStages().get(stageIndex);
+            List<BlockingQueue<Object>> inputs = stageIndex > 0 ? queues.get(stageIndex - 1) : null;
+            BlockingQueue<Object> input = inputs != null ? inputs.get(worker % inputs.size()) : null;
+            List<BlockingQueue<Object>> output = stageIndex < queues.size() ? queues.get(stageIndex) : null;
+            Function<Object, Object> partitionKey = output != null ? definition.stages.get(stageIndex + 1).partitionKey : null;
+
+            Thread.currentThread().setName(String.format("%s-%s-%d", definition.name, stage.name, worker));
+
+            PipelineEmitter<Object> emitter = item -> {
+                if (item == null) {
+                    return;
+                }
+                stageStats.incrementEmitted();
+                if (output != null) {
+                    try {
+                        if (partitionKey != null) {
+                            output.get(Math.floorMod(Objects.hashCode(partitionKey.apply(item)), output.size())).put(item);
+                        } else {
+                            output.get(0).put(item);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException(String.format("%s aborted", definition.name));
+                    }
+                }
+            };
+
+            try {
+                switch (stage.kind) {
+                    case SOURCE:
+                        stage.source.read(emitter);
+                        break;
+                    case BATCH:
+                        batch(stage, stageStats, input, emitter);
+                        break;
+                    default:
+                        consume(stage, stageStats, input, emitter);
+                        break;
+                }
+            } catch (InterruptedException | CancellationException e) {
+                abort(e);
+            } catch (Throwable t) {
+                logger.error(String.format("%s %s: %s", definition.name, stage.name, t.getMessage()), t);
+                abort(t);
+            } finally {
+                if (remaining.decrementAndGet() == 0 && output != null && failure.get() == null) {
+                    try {
+                        // one end marker per worker of the next stage, in the queue that worker reads
+                        for (int i = 0; i < definition.stages.get(stageIndex + 1).parallelism; i++) {
+                            output.get(i % output.size()).put(END_OF_STREAM);
+                        }
+                    } catch (InterruptedException e) {
+                        abort(e);
+                    }
+                }
+            }
+        }
+
+        private void consume(StageDefinition stage, PipelineStageStats stageStats, BlockingQueue<Object> input,
+                PipelineEmitter<Object> emitter) throws InterruptedException {
+            while (true) {
+                Object item = input.take();
+                if (item == END_OF_STREAM) {
+                    break;
+                }
+                stageStats.incrementReceived();
+                long start = System.nanoTime();
+                try {
+                    if (stage.kind == Kind.SINK) {
+                        stage.sink.accept(item);
+                    } else {
+                        stage.stage.process(item, emitter);
+                    }
+                    stageStats.recordLatency(System.nanoTime() - start);
+                } catch (InterruptedException | CancellationException e) {
+                    throw e;
+                } catch (Exception e) {
+                    fail(stage, stageStats, e);
+                }
+            }
+        }
+
+        private void batch(StageDefinition stage, PipelineStageStats stageStats, BlockingQueue<Object> input,
+                PipelineEmitter<Object> emitter) throws InterruptedException {
+            Histogram sizes = PrimerMetrics.histogram(PrimerMetrics.name(definition.name, stage.name, "size"));
+            List<Object> batch = new ArrayList<>(stage.batchSize);
+            long deadline = 0L;
+            while (true) {
+                Object item;
+                if (batch.isEmpty()) {
+                    item = input.take();
+                } else {
+                    long wait = deadline - System.nanoTime();
+                    item = wait > 0 ? input.poll(wait, TimeUnit.NANOSECONDS) : null;
+                }
+                if (item == END_OF_STREAM) {
+                    break;
+                }
+                if (item != null) {
+                    stageStats.incrementReceived();
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + stage.maxWaitNanos;
+                    }
+                    batch.add(item);
+                    if (batch.size() < stage.batchSize) {
+                        continue;
+                    }
+                }
+                sizes.update(batch.size());
+                emitter.emit(batch);
+                batch = new ArrayList<>(stage.batchSize);
+            }
+            if (!batch.isEmpty()) {
+                sizes.update(batch.size());
+                emitter.emit(batch);
+            }
+        }
+
+        private void fail(StageDefinition stage, PipelineStageStats stageStats, Exception e) {
+            stageStats.incrementFailed();
+            logger.error(String.format("%s %s: %s", definition.name, stage.name, e.getMessage()), e);
+            if (definition.maxErrors >= 0 && errors.incrementAndGet() > definition.maxErrors) {
+                abort(new PrimerException(String.format("more than %s items failed", definition.maxErrors)));
+            }
+        }
+
+        private void abort(Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                es.shutdownNow();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,14 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Hands items to the next stage of a {@link Pipeline}. Null items are dropped. Blocks while the downstream queue is full and throws
+ * {@link CancellationException} if the pipeline is aborted while waiting.
+ */
+@FunctionalInterface
+public interface PipelineEmitter<T> {
+
+    public void emit(T item) throws CancellationException;
+
+}
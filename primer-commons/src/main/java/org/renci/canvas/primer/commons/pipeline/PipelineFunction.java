@@ -0,0 +1,11 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+/**
+ * One to one {@link PipelineStage}, a null result is dropped.
+ */
+@FunctionalInterface
+public interface PipelineFunction<I, O> {
+
+    public O apply(I item) throws Exception;
+
+}
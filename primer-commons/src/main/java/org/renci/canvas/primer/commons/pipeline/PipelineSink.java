@@ -0,0 +1,22 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import java.util.List;
+
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+
+/**
+ * Last stage of a {@link Pipeline}.
+ */
+@FunctionalInterface
+public interface PipelineSink<T> {
+
+    public void accept(T item) throws Exception;
+
+    /**
+     * sink for a batched pipeline that hands each batch to the writer
+     */
+    public static <E> PipelineSink<List<E>> writeAll(BulkWriter<E> writer) {
+        return batch -> writer.writeAll(batch);
+    }
+
+}
@@ -0,0 +1,12 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+/**
+ * First stage of a {@link Pipeline}, runs on a single thread and emits every item it reads. Emitting blocks while the next stage's queue
+ * is full.
+ */
+@FunctionalInterface
+public interface PipelineSource<T> {
+
+    public void read(PipelineEmitter<T> emitter) throws Exception;
+
+}
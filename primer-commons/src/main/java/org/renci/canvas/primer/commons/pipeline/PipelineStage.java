@@ -0,0 +1,11 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+/**
+ * Turns one item into zero or more items. An exception only fails the item being processed, the stage carries on with the next one.
+ */
+@FunctionalInterface
+public interface PipelineStage<I, O> {
+
+    public void process(I item, PipelineEmitter<O> emitter) throws Exception;
+
+}
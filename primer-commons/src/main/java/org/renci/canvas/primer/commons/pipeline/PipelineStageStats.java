@@ -0,0 +1,89 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.renci.canvas.primer.commons.metrics.Counter;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.renci.canvas.primer.commons.metrics.Timer;
+
+/**
+ * Counts of a single run, mirrored into the "&lt;pipeline&gt;.&lt;stage&gt;.*" {@link PrimerMetrics} which accumulate over every run
+ * of the pipeline.
+ */
+public class PipelineStageStats {
+
+    private final String name;
+
+    private final int parallelism;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong emitted = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Counter receivedCounter;
+
+    private final Counter emittedCounter;
+
+    private final Counter failedCounter;
+
+    private final Timer latency;
+
+    public PipelineStageStats(String pipeline, String name, int parallelism) {
+        super();
+        this.name = name;
+        this.parallelism = parallelism;
+        this.receivedCounter = PrimerMetrics.counter(PrimerMetrics.name(pipeline, name, "received"));
+        this.emittedCounter = PrimerMetrics.counter(PrimerMetrics.name(pipeline, name, "emitted"));
+        this.failedCounter = PrimerMetrics.counter(PrimerMetrics.name(pipeline, name, "failed"));
+        this.latency = PrimerMetrics.timer(PrimerMetrics.name(pipeline, name, "latency"));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    long incrementReceived() {
+        receivedCounter.inc();
+        return received.incrementAndGet();
+    }
+
+    long incrementEmitted() {
+        emittedCounter.inc();
+        return emitted.incrementAndGet();
+    }
+
+    long incrementFailed() {
+        failedCounter.inc();
+        return failed.incrementAndGet();
+    }
+
+    void recordLatency(long nanos) {
+        latency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[parallelism=%s, received=%s, emitted=%s, failed=%s]", name, parallelism, received.get(), emitted.get(),
+                failed.get());
+    }
+
+}
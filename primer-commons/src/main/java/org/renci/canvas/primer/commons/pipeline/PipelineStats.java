@@ -0,0 +1,56 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PipelineStats {
+
+    private final String name;
+
+    private final List<PipelineStageStats> stages;
+
+    private final long startTime = System.currentTimeMillis();
+
+    private volatile long endTime;
+
+    public PipelineStats(String name, List<PipelineStageStats> stages) {
+        super();
+        this.name = name;
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<PipelineStageStats> getStages() {
+        return stages;
+    }
+
+    public PipelineStageStats getStage(String stageName) {
+        return stages.stream().filter(a -> a.getName().equals(stageName)).findFirst().orElse(null);
+    }
+
+    public long getFailed() {
+        return stages.stream().mapToLong(a -> a.getFailed()).sum();
+    }
+
+    /**
+     * elapsed milliseconds, up to now while the pipeline is running
+     */
+    public long getDuration() {
+        return (endTime != 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    void finish() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s in %s seconds: %s", name, getDuration() / 1000D,
+                stages.stream().map(a -> a.toString()).collect(Collectors.joining(" -> ")));
+    }
+
+}
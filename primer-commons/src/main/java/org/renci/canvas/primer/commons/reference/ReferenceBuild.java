@@ -0,0 +1,23 @@
+package org.renci.canvas.primer.commons.reference;
+
+public enum ReferenceBuild {
+
+    GRCH37_P13("GRCh37.p13"),
+
+    GRCH38_P7("GRCh38.p7");
+
+    private String version;
+
+    private ReferenceBuild(String version) {
+        this.version = version;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getFileName() {
+        return String.format("%s.2bit", version);
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.renci.canvas.primer.commons.reference;
+
+import org.apache.commons.lang3.Range;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.gerese4j.core.GeReSe4jBuild;
+import org.slf4j.LoggerFactory;
+
+@FunctionalInterface
+public interface ReferenceSequenceSource {
+
+    /**
+     * returns the bases from the range's minimum up to, but not including, its maximum, using 1-based positions
+     */
+    String getRegion(String accession, Range<Integer> range) throws PrimerException;
+
+    /**
+     * the build's memory-mapped 2bit store, or the initialized GeReSe4j build if that build hasn't been converted to 2bit
+     */
+    public static ReferenceSequenceSource of(ReferenceBuild referenceBuild, GeReSe4jBuild gerese4jBuild) throws PrimerException {
+        TwoBitReferenceStore referenceStore = TwoBitReferenceStore.getInstance(referenceBuild);
+        if (referenceStore != null) {
+            return referenceStore;
+        }
+        LoggerFactory.getLogger(ReferenceSequenceSource.class).info("no 2bit file for {}, using GeReSe4j", referenceBuild.getVersion());
+        try {
+            gerese4jBuild.init();
+        } catch (Exception e) {
+            throw new PrimerException(e);
+        }
+        return (accession, range) -> {
+            try {
+                return gerese4jBuild.getRegion(accession, range, true);
+            } catch (Exception e) {
+                throw new PrimerException(e);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,211 @@
+package org.renci.canvas.primer.commons.reference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.Range;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves reference regions out of a memory-mapped .2bit file. Each sequence's packed bases are mapped separately, so lookups read
+ * straight from the page cache and the build never has to be held on the heap. Reads use absolute gets only, so one store is
+ * shared between loader threads.
+ */
+public class TwoBitReferenceStore implements ReferenceSequenceSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoBitReferenceStore.class);
+
+    public static final String REFERENCE_DIRECTORY = "GenomeReference";
+
+    private static final char[] BASES = { 'T', 'C', 'A', 'G' };
+
+    private static final Map<ReferenceBuild, TwoBitReferenceStore> instances = new ConcurrentHashMap<>();
+
+    private final File file;
+
+    private final Map<String, TwoBitSequence> sequences;
+
+    /**
+     * returns the shared store for the build from karaf.data/GenomeReference, or null if that build hasn't been converted
+     */
+    public static synchronized TwoBitReferenceStore getInstance(ReferenceBuild build) throws PrimerException {
+        TwoBitReferenceStore ret = instances.get(build);
+        if (ret == null) {
+            File file = Paths.get(System.getProperty("karaf.data"), REFERENCE_DIRECTORY, build.getFileName()).toFile();
+            if (!file.exists()) {
+                logger.info("2bit file not found: {}", file.getAbsolutePath());
+                return null;
+            }
+            ret = open(file);
+            instances.put(build, ret);
+        }
+        return ret;
+    }
+
+    public static TwoBitReferenceStore open(File file) throws PrimerException {
+        logger.info("mapping 2bit file: {}", file.getAbsolutePath());
+        Map<String, TwoBitSequence> sequences = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer header = read(channel, 0, 16, ByteOrder.LITTLE_ENDIAN);
+            ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+            int signature = header.getInt();
+            if (signature != TwoBitWriter.SIGNATURE) {
+                if (Integer.reverseBytes(signature) != TwoBitWriter.SIGNATURE) {
+                    throw new PrimerException(String.format("not a 2bit file: %s", file.getAbsolutePath()));
+                }
+                byteOrder = ByteOrder.BIG_ENDIAN;
+                header.order(byteOrder);
+            }
+            header.getInt();
+            int sequenceCount = header.getInt();
+
+            long position = 16;
+            for (int i = 0; i < sequenceCount; i++) {
+                int nameLength = read(channel, position, 1, byteOrder).get() & 0xFF;
+                ByteBuffer entry = read(channel, position + 1, nameLength + 4, byteOrder);
+                byte[] name = new byte[nameLength];
+                entry.get(name);
+                long offset = entry.getInt() & 0xFFFFFFFFL;
+                position += 1 + nameLength + 4;
+
+                sequences.put(new String(name, StandardCharsets.US_ASCII), readSequence(channel, offset, byteOrder));
+            }
+
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+        logger.info("mapped {} sequences", sequences.size());
+        return new TwoBitReferenceStore(file, sequences);
+    }
+
+    private static TwoBitSequence readSequence(FileChannel channel, long offset, ByteOrder byteOrder) throws IOException {
+        long position = offset;
+
+        ByteBuffer buffer = read(channel, position, 8, byteOrder);
+        int length = buffer.getInt();
+        int nBlockCount = buffer.getInt();
+        position += 8;
+
+        buffer = read(channel, position, 8 * nBlockCount + 4, byteOrder);
+        int[] nBlockStarts = new int[nBlockCount];
+        int[] nBlockSizes = new int[nBlockCount];
+        buffer.asIntBuffer().get(nBlockStarts);
+        buffer.position(4 * nBlockCount);
+        buffer.asIntBuffer().get(nBlockSizes);
+        buffer.position(8 * nBlockCount);
+        int maskBlockCount = buffer.getInt();
+        position += 8 * nBlockCount + 4;
+
+        // mask blocks and the reserved word are skipped, regions are served upper case
+        position += 8 * maskBlockCount + 4;
+
+        MappedByteBuffer packed = channel.map(FileChannel.MapMode.READ_ONLY, position, (length + 3) / 4);
+        return new TwoBitSequence(length, nBlockStarts, nBlockSizes, packed);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int size, ByteOrder byteOrder) throws IOException {
+        ByteBuffer ret = ByteBuffer.allocate(size).order(byteOrder);
+        while (ret.hasRemaining()) {
+            if (channel.read(ret, position + ret.position()) < 0) {
+                throw new IOException("unexpected end of 2bit file");
+            }
+        }
+        ret.flip();
+        return ret;
+    }
+
+    private TwoBitReferenceStore(File file, Map<String, TwoBitSequence> sequences) {
+        super();
+        this.file = file;
+        this.sequences = sequences;
+    }
+
+    @Override
+    public String getRegion(String accession, Range<Integer> range) throws PrimerException {
+        TwoBitSequence sequence = sequences.get(accession);
+        if (sequence == null) {
+            logger.warn("sequence not found in {}: {}", file.getName(), accession);
+            return null;
+        }
+
+        int start = Math.max(range.getMinimum() - 1, 0);
+        int end = Math.min(range.getMaximum() - 1, sequence.length);
+        if (start >= end) {
+            return "";
+        }
+
+        char[] ret = new char[end - start];
+        ByteBuffer packed = sequence.packed;
+        int i = start;
+        while (i < end) {
+            int b = packed.get(i >> 2);
+            for (int j = i & 3; j < 4 && i < end; j++, i++) {
+                ret[i - start] = BASES[(b >> (6 - 2 * j)) & 3];
+            }
+        }
+
+        int[] nBlockStarts = sequence.nBlockStarts;
+        int idx = Arrays.binarySearch(nBlockStarts, start);
+        if (idx < 0) {
+            idx = Math.max(-idx - 2, 0);
+        }
+        for (; idx < nBlockStarts.length && nBlockStarts[idx] < end; idx++) {
+            int from = Math.max(nBlockStarts[idx], start);
+            int to = Math.min(nBlockStarts[idx] + sequence.nBlockSizes[idx], end);
+            for (int k = from; k < to; k++) {
+                ret[k - start] = 'N';
+            }
+        }
+
+        return new String(ret);
+    }
+
+    public Integer getLength(String accession) {
+        TwoBitSequence sequence = sequences.get(accession);
+        return sequence != null ? sequence.length : null;
+    }
+
+    public Set<String> getSequenceNames() {
+        return sequences.keySet();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private static class TwoBitSequence {
+
+        private final int length;
+
+        private final int[] nBlockStarts;
+
+        private final int[] nBlockSizes;
+
+        private final MappedByteBuffer packed;
+
+        public TwoBitSequence(int length, int[] nBlockStarts, int[] nBlockSizes, MappedByteBuffer packed) {
+            super();
+            this.length = length;
+            this.nBlockStarts = nBlockStarts;
+            this.nBlockSizes = nBlockSizes;
+            this.packed = packed;
+        }
+
+    }
+
+}
@@ -0,0 +1,208 @@
+package org.renci.canvas.primer.commons.reference;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes sequences in the UCSC .2bit layout. The sequence names have to be known up front so the index can be sized, the
+ * sequences are then added in that order and the index is filled in on close.
+ *
+ * 2bit only holds A, C, G and T, so like faToTwoBit every other base (the IUPAC ambiguity codes R, Y, K, M, S, W, ...) is written as
+ * part of an N block and reads back as N.
+ */
+public class TwoBitWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoBitWriter.class);
+
+    public static final int SIGNATURE = 0x1A412743;
+
+    private static final int HEADER_SIZE = 16;
+
+    private final File output;
+
+    private final List<String> sequenceNames;
+
+    private final List<Long> offsets = new ArrayList<>();
+
+    private final FileChannel channel;
+
+    public TwoBitWriter(File output, List<String> sequenceNames) throws PrimerException {
+        super();
+        this.output = output;
+        this.sequenceNames = sequenceNames;
+
+        long indexSize = 0;
+        for (String sequenceName : sequenceNames) {
+            int nameLength = sequenceName.getBytes(StandardCharsets.US_ASCII).length;
+            if (nameLength > 255) {
+                throw new PrimerException(String.format("sequence name too long: %s", sequenceName));
+            }
+            indexSize += 1 + nameLength + 4;
+        }
+
+        try {
+            this.channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.channel.position(HEADER_SIZE + indexSize);
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+    }
+
+    public void add(String sequenceName, CharSequence sequence) throws PrimerException {
+        if (offsets.size() >= sequenceNames.size() || !sequenceNames.get(offsets.size()).equals(sequenceName)) {
+            throw new PrimerException(String.format("sequence added out of order: %s", sequenceName));
+        }
+
+        int length = sequence.length();
+
+        List<int[]> nBlocks = new ArrayList<>();
+        List<int[]> maskBlocks = new ArrayList<>();
+        byte[] packed = new byte[(length + 3) / 4];
+
+        int nBlockStart = -1;
+        int maskBlockStart = -1;
+        int ambiguous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = sequence.charAt(i);
+
+            int code;
+            switch (Character.toUpperCase(c)) {
+                case 'T':
+                    code = 0;
+                    break;
+                case 'C':
+                    code = 1;
+                    break;
+                case 'A':
+                    code = 2;
+                    break;
+                case 'G':
+                    code = 3;
+                    break;
+                case 'N':
+                    code = -1;
+                    break;
+                default:
+                    code = -1;
+                    ambiguous++;
+                    break;
+            }
+
+            boolean isN = code == -1;
+            if (isN && nBlockStart == -1) {
+                nBlockStart = i;
+            } else if (!isN && nBlockStart != -1) {
+                nBlocks.add(new int[] { nBlockStart, i - nBlockStart });
+                nBlockStart = -1;
+            }
+
+            boolean isMasked = Character.isLowerCase(c);
+            if (isMasked && maskBlockStart == -1) {
+                maskBlockStart = i;
+            } else if (!isMasked && maskBlockStart != -1) {
+                maskBlocks.add(new int[] { maskBlockStart, i - maskBlockStart });
+                maskBlockStart = -1;
+            }
+
+            if (!isN) {
+                // N blocks are packed as T and restored from the blocks on read
+                packed[i >> 2] |= code << (6 - 2 * (i & 3));
+            }
+        }
+        if (nBlockStart != -1) {
+            nBlocks.add(new int[] { nBlockStart, length - nBlockStart });
+        }
+        if (maskBlockStart != -1) {
+            maskBlocks.add(new int[] { maskBlockStart, length - maskBlockStart });
+        }
+
+        ByteBuffer recordHeader = ByteBuffer.allocate(4 * (5 + 2 * nBlocks.size() + 2 * maskBlocks.size()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        recordHeader.putInt(length);
+        putBlocks(recordHeader, nBlocks);
+        putBlocks(recordHeader, maskBlocks);
+        recordHeader.putInt(0);
+        recordHeader.flip();
+
+        try {
+            long offset = channel.position();
+            if (offset > 0xFFFFFFFFL) {
+                throw new PrimerException("2bit offsets are limited to 32 bits");
+            }
+            offsets.add(offset);
+            write(recordHeader);
+            write(ByteBuffer.wrap(packed));
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+
+        if (ambiguous > 0) {
+            logger.warn("{}: {} ambiguity codes written as N", sequenceName, ambiguous);
+        }
+        logger.info("added {}: {} bases, {} N blocks, {} mask blocks", sequenceName, length, nBlocks.size(), maskBlocks.size());
+    }
+
+    private void putBlocks(ByteBuffer buffer, List<int[]> blocks) {
+        buffer.putInt(blocks.size());
+        blocks.forEach(a -> buffer.putInt(a[0]));
+        blocks.forEach(a -> buffer.putInt(a[1]));
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws PrimerException {
+        try {
+            if (offsets.size() != sequenceNames.size()) {
+                throw new PrimerException(String.format("%d of %d sequences written to %s", offsets.size(), sequenceNames.size(),
+                        output.getAbsolutePath()));
+            }
+
+            int indexSize = 0;
+            for (String sequenceName : sequenceNames) {
+                indexSize += 1 + sequenceName.getBytes(StandardCharsets.US_ASCII).length + 4;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + indexSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SIGNATURE);
+            header.putInt(0);
+            header.putInt(sequenceNames.size());
+            header.putInt(0);
+            for (int i = 0; i < sequenceNames.size(); i++) {
+                byte[] name = sequenceNames.get(i).getBytes(StandardCharsets.US_ASCII);
+                header.put((byte) name.length);
+                header.put(name);
+                header.putInt((int) offsets.get(i).longValue());
+            }
+            header.flip();
+
+            channel.position(0);
+            write(header);
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.renci.canvas.primer.commons;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class InfoAttributeDecoderTest {
+
+    @Test
+    public void decodesDelimitedString() {
+        double[] doubles = new double[3];
+        InfoAttributeDecoder.decodeDoubles("0.5,.,1e-3", doubles);
+        assertArrayEquals(new double[] { 0.5D, 0D, 0.001D }, doubles, 0D);
+
+        int[] ints = new int[2];
+        InfoAttributeDecoder.decodeInts("7,9,11", ints);
+        assertArrayEquals(new int[] { 7, 9 }, ints);
+    }
+
+    @Test
+    public void decodesList() {
+        double[] doubles = new double[3];
+        InfoAttributeDecoder.decodeDoubles(Arrays.asList("0.25", "."), doubles);
+        assertArrayEquals(new double[] { 0.25D, 0D, 0D }, doubles, 0D);
+
+        int[] ints = new int[2];
+        InfoAttributeDecoder.decodeInts(Arrays.asList(3, 4), ints);
+        assertArrayEquals(new int[] { 3, 4 }, ints);
+    }
+
+    @Test
+    public void missingValueLeavesTarget() {
+        int[] ints = { 1, 2 };
+        InfoAttributeDecoder.decodeInts(null, ints);
+        assertArrayEquals(new int[] { 1, 2 }, ints);
+    }
+
+    @Test
+    public void firstValue() {
+        assertEquals("12", InfoAttributeDecoder.firstValue("12,13"));
+        assertEquals("5", InfoAttributeDecoder.firstValue(Arrays.asList(5, 6)));
+        assertNull(InfoAttributeDecoder.firstValue(null));
+        assertEquals(0, InfoAttributeDecoder.parseInt(InfoAttributeDecoder.firstValue(".")));
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.renci.canvas.primer.commons.pipeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.renci.canvas.primer.commons.PrimerException;
+
+public class PipelineTest {
+
+    private static final List<Integer> ITEMS = IntStream.range(0, 10000).boxed().collect(Collectors.toList());
+
+    @Test
+    public void singleWorkerKeepsOrder() throws Exception {
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        PipelineStats stats = Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).queueCapacity(16)
+                .map("double", 1, a -> a * 2).sink("collect", 1, received::add).run();
+        assertEquals(ITEMS.stream().map(a -> a * 2).collect(Collectors.toList()), received);
+        assertEquals(ITEMS.size(), stats.getStage("double").getEmitted());
+        assertEquals(ITEMS.size(), stats.getStage("collect").getReceived());
+    }
+
+    @Test
+    public void flatMapDropsNullsAndFansOut() throws Exception {
+        AtomicInteger count = new AtomicInteger();
+        Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit))
+                .flatMap("split", 4, (Integer item, PipelineEmitter<Integer> emitter) -> {
+                    emitter.emit(item);
+                    emitter.emit(item % 2 == 0 ? item : null);
+                }).sink("count", 2, a -> count.incrementAndGet()).run();
+        assertEquals(ITEMS.size() + ITEMS.size() / 2, count.get());
+    }
+
+    @Test
+    public void partitionKeepsKeysOnOneWorkerInOrder() throws Exception {
+        Map<Integer, List<Integer>> byKey = new ConcurrentHashMap<>();
+        Map<Integer, Set<String>> threadsByKey = new ConcurrentHashMap<>();
+        Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).queueCapacity(64).partitionBy(a -> a % 7)
+                .sink("collect", 4, a -> {
+                    byKey.computeIfAbsent(a % 7, k -> Collections.synchronizedList(new ArrayList<>())).add(a);
+                    threadsByKey.computeIfAbsent(a % 7, k -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+                }).run();
+        assertEquals(7, byKey.size());
+        for (Map.Entry<Integer, List<Integer>> entry : byKey.entrySet()) {
+            List<Integer> expected = ITEMS.stream().filter(a -> a % 7 == entry.getKey()).collect(Collectors.toList());
+            assertEquals(expected, entry.getValue());
+            assertEquals(1, threadsByKey.get(entry.getKey()).size());
+        }
+    }
+
+    @Test
+    public void batchesFlushPartialBatch() throws Exception {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        Pipeline.<Integer> from("test", emitter -> ITEMS.subList(0, 2500).forEach(emitter::emit))
+                .batch("batch", 1000, 1, TimeUnit.SECONDS).sink("collect", 1, a -> sizes.add(a.size())).run();
+        assertEquals(2500, sizes.stream().mapToInt(a -> a).sum());
+        assertTrue(sizes.stream().allMatch(a -> a <= 1000));
+    }
+
+    @Test
+    public void sinkFailureAbortsByDefault() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).queueCapacity(16).sink("fail", 2, a -> {
+                if (a == 100) {
+                    throw new IllegalStateException("bad item");
+                }
+                accepted.incrementAndGet();
+            }).run();
+            fail("expected the pipeline to abort");
+        } catch (PrimerException e) {
+            assertTrue(accepted.get() < ITEMS.size() - 1);
+        }
+    }
+
+    @Test
+    public void toleratesUpToMaxErrors() throws Exception {
+        PipelineStats stats = Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).maxErrors(4)
+                .sink("fail", 2, a -> {
+                    if (a % 3000 == 0) {
+                        throw new IllegalStateException("bad item");
+                    }
+                }).run();
+        assertEquals(4, stats.getFailed());
+    }
+
+    @Test(expected = PrimerException.class)
+    public void abortsPastMaxErrors() throws Exception {
+        Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).maxErrors(3).sink("fail", 2, a -> {
+            if (a % 2000 == 0) {
+                throw new IllegalStateException("bad item");
+            }
+        }).run();
+    }
+
+    @Test
+    public void negativeMaxErrorsIsUnlimited() throws Exception {
+        PipelineStats stats = Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).maxErrors(-1)
+                .sink("fail", 2, a -> {
+                    if (a % 10 == 0) {
+                        throw new IllegalStateException("bad item");
+                    }
+                }).run();
+        assertEquals(ITEMS.size() / 10, stats.getFailed());
+    }
+
+    @Test(expected = PrimerException.class, timeout = 10000)
+    public void sourceFailureAborts() throws Exception {
+        Pipeline.<Integer> from("test", emitter -> {
+            ITEMS.forEach(emitter::emit);
+            throw new IllegalStateException("bad source");
+        }).sink("collect", 2, a -> {
+        }).run();
+    }
+
+    @Test(expected = PrimerException.class, timeout = 10000)
+    public void errorInWorkerAborts() throws Exception {
+        Pipeline.<Integer> from("test", emitter -> ITEMS.forEach(emitter::emit)).queueCapacity(16).maxErrors(-1)
+                .sink("collect", 2, a -> {
+                    if (a == 100) {
+                        throw new AssertionError("worker died");
+                    }
+                }).run();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.renci.canvas.primer.commons.reference;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Range;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TwoBitWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        File file = folder.newFile("test.2bit");
+        try (TwoBitWriter writer = new TwoBitWriter(file, Arrays.asList("chr1", "chr2"))) {
+            writer.add("chr1", "ACGTacgtNNnnACGTA");
+            writer.add("chr2", "TTTT");
+        }
+
+        TwoBitReferenceStore store = TwoBitReferenceStore.open(file);
+        assertEquals(Integer.valueOf(17), store.getLength("chr1"));
+        assertEquals("ACGTACGTNNNNACGTA", store.getRegion("chr1", Range.between(1, 18)));
+        assertEquals("GTNNNNA", store.getRegion("chr1", Range.between(7, 14)));
+        assertEquals("TTTT", store.getRegion("chr2", Range.between(1, 5)));
+    }
+
+    @Test
+    public void ambiguityCodesReadBackAsN() throws Exception {
+        File file = folder.newFile("ambiguous.2bit");
+        try (TwoBitWriter writer = new TwoBitWriter(file, Arrays.asList("chr1"))) {
+            writer.add("chr1", "ACRYGTkmNSWacBDHVg");
+        }
+
+        TwoBitReferenceStore store = TwoBitReferenceStore.open(file);
+        assertEquals("ACNNGTNNNNNACNNNNG", store.getRegion("chr1", Range.between(1, 19)));
+        assertEquals("NNG", store.getRegion("chr1", Range.between(16, 19)));
+    }
+
+}
@@ -1,12 +1,17 @@
 package org.renci.canvas.primer.dao;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
 
 public interface BaseDAO<T extends Persistable, ID extends Serializable> {
 
     public abstract Long save(T entity) throws PrimerDAOException;
 
+    public abstract List<Long> saveAll(Collection<T> entities) throws PrimerDAOException;
+
+    public abstract List<Long> saveAllAndFlush(Collection<T> entities) throws PrimerDAOException;
+
     public abstract void delete(T entity) throws PrimerDAOException;
 
     public abstract void delete(List<T> idList) throws PrimerDAOException;
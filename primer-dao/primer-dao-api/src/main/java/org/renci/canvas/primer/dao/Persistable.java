@@ -4,6 +4,11 @@ import java.io.Serializable;
 
 public interface Persistable extends Serializable {
 
+    /**
+     * ids handed out per sequence call, the primer sequences have to be created or altered with the same increment
+     */
+    public static final int SEQUENCE_ALLOCATION_SIZE = 50;
+
     public Long getId();
 
 }
@@ -18,7 +18,7 @@ public class LoadedMetadata implements Persistable {
 
     @Id()
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loaded_metadata_id_seq")
-    @SequenceGenerator(name = "loaded_metadata_id_seq", schema = "primer", sequenceName = "loaded_metadata_id_seq", allocationSize = 1, initialValue = 1)
+    @SequenceGenerator(name = "loaded_metadata_id_seq", schema = "primer", sequenceName = "loaded_metadata_id_seq", allocationSize = Persistable.SEQUENCE_ALLOCATION_SIZE, initialValue = 1)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -18,7 +18,7 @@ public class LoadedSequence implements Persistable {
 
     @Id()
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loaded_sequence_id_seq")
-    @SequenceGenerator(name = "loaded_sequence_id_seq", schema = "primer", sequenceName = "loaded_sequence_id_seq", allocationSize = 1, initialValue = 1)
+    @SequenceGenerator(name = "loaded_sequence_id_seq", schema = "primer", sequenceName = "loaded_sequence_id_seq", allocationSize = Persistable.SEQUENCE_ALLOCATION_SIZE, initialValue = 1)
     @Column(name = "id", nullable = false)
     private Long id;
 
@@ -27,7 +27,7 @@ public class NamedEntity implements Persistable {
 
     @Id()
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "named_entity_id_seq")
-    @SequenceGenerator(name = "named_entity_id_seq", schema = "primer", sequenceName = "named_entity_id_seq", allocationSize = 1, initialValue = 1)
+    @SequenceGenerator(name = "named_entity_id_seq", schema = "primer", sequenceName = "named_entity_id_seq", allocationSize = Persistable.SEQUENCE_ALLOCATION_SIZE, initialValue = 1)
     @Column(name = "id", nullable = false)
     protected Long id;
 
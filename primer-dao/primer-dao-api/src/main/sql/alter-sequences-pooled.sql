@@ -0,0 +1,5 @@
+-- primer entities allocate ids in blocks of Persistable.SEQUENCE_ALLOCATION_SIZE through hibernate's pooled optimizer,
+-- each nextval now reserves the block ending at the returned value, so ids already handed out are never reused
+alter sequence primer.named_entity_id_seq increment by 50;
+alter sequence primer.loaded_sequence_id_seq increment by 50;
+alter sequence primer.loaded_metadata_id_seq increment by 50;
@@ -2,6 +2,7 @@ package org.renci.canvas.primer.dao.jpa;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Singleton;
@@ -27,6 +28,9 @@ public abstract class BaseDAOImpl<T extends Persistable, ID extends Serializable
 
     private static final Logger logger = LoggerFactory.getLogger(BaseDAOImpl.class);
 
+    // matches hibernate.jdbc.batch_size in persistence.xml
+    public static final int BATCH_SIZE = 50;
+
     @PersistenceContext(name = "primer", unitName = "primer")
     private EntityManager entityManager;
 
@@ -46,14 +50,14 @@ public abstract class BaseDAOImpl<T extends Persistable, ID extends Serializable
     }
 
     @Override
-    public synchronized void delete(T entity) throws PrimerDAOException {
+    public void delete(T entity) throws PrimerDAOException {
         logger.debug("ENTERING delete(T)");
         T foundEntity = entityManager.find(getPersistentClass(), entity.getId());
         entityManager.remove(foundEntity);
     }
 
     @Override
-    public synchronized void delete(List<T> entityList) throws PrimerDAOException {
+    public void delete(List<T> entityList) throws PrimerDAOException {
         List<Long> idList = new ArrayList<Long>();
         for (T t : entityList) {
             idList.add(t.getId());
@@ -64,7 +68,7 @@ public abstract class BaseDAOImpl<T extends Persistable, ID extends Serializable
     }
 
     @Override
-    public synchronized Long save(T entity) throws PrimerDAOException {
+    public Long save(T entity) throws PrimerDAOException {
         logger.debug("ENTERING save(Entity)");
         if (entity == null) {
             logger.error("entity is null");
@@ -78,6 +82,38 @@ public abstract class BaseDAOImpl<T extends Persistable, ID extends Serializable
         return entity.getId();
     }
 
+    /**
+     * persists the entities in one transaction, flushing and clearing the persistence context every {@link #BATCH_SIZE} entities so
+     * the inserts go out as JDBC batches and the context doesn't grow with the collection
+     */
+    @org.springframework.transaction.annotation.Transactional
+    @javax.transaction.Transactional(javax.transaction.Transactional.TxType.REQUIRED)
+    @Override
+    public List<Long> saveAll(Collection<T> entities) throws PrimerDAOException {
+        logger.debug("ENTERING saveAll(Collection<T>)");
+        List<Long> ret = new ArrayList<>(entities.size());
+        int count = 0;
+        for (T entity : entities) {
+            ret.add(save(entity));
+            if (++count % BATCH_SIZE == 0) {
+                getEntityManager().flush();
+                getEntityManager().clear();
+            }
+        }
+        return ret;
+    }
+
+    @org.springframework.transaction.annotation.Transactional
+    @javax.transaction.Transactional(javax.transaction.Transactional.TxType.REQUIRED)
+    @Override
+    public List<Long> saveAllAndFlush(Collection<T> entities) throws PrimerDAOException {
+        logger.debug("ENTERING saveAllAndFlush(Collection<T>)");
+        List<Long> ret = saveAll(entities);
+        getEntityManager().flush();
+        getEntityManager().clear();
+        return ret;
+    }
+
     public EntityManager getEntityManager() {
         return entityManager;
     }
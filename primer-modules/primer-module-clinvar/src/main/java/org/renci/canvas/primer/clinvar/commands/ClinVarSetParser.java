@@ -0,0 +1,153 @@
+package org.renci.canvas.primer.clinvar.commands;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.renci.clinvar.PublicSetType;
+import org.renci.clinvar.ReferenceAssertionType;
+import org.renci.clinvar.ReleaseType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipeline stages for the ClinVar release: {@link #split(PipelineEmitter)} decompresses the release once and cuts it into ClinVarSet
+ * documents, {@link #unmarshal(String, PipelineEmitter)} unmarshals one document and emits it if it passes the filter. Back-pressure
+ * and aborting are left to the {@link org.renci.canvas.primer.commons.pipeline.Pipeline} running them.
+ */
+public class ClinVarSetParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClinVarSetParser.class);
+
+    private static final String START_TAG = "<ClinVarSet";
+
+    private static final String END_TAG = "</ClinVarSet>";
+
+    // the release declares xsi on ReleaseSet, each ClinVarSet chunk needs it to stand alone
+    private static final String XSI_NAMESPACE = " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"";
+
+    private final File clinvarXmlFile;
+
+    private final Predicate<PublicSetType> filter;
+
+    private final ThreadLocal<Unmarshaller> unmarshallers;
+
+    private final AtomicLong parsedCount = new AtomicLong();
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+
+    public ClinVarSetParser(File clinvarXmlFile, Predicate<PublicSetType> filter) throws PrimerException {
+        super();
+        this.clinvarXmlFile = clinvarXmlFile;
+        this.filter = filter;
+        try {
+            JAXBContext jc = JAXBContext.newInstance(ReleaseType.class, ReferenceAssertionType.class);
+            this.unmarshallers = ThreadLocal.withInitial(() -> {
+                try {
+                    return jc.createUnmarshaller();
+                } catch (JAXBException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } catch (JAXBException e) {
+            throw new PrimerException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * emits each ClinVarSet element of the release as a standalone document
+     */
+    public void split(PipelineEmitter<String> emitter) throws IOException {
+        logger.debug("ENTERING split(PipelineEmitter<String>)");
+        long start = System.currentTimeMillis();
+
+        long count = 0;
+        try (FileInputStream fis = new FileInputStream(clinvarXmlFile);
+                GZIPInputStream gzis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 16)).intValue());
+                InputStreamReader isr = new InputStreamReader(gzis, StandardCharsets.UTF_8);
+                BufferedReader br = new BufferedReader(isr, Double.valueOf(Math.pow(2, 16)).intValue())) {
+
+            StringBuilder chunk = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                while (line != null) {
+                    if (chunk == null) {
+                        int startIdx = indexOfStartTag(line);
+                        if (startIdx == -1) {
+                            break;
+                        }
+                        chunk = new StringBuilder();
+                        line = line.substring(startIdx + START_TAG.length());
+                        chunk.append(START_TAG);
+                        if (!line.contains("xmlns:xsi=")) {
+                            chunk.append(XSI_NAMESPACE);
+                        }
+                    }
+
+                    int endIdx = line.indexOf(END_TAG);
+                    if (endIdx == -1) {
+                        chunk.append(line).append('\n');
+                        break;
+                    }
+
+                    chunk.append(line, 0, endIdx + END_TAG.length());
+                    emitter.emit(chunk.toString());
+                    count++;
+                    chunk = null;
+                    line = line.substring(endIdx + END_TAG.length());
+                }
+            }
+
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("split {} ClinVarSets in {} seconds", count, (end - start) / 1000);
+    }
+
+    private int indexOfStartTag(String line) {
+        int idx = line.indexOf(START_TAG);
+        while (idx != -1) {
+            int next = idx + START_TAG.length();
+            if (next == line.length() || line.charAt(next) == ' ' || line.charAt(next) == '>') {
+                return idx;
+            }
+            idx = line.indexOf(START_TAG, next);
+        }
+        return -1;
+    }
+
+    /**
+     * unmarshals one ClinVarSet document, emitting it only if it passes the filter
+     */
+    public void unmarshal(String document, PipelineEmitter<PublicSetType> emitter) throws JAXBException {
+        PublicSetType pst = unmarshallers.get().unmarshal(new StreamSource(new StringReader(document)), PublicSetType.class).getValue();
+        parsedCount.incrementAndGet();
+        if (filter.test(pst)) {
+            acceptedCount.incrementAndGet();
+            emitter.emit(pst);
+        }
+    }
+
+    public long getParsedCount() {
+        return parsedCount.get();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+}
@@ -0,0 +1,277 @@
+package org.renci.canvas.primer.clinvar.commands;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The parts of a ClinVarSet the loader persists, so the unmarshalled JAXB tree can be dropped as soon as the set is projected.
+ */
+public class ClinVarSetProjection {
+
+    private String accession;
+
+    private Integer version;
+
+    private Date created;
+
+    private Date updated;
+
+    private String recordStatus;
+
+    private String reviewStatus;
+
+    private String assertionType;
+
+    private String clinicalSignificance;
+
+    private String explanation;
+
+    private Integer traitSetId;
+
+    private String traitSetType;
+
+    private List<TraitProjection> traits = new ArrayList<>();
+
+    private List<SubmissionProjection> submissions = new ArrayList<>();
+
+    private List<List<SequenceLocationProjection>> measures = new ArrayList<>();
+
+    public ClinVarSetProjection() {
+        super();
+    }
+
+    public String getAccession() {
+        return accession;
+    }
+
+    public void setAccession(String accession) {
+        this.accession = accession;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+
+    public Date getUpdated() {
+        return updated;
+    }
+
+    public void setUpdated(Date updated) {
+        this.updated = updated;
+    }
+
+    public String getRecordStatus() {
+        return recordStatus;
+    }
+
+    public void setRecordStatus(String recordStatus) {
+        this.recordStatus = recordStatus;
+    }
+
+    public String getReviewStatus() {
+        return reviewStatus;
+    }
+
+    public void setReviewStatus(String reviewStatus) {
+        this.reviewStatus = reviewStatus;
+    }
+
+    public String getAssertionType() {
+        return assertionType;
+    }
+
+    public void setAssertionType(String assertionType) {
+        this.assertionType = assertionType;
+    }
+
+    public String getClinicalSignificance() {
+        return clinicalSignificance;
+    }
+
+    public void setClinicalSignificance(String clinicalSignificance) {
+        this.clinicalSignificance = clinicalSignificance;
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+
+    public void setExplanation(String explanation) {
+        this.explanation = explanation;
+    }
+
+    public Integer getTraitSetId() {
+        return traitSetId;
+    }
+
+    public void setTraitSetId(Integer traitSetId) {
+        this.traitSetId = traitSetId;
+    }
+
+    public String getTraitSetType() {
+        return traitSetType;
+    }
+
+    public void setTraitSetType(String traitSetType) {
+        this.traitSetType = traitSetType;
+    }
+
+    public List<TraitProjection> getTraits() {
+        return traits;
+    }
+
+    public void setTraits(List<TraitProjection> traits) {
+        this.traits = traits;
+    }
+
+    public List<SubmissionProjection> getSubmissions() {
+        return submissions;
+    }
+
+    public void setSubmissions(List<SubmissionProjection> submissions) {
+        this.submissions = submissions;
+    }
+
+    public List<List<SequenceLocationProjection>> getMeasures() {
+        return measures;
+    }
+
+    public void setMeasures(List<List<SequenceLocationProjection>> measures) {
+        this.measures = measures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ClinVarSetProjection [accession=%s, version=%s, clinicalSignificance=%s, traitSetId=%s]", accession, version,
+                clinicalSignificance, traitSetId);
+    }
+
+    public static class TraitProjection {
+
+        private Integer id;
+
+        private String type;
+
+        private String preferredName;
+
+        public TraitProjection(Integer id, String type, String preferredName) {
+            super();
+            this.id = id;
+            this.type = type;
+            this.preferredName = preferredName;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getPreferredName() {
+            return preferredName;
+        }
+
+    }
+
+    public static class SubmissionProjection {
+
+        private String accession;
+
+        private String assertion;
+
+        private String reviewStatus;
+
+        private Date updated;
+
+        private Integer version;
+
+        public SubmissionProjection(String accession, String assertion, String reviewStatus, Date updated, Integer version) {
+            super();
+            this.accession = accession;
+            this.assertion = assertion;
+            this.reviewStatus = reviewStatus;
+            this.updated = updated;
+            this.version = version;
+        }
+
+        public String getAccession() {
+            return accession;
+        }
+
+        public String getAssertion() {
+            return assertion;
+        }
+
+        public String getReviewStatus() {
+            return reviewStatus;
+        }
+
+        public Date getUpdated() {
+            return updated;
+        }
+
+        public Integer getVersion() {
+            return version;
+        }
+
+    }
+
+    public static class SequenceLocationProjection {
+
+        private String assembly;
+
+        private String accession;
+
+        private Integer position;
+
+        private String ref;
+
+        private String alt;
+
+        public SequenceLocationProjection(String assembly, String accession, Integer position, String ref, String alt) {
+            super();
+            this.assembly = assembly;
+            this.accession = accession;
+            this.position = position;
+            this.ref = ref;
+            this.alt = alt;
+        }
+
+        public String getAssembly() {
+            return assembly;
+        }
+
+        public String getAccession() {
+            return accession;
+        }
+
+        public Integer getPosition() {
+            return position;
+        }
+
+        public String getRef() {
+            return ref;
+        }
+
+        public String getAlt() {
+            return alt;
+        }
+
+    }
+
+}
@@ -1,13 +1,14 @@
 package org.renci.canvas.primer.clinvar.commands;
 
-import java.util.concurrent.Executors;
-
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +24,12 @@ public class PersistAction implements Action {
     @Reference
     private BundleContext bundleContext;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
     public PersistAction() {
         super();
     }
@@ -31,10 +38,19 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        Executors.newSingleThreadExecutor().submit(new PersistUsingSequenceLocation(canvasDAOBeanService));
-        // Executors.newSingleThreadExecutor().submit(new PersistUsingHGVS(canvasDAOBeanService, bundleContext));
+        primerJobService.submit("clinvar:persist", dataSource, new PersistUsingSequenceLocation(canvasDAOBeanService,
+                BulkWriterFactory.lookupDataSource(bundleContext, dataSource))::call);
+        // primerJobService.submit("clinvar:persist", dataSource, new PersistUsingHGVS(canvasDAOBeanService, bundleContext)::call);
 
         return null;
     }
 
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
 }
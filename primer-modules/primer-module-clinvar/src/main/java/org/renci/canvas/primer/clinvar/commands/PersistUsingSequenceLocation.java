@@ -1,36 +1,25 @@
 package org.renci.canvas.primer.clinvar.commands;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.sql.DataSource;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.Range;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -48,8 +37,16 @@ import org.renci.canvas.dao.ref.model.GenomeRefSeq;
 import org.renci.canvas.dao.var.model.CanonicalAllele;
 import org.renci.canvas.dao.var.model.LocatedVariant;
 import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.clinvar.commands.ClinVarSetProjection.SequenceLocationProjection;
+import org.renci.canvas.primer.clinvar.commands.ClinVarSetProjection.SubmissionProjection;
+import org.renci.canvas.primer.clinvar.commands.ClinVarSetProjection.TraitProjection;
 import org.renci.canvas.primer.commons.FTPFactory;
+import org.renci.canvas.primer.commons.PrimerException;
 import org.renci.canvas.primer.commons.UpdateDiagnosticResultVersionCallable;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.pipeline.Pipeline;
+import org.renci.canvas.primer.commons.reference.ReferenceBuild;
+import org.renci.canvas.primer.commons.reference.ReferenceSequenceSource;
 import org.renci.clinvar.ClinicalSignificanceType;
 import org.renci.clinvar.CommentType;
 import org.renci.clinvar.MeasureSetType;
@@ -59,12 +56,10 @@ import org.renci.clinvar.MeasureType.AttributeSet;
 import org.renci.clinvar.PublicSetType;
 import org.renci.clinvar.ReferenceAssertionType;
 import org.renci.clinvar.ReferenceAssertionType.ClinVarAccession;
-import org.renci.clinvar.ReleaseType;
 import org.renci.clinvar.SequenceLocationType;
 import org.renci.clinvar.SetElementSetType;
 import org.renci.clinvar.TraitSetType;
 import org.renci.clinvar.TraitType;
-import org.renci.gerese4j.core.GeReSe4jBuild;
 import org.renci.gerese4j.core.impl.GeReSe4jBuild_37_3;
 import org.renci.gerese4j.core.impl.GeReSe4jBuild_38_7;
 import org.slf4j.Logger;
@@ -74,11 +69,16 @@ public class PersistUsingSequenceLocation implements Callable<Void> {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistUsingSequenceLocation.class);
 
+    private static final int RESOLVE_BATCH_SIZE = 100;
+
     private CANVASDAOBeanService canvasDAOBeanService;
 
-    public PersistUsingSequenceLocation(CANVASDAOBeanService canvasDAOBeanService) {
+    private DataSource canvasDataSource;
+
+    public PersistUsingSequenceLocation(CANVASDAOBeanService canvasDAOBeanService, DataSource canvasDataSource) {
         super();
         this.canvasDAOBeanService = canvasDAOBeanService;
+        this.canvasDataSource = canvasDataSource;
     }
 
     @Override
@@ -87,517 +87,351 @@ public class PersistUsingSequenceLocation implements Callable<Void> {
 
         long start = System.currentTimeMillis();
 
-        try {
-
-            GeReSe4jBuild gerese4jBuild37 = GeReSe4jBuild_37_3.getInstance();
-            gerese4jBuild37.init();
-
-            GeReSe4jBuild gerese4jBuild38 = GeReSe4jBuild_38_7.getInstance();
-            gerese4jBuild38.init();
-
-            Path clinvarPath = Paths.get(System.getProperty("karaf.data"), "ClinVar");
-            File clinvarDir = clinvarPath.toFile();
-            File clinvarDirTmp = new File(clinvarDir, "tmp");
-            if (!clinvarDirTmp.exists()) {
-                clinvarDirTmp.mkdirs();
-            }
-
-            File clinvarXmlFile = FTPFactory.ncbiDownload(clinvarDir, "/pub/clinvar/xml", "ClinVarFullRelease_00-latest.xml.gz");
-
-            if (clinvarXmlFile == null) {
-                logger.error("Problem downloading clinvar");
-                return null;
-            }
-
-            ClinVarVersion clinvarVersion = new ClinVarVersion(clinvarXmlFile.getName());
-            clinvarVersion.setId(canvasDAOBeanService.getClinVarVersionDAO().save(clinvarVersion));
-
-            List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
-
-            List<GenomeRef> allGenomeRefs = canvasDAOBeanService.getGenomeRefDAO().findAll();
-
-            // vardb_berg_38_migration has different name than GeReSe4jBuild.getVersion(), using hardcoded id instead
-
-            // GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getName().equals(gerese4jBuild37.getBuild().getVersion()))
-            // .findFirst().get();
-            GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getId().equals(2)).findFirst().get();
-            List<GenomeRefSeq> all37GenomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO().findByGenomeRefId(genomeRef37.getId());
-
-            // GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getName().equals(gerese4jBuild38.getBuild().getVersion()))
-            // .findFirst().get();
-            GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getId().equals(4)).findFirst().get();
-            List<GenomeRefSeq> all38GenomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO().findByGenomeRefId(genomeRef38.getId());
-
-            List<PublicSetType> pstList = new ArrayList<>();
-
-            List<File> serializedFileList = new ArrayList<>();
+        ReferenceSequenceSource referenceSource37 = ReferenceSequenceSource.of(ReferenceBuild.GRCH37_P13, GeReSe4jBuild_37_3.getInstance());
 
-            logger.info("parsing: {}", clinvarXmlFile.getName());
+        ReferenceSequenceSource referenceSource38 = ReferenceSequenceSource.of(ReferenceBuild.GRCH38_P7, GeReSe4jBuild_38_7.getInstance());
 
-            try (FileInputStream fis = new FileInputStream(clinvarXmlFile);
-                    GZIPInputStream gzis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 16)).intValue())) {
+        Path clinvarPath = Paths.get(System.getProperty("karaf.data"), "ClinVar");
+        File clinvarDir = clinvarPath.toFile();
 
-                XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-                XMLEventReader reader = xmlInputFactory.createXMLEventReader(gzis);
+        File clinvarXmlFile = FTPFactory.ncbiDownload(clinvarDir, "/pub/clinvar/xml", "ClinVarFullRelease_00-latest.xml.gz");
 
-                JAXBContext jc = JAXBContext.newInstance(ReleaseType.class, ReferenceAssertionType.class);
-                Unmarshaller unmarshaller = jc.createUnmarshaller();
-
-                QName clinvarSetQName = new QName("ClinVarSet");
-
-                XMLEvent xmlEvent = null;
-                while ((xmlEvent = reader.peek()) != null) {
-
-                    if (xmlEvent.isStartElement() && ((StartElement) xmlEvent).getName().equals(clinvarSetQName)) {
-
-                        PublicSetType pst = unmarshaller.unmarshal(reader, PublicSetType.class).getValue();
-                        ReferenceAssertionType rat = pst.getReferenceClinVarAssertion();
-
-                        MeasureSetType measureSetType = rat.getMeasureSet();
-
-                        if (measureSetType != null && "Variant".equals(measureSetType.getType())) {
-
-                            List<MeasureType> measures = measureSetType.getMeasure();
-
-                            if (CollectionUtils.isEmpty(measures)) {
-                                continue;
-                            }
-
-                            for (MeasureType measureType : measures) {
-
-                                List<AttributeSet> filters = measureType.getAttributeSet().stream()
-                                        .filter(a -> a.getAttribute().getType().startsWith("HGVS, genomic, top level"))
-                                        .collect(Collectors.toList());
+        if (clinvarXmlFile == null) {
+            throw new PrimerException("Problem downloading clinvar");
+        }
 
-                                if (CollectionUtils.isEmpty(filters)) {
-                                    continue;
+        ClinVarVersion clinvarVersion = new ClinVarVersion(clinvarXmlFile.getName());
+        clinvarVersion.setId(canvasDAOBeanService.getClinVarVersionDAO().save(clinvarVersion));
+
+        List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
+
+        List<GenomeRef> allGenomeRefs = canvasDAOBeanService.getGenomeRefDAO().findAll();
+
+        // vardb_berg_38_migration has different name than GeReSe4jBuild.getVersion(), using hardcoded id instead
+
+        // GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getName().equals(gerese4jBuild37.getBuild().getVersion()))
+        // .findFirst().get();
+        GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getId().equals(2)).findFirst().get();
+        List<GenomeRefSeq> all37GenomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO().findByGenomeRefId(genomeRef37.getId());
+
+        // GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getName().equals(gerese4jBuild38.getBuild().getVersion()))
+        // .findFirst().get();
+        GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getId().equals(4)).findFirst().get();
+        List<GenomeRefSeq> all38GenomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO().findByGenomeRefId(genomeRef38.getId());
+
+        LocatedVariantIndex locatedVariantIndex = LocatedVariantIndex.load(canvasDataSource, genomeRef37.getId(), genomeRef38.getId());
+
+        Map<String, GenomeRefSeq> genomeRef37SeqMap = all37GenomeRefSeqs.stream().collect(Collectors.toMap(a -> a.getId(), a -> a));
+        Map<String, GenomeRefSeq> genomeRef38SeqMap = all38GenomeRefSeqs.stream().collect(Collectors.toMap(a -> a.getId(), a -> a));
+
+        // the dictionaries are persisted the first time a set references them, later sets wait on the same future
+        Map<String, CompletableFuture<AssertionRanking>> assertionRankingMap = new ConcurrentHashMap<>();
+        Map<Integer, CompletableFuture<TraitSet>> traitSetMap = new ConcurrentHashMap<>();
+        Map<Integer, CompletableFuture<Trait>> traitMap = new ConcurrentHashMap<>();
+        Map<Integer, Set<Integer>> traitSetTraitIdMap = new ConcurrentHashMap<>();
+        List<Pair<LocatedVariant, LocatedVariant>> canonicalLocatedVariants = Collections.synchronizedList(new ArrayList<>());
+
+        logger.info("parsing: {}", clinvarXmlFile.getName());
+
+        ClinVarSetParser parser = new ClinVarSetParser(clinvarXmlFile, a -> hasPersistableSequenceLocation(a));
+
+        logger.info("persisting ReferenceClinicalAssertions/LocatedVariants");
+        // one pass over the release, each set is projected as soon as it is unmarshalled and handed straight to the persist stage
+        Pipeline.<String> from("clinvar-parse", parser::split)
+                .flatMap("unmarshal", Runtime.getRuntime().availableProcessors(), parser::unmarshal)
+                .map("project", Runtime.getRuntime().availableProcessors(), this::project).batch("batch", RESOLVE_BATCH_SIZE, 5, TimeUnit.SECONDS).sink("persist", 4, projections -> {
+
+                    // the batch's located variants are resolved and flushed in one go, the assertions below are saved through their DAO
+                    // and can only reference variants that are already committed
+                    Map<SequenceLocationProjection, LocatedVariant> located = new IdentityHashMap<>();
+                    for (ClinVarSetProjection projection : projections) {
+                        for (List<SequenceLocationProjection> measure : projection.getMeasures()) {
+                            for (SequenceLocationProjection sequenceLocation : measure) {
+
+                                GenomeRef genomeRef = null;
+                                GenomeRefSeq genomeRefSeq = null;
+                                ReferenceSequenceSource referenceSource = null;
+                                if ("GRCh38".equals(sequenceLocation.getAssembly())) {
+                                    genomeRef = genomeRef38;
+                                    genomeRefSeq = genomeRef38SeqMap.get(sequenceLocation.getAccession());
+                                    referenceSource = referenceSource38;
+                                } else if ("GRCh37".equals(sequenceLocation.getAssembly())) {
+                                    genomeRef = genomeRef37;
+                                    genomeRefSeq = genomeRef37SeqMap.get(sequenceLocation.getAccession());
+                                    referenceSource = referenceSource37;
                                 }
 
-                                if (CollectionUtils.isNotEmpty(filters) && CollectionUtils.isNotEmpty(filters.stream()
-                                        .filter(a -> a.getAttribute().getValue().contains("?")).collect(Collectors.toList()))) {
+                                if (genomeRefSeq == null) {
                                     continue;
                                 }
+                                logger.debug(genomeRefSeq.toString());
 
-                                if (measureType.getSequenceLocation().stream()
-                                        .anyMatch(sequenceLocation -> !sequenceLocation.isSetPositionVCF()
-                                                || !sequenceLocation.isSetReferenceAlleleVCF()
-                                                || !sequenceLocation.isSetAlternateAlleleVCF()
-                                                || (sequenceLocation.getVariantLength() != null
-                                                        && sequenceLocation.getVariantLength().intValue() > 100))) {
-                                    continue;
-                                }
+                                Range<Integer> range = Range.between(sequenceLocation.getPosition(),
+                                        sequenceLocation.getPosition() + sequenceLocation.getRef().length());
+
+                                String refBase = referenceSource.getRegion(sequenceLocation.getAccession(), range);
 
-                                pstList.add(pst);
-                                if ((pstList.size() % 4000) == 0) {
-                                    File f = new File(clinvarDirTmp, UUID.randomUUID().toString());
-                                    serializedFileList.add(f);
-                                    try (FileOutputStream fos = new FileOutputStream(f);
-                                            GZIPOutputStream gzipos = new GZIPOutputStream(fos, Double.valueOf(Math.pow(2, 14)).intValue());
-                                            ObjectOutputStream oos = new ObjectOutputStream(gzipos)) {
-                                        oos.writeObject(pstList);
-                                    }
-                                    pstList.clear();
+                                LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef, genomeRefSeq,
+                                        sequenceLocation.getPosition(), refBase, sequenceLocation.getAlt(), allVariantTypes);
+
+                                if (locatedVariant == null) {
+                                    continue;
                                 }
 
+                                locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+                                logger.info(locatedVariant.toString());
+                                located.put(sequenceLocation, locatedVariant);
                             }
-
                         }
-
-                    } else {
-                        reader.next();
                     }
-                }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-            }
-
-            File f = new File(clinvarDirTmp, UUID.randomUUID().toString());
-            serializedFileList.add(f);
-            try (FileOutputStream fos = new FileOutputStream(f);
-                    GZIPOutputStream gzipos = new GZIPOutputStream(fos, Double.valueOf(Math.pow(2, 14)).intValue());
-                    ObjectOutputStream oos = new ObjectOutputStream(gzipos)) {
-                oos.writeObject(pstList);
-            }
-            pstList.clear();
-
-            clinvarXmlFile.delete();
-
-            logger.info("serializedFileList.size(): {}", serializedFileList.size());
-
-            Set<String> clinicalSignificanceDescSet = new HashSet<>();
-            Set<TraitSet> traitSets = new HashSet<>();
-            Set<Trait> traits = new HashSet<>();
+                    locatedVariantIndex.flush();
 
-            logger.info("loading Trait/TraitSet/Assertions into memory");
-            ExecutorService es = Executors.newFixedThreadPool(2);
-            for (File serializedFile : serializedFileList) {
+                    for (ClinVarSetProjection projection : projections) {
 
-                es.submit(() -> {
-
-                    List<PublicSetType> tmpPSTList = null;
-                    try (FileInputStream fis = new FileInputStream(serializedFile);
-                            GZIPInputStream gzipis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 14)).intValue());
-                            ObjectInputStream ois = new ObjectInputStream(gzipis)) {
-                        tmpPSTList = (List<PublicSetType>) ois.readObject();
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-
-                    List<String> clinicalSignificanceDescList = tmpPSTList.stream()
-                            .map(a -> a.getReferenceClinVarAssertion().getClinicalSignificance().getDescription()).distinct()
-                            .collect(Collectors.toList());
-                    clinicalSignificanceDescSet.addAll(clinicalSignificanceDescList);
-
-                    tmpPSTList.stream().map(a -> a.getReferenceClinVarAssertion()).forEach(a -> {
-                        traitSets.add(new TraitSet(a.getTraitSet().getID().intValue(), a.getTraitSet().getType()));
-                    });
-
-                    tmpPSTList.stream().map(a -> a.getReferenceClinVarAssertion()).forEach(a -> {
-                        List<TraitType> traitTypeList = a.getTraitSet().getTrait();
-                        for (TraitType traitType : traitTypeList) {
-                            Optional<SetElementSetType> preferredNameOptional = traitType.getName().stream()
-                                    .filter(b -> b.getElementValue().getType().equals("Preferred")).findAny();
-                            if (preferredNameOptional.isPresent()) {
-                                traits.add(new Trait(traitType.getID().intValue(), traitType.getType(),
-                                        preferredNameOptional.get().getElementValue().getValue()));
+                        AssertionRanking assertionRanking = claim(assertionRankingMap, projection.getClinicalSignificance(), () -> {
+                            String clinicalSignificance = projection.getClinicalSignificance();
+                            AssertionRanking found = canvasDAOBeanService.getAssertionRankingDAO().findById(clinicalSignificance);
+                            if (found == null) {
+                                found = new AssertionRanking(clinicalSignificance);
+                                canvasDAOBeanService.getAssertionRankingDAO().save(found);
                             }
+                            return found;
+                        });
+
+                        TraitSet traitSet = claim(traitSetMap, projection.getTraitSetId(), () -> {
+                            TraitSet found = canvasDAOBeanService.getTraitSetDAO().findById(projection.getTraitSetId());
+                            if (found == null) {
+                                found = new TraitSet(projection.getTraitSetId(), projection.getTraitSetType());
+                                canvasDAOBeanService.getTraitSetDAO().save(found);
+                                logger.info(found.toString());
+                            }
+                            return found;
+                        });
+
+                        Set<Integer> traitIds = traitSetTraitIdMap.computeIfAbsent(projection.getTraitSetId(),
+                                a -> ConcurrentHashMap.newKeySet());
+                        for (TraitProjection traitProjection : projection.getTraits()) {
+                            claim(traitMap, traitProjection.getId(), () -> {
+                                Trait found = canvasDAOBeanService.getTraitDAO().findById(traitProjection.getId());
+                                if (found == null) {
+                                    found = new Trait(traitProjection.getId(), traitProjection.getType(),
+                                            traitProjection.getPreferredName());
+                                    canvasDAOBeanService.getTraitDAO().save(found);
+                                    logger.info(found.toString());
+                                }
+                                return found;
+                            });
+                            traitIds.add(traitProjection.getId());
                         }
 
-                    });
-
-                });
-            }
-            es.shutdown();
-            if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
-                es.shutdownNow();
-            }
-
-            logger.info("persisting AssertionRankings");
-            for (String clinicalSignificanceDesc : clinicalSignificanceDescSet) {
-                AssertionRanking assertionRanking = canvasDAOBeanService.getAssertionRankingDAO().findById(clinicalSignificanceDesc);
-                if (assertionRanking == null) {
-                    assertionRanking = new AssertionRanking(clinicalSignificanceDesc);
-                    canvasDAOBeanService.getAssertionRankingDAO().save(assertionRanking);
-                }
-            }
-            clinicalSignificanceDescSet.clear();
-
-            logger.info("persisting TraitSets");
-            es = Executors.newFixedThreadPool(3);
-            for (TraitSet traitSet : traitSets) {
-                es.submit(() -> {
-                    try {
-                        TraitSet foundTraitSet = canvasDAOBeanService.getTraitSetDAO().findById(traitSet.getId());
-                        if (foundTraitSet == null) {
-                            canvasDAOBeanService.getTraitSetDAO().save(traitSet);
-                            logger.info(traitSet.toString());
-                        }
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                });
-            }
-            es.shutdown();
-            if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
-                es.shutdownNow();
-            }
-            traitSets.clear();
-
-            logger.info("persisting Traits");
-            es = Executors.newFixedThreadPool(3);
-            for (Trait trait : traits) {
-                es.submit(() -> {
-                    try {
-                        Trait foundTrait = canvasDAOBeanService.getTraitDAO().findById(trait.getId());
-                        if (foundTrait == null) {
-                            canvasDAOBeanService.getTraitDAO().save(trait);
-                            logger.info(trait.toString());
-                        }
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                });
-            }
-            es.shutdown();
-            if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
-                es.shutdownNow();
-            }
-            traits.clear();
-
-            logger.info("mapping TraitSets/Traits");
-            es = Executors.newFixedThreadPool(2);
-            for (File serializedFile : serializedFileList) {
-
-                es.submit(() -> {
-
-                    List<PublicSetType> tmpPSTList = null;
-                    try (FileInputStream fis = new FileInputStream(serializedFile);
-                            GZIPInputStream gzipis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 14)).intValue());
-                            ObjectInputStream ois = new ObjectInputStream(gzipis)) {
-                        tmpPSTList = (List<PublicSetType>) ois.readObject();
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
-
-                    for (PublicSetType pst : tmpPSTList) {
-                        try {
-                            List<TraitType> traitTypeList = pst.getReferenceClinVarAssertion().getTraitSet().getTrait();
-                            for (TraitType traitType : traitTypeList) {
-                                Optional<SetElementSetType> preferredNameOptional = traitType.getName().stream()
-                                        .filter(b -> b.getElementValue().getType().equals("Preferred")).findAny();
-                                if (preferredNameOptional.isPresent()) {
-                                    Trait trait = canvasDAOBeanService.getTraitDAO().findById(traitType.getID().intValue());
-                                    TraitSet traitSet = canvasDAOBeanService.getTraitSetDAO()
-                                            .findById(pst.getReferenceClinVarAssertion().getTraitSet().getID().intValue());
-                                    if (CollectionUtils.isNotEmpty(traitSet.getTraits()) && !traitSet.getTraits().stream()
-                                            .filter(a -> a.getId().equals(trait.getId())).findAny().isPresent()) {
-                                        traitSet.getTraits().add(trait);
-                                        canvasDAOBeanService.getTraitSetDAO().save(traitSet);
-                                    }
-                                }
+                        Set<SubmissionClinicalAssertion> scaSet = new HashSet<>();
+                        for (SubmissionProjection submission : projection.getSubmissions()) {
+                            SubmissionClinicalAssertion sca = new SubmissionClinicalAssertion();
+                            sca.setAccession(submission.getAccession());
+                            if (StringUtils.isNotEmpty(submission.getAssertion())) {
+                                sca.setAssertion(submission.getAssertion());
                             }
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
+                            sca.setReviewStatus(submission.getReviewStatus());
+                            sca.setUpdated(submission.getUpdated());
+                            sca.setVersion(submission.getVersion());
+                            sca.setId(canvasDAOBeanService.getSubmissionClinicalAssertionDAO().save(sca));
+                            scaSet.add(sca);
                         }
-                    }
-                });
 
-            }
-            es.shutdown();
-            if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
-                es.shutdownNow();
-            }
-
-            List<AssertionRanking> allAssertionRankings = canvasDAOBeanService.getAssertionRankingDAO().findAll();
-            List<Pair<LocatedVariant, LocatedVariant>> canonicalLocatedVariants = new ArrayList<>();
+                        for (List<SequenceLocationProjection> measure : projection.getMeasures()) {
 
-            logger.info("persisting ReferenceClinicalAssertions/LocatedVariants");
-            es = Executors.newFixedThreadPool(2);
-            for (File serializedFile : serializedFileList) {
+                            LocatedVariant locatedVariant38 = null;
+                            LocatedVariant locatedVariant37 = null;
 
-                es.submit(() -> {
-
-                    List<PublicSetType> publicSetTypeList = null;
-                    try (FileInputStream fis = new FileInputStream(serializedFile);
-                            GZIPInputStream gzipis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 14)).intValue());
-                            ObjectInputStream ois = new ObjectInputStream(gzipis)) {
-                        publicSetTypeList = (List<PublicSetType>) ois.readObject();
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
+                            for (SequenceLocationProjection sequenceLocation : measure) {
 
-                    for (PublicSetType pst : publicSetTypeList) {
-
-                        try {
-
-                            List<MeasureTraitType> measureTraitTypeList = pst.getClinVarAssertion();
-
-                            Set<SubmissionClinicalAssertion> scaSet = new HashSet<>();
-                            for (MeasureTraitType mtt : measureTraitTypeList) {
-                                SubmissionClinicalAssertion sca = new SubmissionClinicalAssertion();
-                                sca.setAccession(mtt.getClinVarAccession().getAcc());
-                                if (CollectionUtils.isNotEmpty(mtt.getClinicalSignificance().getDescription())) {
-                                    sca.setAssertion(mtt.getClinicalSignificance().getDescription().get(0));
+                                LocatedVariant locatedVariant = located.get(sequenceLocation);
+                                if (locatedVariant == null) {
+                                    continue;
                                 }
-                                sca.setReviewStatus(mtt.getClinicalSignificance().getReviewStatus().value());
-                                sca.setUpdated(mtt.getClinVarAccession().getDateUpdated().toGregorianCalendar().getTime());
-                                sca.setVersion(mtt.getClinVarAccession().getVersion().intValue());
-                                sca.setId(canvasDAOBeanService.getSubmissionClinicalAssertionDAO().save(sca));
-                                scaSet.add(sca);
-                            }
-
-                            MeasureSetType measureSetType = pst.getReferenceClinVarAssertion().getMeasureSet();
-
-                            ClinicalSignificanceType clinicalSignificanceType = pst.getReferenceClinVarAssertion()
-                                    .getClinicalSignificance();
-                            CommentType explanationType = clinicalSignificanceType.getExplanation();
-
-                            ClinVarAccession clinvarAccession = pst.getReferenceClinVarAssertion().getClinVarAccession();
-
-                            AssertionRanking assertionRanking = allAssertionRankings.stream()
-                                    .filter(a -> a.getId().equals(clinicalSignificanceType.getDescription())).findFirst().get();
-
-                            TraitSetType traitSetType = pst.getReferenceClinVarAssertion().getTraitSet();
-                            TraitSet traitSet = canvasDAOBeanService.getTraitSetDAO().findById(traitSetType.getID().intValue());
-
-                            if (measureSetType != null && "Variant".equals(measureSetType.getType())) {
-
-                                List<MeasureType> measureTypes = measureSetType.getMeasure();
-
-                                for (MeasureType measureType : measureTypes) {
 
-                                    List<AttributeSet> filters = measureType.getAttributeSet().stream()
-                                            .filter(a -> a.getAttribute().getType().startsWith("HGVS, genomic, top level"))
-                                            .collect(Collectors.toList());
-
-                                    if (CollectionUtils.isEmpty(filters)) {
-                                        continue;
-                                    }
-
-                                    if (CollectionUtils.isNotEmpty(filters) && CollectionUtils.isNotEmpty(filters.stream()
-                                            .filter(a -> a.getAttribute().getValue().contains("?")).collect(Collectors.toList()))) {
-                                        continue;
-                                    }
-
-                                    if (measureType.getSequenceLocation().stream()
-                                            .anyMatch(sequenceLocation -> !sequenceLocation.isSetPositionVCF()
-                                                    || !sequenceLocation.isSetReferenceAlleleVCF()
-                                                    || !sequenceLocation.isSetAlternateAlleleVCF()
-                                                    || (sequenceLocation.getVariantLength() != null
-                                                            && sequenceLocation.getVariantLength().intValue() > 100))) {
-                                        continue;
-                                    }
-
-                                    String measure = measureType.getType();
-                                    logger.debug("measure: {}", measure);
-
-                                    List<SequenceLocationType> sequenceLocationTypeList = measureType.getSequenceLocation();
-
-                                    LocatedVariant locatedVariant38 = null;
-                                    LocatedVariant locatedVariant37 = null;
-
-                                    for (SequenceLocationType sequenceLocationType : sequenceLocationTypeList) {
-
-                                        String accession = sequenceLocationType.getAccession();
-
-                                        ReferenceClinicalAssertion rca = new ReferenceClinicalAssertion();
-                                        if (explanationType != null && StringUtils.isNotEmpty(explanationType.getValue())) {
-                                            rca.setExplanation(explanationType.getValue());
-                                        }
-                                        rca.setAccession(clinvarAccession.getAcc());
-                                        rca.setVersion(clinvarAccession.getVersion().intValue());
-                                        rca.setCreated(pst.getReferenceClinVarAssertion().getDateCreated().toGregorianCalendar().getTime());
-                                        rca.setUpdated(clinvarAccession.getDateUpdated().toGregorianCalendar().getTime());
-                                        rca.setRecordStatus(pst.getReferenceClinVarAssertion().getRecordStatus());
-                                        rca.setAssertionStatus(clinicalSignificanceType.getReviewStatus().value());
-                                        rca.setAssertionType(pst.getReferenceClinVarAssertion().getAssertion().getType().value());
-                                        rca.setAssertion(assertionRanking);
-                                        rca.setTraitSet(traitSet);
-
-                                        String alt = StringUtils.isNotEmpty(sequenceLocationType.getAlternateAlleleVCF())
-                                                && !sequenceLocationType.getAlternateAlleleVCF().equals("-")
-                                                        ? sequenceLocationType.getAlternateAlleleVCF() : "";
-
-                                        Range<Integer> range = Range.between(sequenceLocationType.getPositionVCF().intValue(),
-                                                sequenceLocationType.getPositionVCF().intValue()
-                                                        + sequenceLocationType.getReferenceAlleleVCF().length());
-
-                                        if ("GRCh38".equals(sequenceLocationType.getAssembly())) {
-
-                                            GenomeRefSeq genomeRefSeq = all38GenomeRefSeqs.stream().filter(a -> a.getId().equals(accession))
-                                                    .findAny().orElse(null);
-
-                                            if (genomeRefSeq != null) {
-                                                logger.debug(genomeRefSeq.toString());
+                                if ("GRCh38".equals(sequenceLocation.getAssembly())) {
+                                    locatedVariant38 = locatedVariant;
+                                } else {
+                                    locatedVariant37 = locatedVariant;
+                                }
 
-                                                String refBase = gerese4jBuild38.getRegion(sequenceLocationType.getAccession(), range,
-                                                        true);
+                                ReferenceClinicalAssertion rca = new ReferenceClinicalAssertion();
+                                if (StringUtils.isNotEmpty(projection.getExplanation())) {
+                                    rca.setExplanation(projection.getExplanation());
+                                }
+                                rca.setAccession(projection.getAccession());
+                                rca.setVersion(projection.getVersion());
+                                rca.setCreated(projection.getCreated());
+                                rca.setUpdated(projection.getUpdated());
+                                rca.setRecordStatus(projection.getRecordStatus());
+                                rca.setAssertionStatus(projection.getReviewStatus());
+                                rca.setAssertionType(projection.getAssertionType());
+                                rca.setAssertion(assertionRanking);
+                                rca.setTraitSet(traitSet);
+                                rca.setLocatedVariant(locatedVariant);
+                                rca.setId(canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca));
+                                logger.info(rca.toString());
+
+                                rca.getVersions().add(clinvarVersion);
+                                scaSet.stream().forEach(a -> a.getReferenceClinicalAssertions().add(rca));
+                                rca.setSubmissionClinicalAssertions(scaSet);
+                                canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca);
 
-                                                locatedVariant38 = LocatedVariantFactory.create(genomeRef38, genomeRefSeq,
-                                                        sequenceLocationType.getPositionVCF().intValue(), refBase, alt, allVariantTypes);
+                            }
 
-                                                if (locatedVariant38 != null) {
+                            canonicalLocatedVariants.add(Pair.of(locatedVariant37, locatedVariant38));
 
-                                                    List<LocatedVariant> foundLocatedVariants = canvasDAOBeanService.getLocatedVariantDAO()
-                                                            .findByExample(locatedVariant38);
-                                                    if (CollectionUtils.isEmpty(foundLocatedVariants)) {
-                                                        locatedVariant38
-                                                                .setId(canvasDAOBeanService.getLocatedVariantDAO().save(locatedVariant38));
-                                                    } else {
-                                                        locatedVariant38 = foundLocatedVariants.get(0);
-                                                    }
-                                                    logger.info(locatedVariant38.toString());
-                                                    rca.setLocatedVariant(locatedVariant38);
-                                                    rca.setId(canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca));
-                                                    logger.info(rca.toString());
-                                                    rca.getVersions().add(clinvarVersion);
-                                                    scaSet.stream().forEach(a -> a.getReferenceClinicalAssertions().add(rca));
-                                                    rca.setSubmissionClinicalAssertions(scaSet);
-                                                    canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca);
+                        }
 
-                                                }
-                                            }
-                                        }
+                    }
 
-                                        if ("GRCh37".equals(sequenceLocationType.getAssembly())) {
+                }).run();
 
-                                            GenomeRefSeq genomeRefSeq = all37GenomeRefSeqs.stream().filter(a -> a.getId().equals(accession))
-                                                    .findAny().orElse(null);
+        logger.info("ClinVarSets persisted: {} of {}", parser.getAcceptedCount(), parser.getParsedCount());
 
-                                            if (genomeRefSeq != null) {
-                                                logger.debug(genomeRefSeq.toString());
+        clinvarXmlFile.delete();
 
-                                                String refBase = gerese4jBuild37.getRegion(sequenceLocationType.getAccession(), range,
-                                                        true);
+        logger.info("mapping TraitSets/Traits");
+        Pipeline.<Integer> from("clinvar-trait-set-traits", emitter -> traitSetTraitIdMap.keySet().forEach(emitter::emit))
+                .sink("persist", 3, traitSetId -> {
+                    TraitSet traitSet = canvasDAOBeanService.getTraitSetDAO().findById(traitSetId);
+                    Set<Integer> mappedTraitIds = traitSet.getTraits().stream().map(a -> a.getId()).collect(Collectors.toSet());
+                    List<Integer> unmappedTraitIds = traitSetTraitIdMap.get(traitSetId).stream()
+                            .filter(a -> !mappedTraitIds.contains(a) && traitMap.containsKey(a)).collect(Collectors.toList());
+                    if (CollectionUtils.isNotEmpty(unmappedTraitIds)) {
+                        unmappedTraitIds.forEach(a -> traitSet.getTraits().add(traitMap.get(a).join()));
+                        canvasDAOBeanService.getTraitSetDAO().save(traitSet);
+                    }
+                }).run();
+        traitSetTraitIdMap.clear();
 
-                                                locatedVariant37 = LocatedVariantFactory.create(genomeRef37, genomeRefSeq,
-                                                        sequenceLocationType.getPositionVCF().intValue(), refBase, alt, allVariantTypes);
+        locatedVariantIndex.close();
 
-                                                if (locatedVariant37 != null) {
+        canonicalize(canonicalLocatedVariants);
 
-                                                    List<LocatedVariant> foundLocatedVariants = canvasDAOBeanService.getLocatedVariantDAO()
-                                                            .findByExample(locatedVariant37);
-                                                    if (CollectionUtils.isEmpty(foundLocatedVariants)) {
-                                                        locatedVariant37
-                                                                .setId(canvasDAOBeanService.getLocatedVariantDAO().save(locatedVariant37));
-                                                    } else {
-                                                        locatedVariant37 = foundLocatedVariants.get(0);
-                                                    }
-                                                    logger.info(locatedVariant37.toString());
-                                                    rca.setLocatedVariant(locatedVariant37);
-                                                    rca.setId(canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca));
-                                                    logger.info(rca.toString());
+        UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
+        callable.setNote(String.format("Persisted latest ClinVar: %s", clinvarVersion.getId()));
+        callable.call();
 
-                                                    rca.getVersions().add(clinvarVersion);
+        long end = System.currentTimeMillis();
+        logger.info("duration = {}", String.format("%s seconds", (end - start) / 1000D));
 
-                                                    scaSet.stream().forEach(a -> a.getReferenceClinicalAssertions().add(rca));
+        return null;
+    }
 
-                                                    rca.setSubmissionClinicalAssertions(scaSet);
-                                                    canvasDAOBeanService.getReferenceClinicalAssertionDAO().save(rca);
+    /**
+     * returns the value mapped to key, the first caller loads it while concurrent callers for the same key wait on its future
+     */
+    private <K, V> V claim(Map<K, CompletableFuture<V>> map, K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = map.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.get();
+        }
+        try {
+            V value = loader.call();
+            future.complete(value);
+            return value;
+        } catch (Exception e) {
+            // let the next set referencing the key try again
+            map.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
 
-                                                }
+    private boolean hasPersistableSequenceLocation(PublicSetType pst) {
+        MeasureSetType measureSetType = pst.getReferenceClinVarAssertion().getMeasureSet();
+        if (measureSetType == null || !"Variant".equals(measureSetType.getType())
+                || CollectionUtils.isEmpty(measureSetType.getMeasure())) {
+            return false;
+        }
+        return measureSetType.getMeasure().stream().anyMatch(a -> isPersistable(a));
+    }
 
-                                            }
+    private boolean isPersistable(MeasureType measureType) {
 
-                                        }
+        List<AttributeSet> filters = measureType.getAttributeSet().stream()
+                .filter(a -> a.getAttribute().getType().startsWith("HGVS, genomic, top level")).collect(Collectors.toList());
 
-                                    }
+        if (CollectionUtils.isEmpty(filters)) {
+            return false;
+        }
 
-                                    canonicalLocatedVariants.add(Pair.of(locatedVariant37, locatedVariant38));
+        if (filters.stream().anyMatch(a -> a.getAttribute().getValue().contains("?"))) {
+            return false;
+        }
 
-                                }
+        if (measureType.getSequenceLocation().stream()
+                .anyMatch(sequenceLocation -> !sequenceLocation.isSetPositionVCF() || !sequenceLocation.isSetReferenceAlleleVCF()
+                        || !sequenceLocation.isSetAlternateAlleleVCF()
+                        || (sequenceLocation.getVariantLength() != null && sequenceLocation.getVariantLength().intValue() > 100))) {
+            return false;
+        }
 
-                            }
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
-                        }
+        return true;
+    }
 
-                    }
-                });
+    private ClinVarSetProjection project(PublicSetType pst) {
+        ReferenceAssertionType rat = pst.getReferenceClinVarAssertion();
+        ClinVarAccession clinvarAccession = rat.getClinVarAccession();
+        ClinicalSignificanceType clinicalSignificanceType = rat.getClinicalSignificance();
+
+        ClinVarSetProjection ret = new ClinVarSetProjection();
+        ret.setAccession(clinvarAccession.getAcc());
+        ret.setVersion(clinvarAccession.getVersion().intValue());
+        ret.setCreated(rat.getDateCreated().toGregorianCalendar().getTime());
+        ret.setUpdated(clinvarAccession.getDateUpdated().toGregorianCalendar().getTime());
+        ret.setRecordStatus(rat.getRecordStatus());
+        ret.setReviewStatus(clinicalSignificanceType.getReviewStatus().value());
+        ret.setAssertionType(rat.getAssertion().getType().value());
+        ret.setClinicalSignificance(clinicalSignificanceType.getDescription());
+
+        CommentType explanationType = clinicalSignificanceType.getExplanation();
+        if (explanationType != null && StringUtils.isNotEmpty(explanationType.getValue())) {
+            ret.setExplanation(explanationType.getValue());
+        }
 
+        TraitSetType traitSetType = rat.getTraitSet();
+        ret.setTraitSetId(traitSetType.getID().intValue());
+        ret.setTraitSetType(traitSetType.getType());
+        for (TraitType traitType : traitSetType.getTrait()) {
+            Optional<SetElementSetType> preferredNameOptional = traitType.getName().stream()
+                    .filter(b -> b.getElementValue().getType().equals("Preferred")).findAny();
+            if (preferredNameOptional.isPresent()) {
+                ret.getTraits().add(new TraitProjection(traitType.getID().intValue(), traitType.getType(),
+                        preferredNameOptional.get().getElementValue().getValue()));
             }
+        }
 
-            es.shutdown();
-            if (!es.awaitTermination(3L, TimeUnit.DAYS)) {
-                es.shutdownNow();
+        for (MeasureTraitType mtt : pst.getClinVarAssertion()) {
+            String assertion = null;
+            if (CollectionUtils.isNotEmpty(mtt.getClinicalSignificance().getDescription())) {
+                assertion = mtt.getClinicalSignificance().getDescription().get(0);
             }
-
-            FileUtils.deleteDirectory(clinvarDirTmp);
-
-            canonicalize(canonicalLocatedVariants);
-
-            UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
-            callable.setNote(String.format("Persisted latest ClinVar: %s", clinvarVersion.getId()));
-            Executors.newSingleThreadExecutor().submit(callable).get();
-
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
+            ret.getSubmissions().add(new SubmissionProjection(mtt.getClinVarAccession().getAcc(), assertion,
+                    mtt.getClinicalSignificance().getReviewStatus().value(),
+                    mtt.getClinVarAccession().getDateUpdated().toGregorianCalendar().getTime(),
+                    mtt.getClinVarAccession().getVersion().intValue()));
         }
 
-        long end = System.currentTimeMillis();
-        logger.info("duration = {}", String.format("%s seconds", (end - start) / 1000D));
+        for (MeasureType measureType : rat.getMeasureSet().getMeasure()) {
+            if (!isPersistable(measureType)) {
+                continue;
+            }
+            logger.debug("measure: {}", measureType.getType());
+            List<SequenceLocationProjection> sequenceLocations = new ArrayList<>();
+            for (SequenceLocationType sequenceLocationType : measureType.getSequenceLocation()) {
+                String alt = StringUtils.isNotEmpty(sequenceLocationType.getAlternateAlleleVCF())
+                        && !sequenceLocationType.getAlternateAlleleVCF().equals("-") ? sequenceLocationType.getAlternateAlleleVCF() : "";
+                sequenceLocations.add(new SequenceLocationProjection(sequenceLocationType.getAssembly(), sequenceLocationType.getAccession(),
+                        sequenceLocationType.getPositionVCF().intValue(), sequenceLocationType.getReferenceAlleleVCF(), alt));
+            }
+            ret.getMeasures().add(sequenceLocations);
+        }
 
-        return null;
+        return ret;
     }
 
     private void canonicalize(List<Pair<LocatedVariant, LocatedVariant>> canonicalLocatedVariants) throws CANVASDAOException {
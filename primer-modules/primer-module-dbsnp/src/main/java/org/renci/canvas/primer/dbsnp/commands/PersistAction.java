@@ -1,35 +1,27 @@
 package org.renci.canvas.primer.dbsnp.commands;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.Range;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
 import org.renci.canvas.dao.commons.LocatedVariantFactory;
 import org.renci.canvas.dao.ref.model.GenomeRef;
@@ -39,17 +31,25 @@ import org.renci.canvas.dao.var.model.LocatedVariant;
 import org.renci.canvas.dao.var.model.VariantType;
 import org.renci.canvas.primer.commons.FTPFactory;
 import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.RegionShard;
 import org.renci.canvas.primer.commons.UpdateDiagnosticResultVersionCallable;
-import org.renci.gerese4j.core.GeReSe4jBuild;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.renci.canvas.primer.commons.liftover.LiftOverChain;
+import org.renci.canvas.primer.commons.liftover.LiftOverService;
+import org.renci.canvas.primer.commons.pipeline.Pipeline;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.renci.canvas.primer.commons.pipeline.PipelineStats;
+import org.renci.canvas.primer.commons.reference.ReferenceBuild;
+import org.renci.canvas.primer.commons.reference.ReferenceSequenceSource;
 import org.renci.gerese4j.core.impl.GeReSe4jBuild_37_3;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import htsjdk.samtools.liftover.LiftOver;
 import htsjdk.samtools.util.Interval;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.VariantContext;
-import htsjdk.variant.vcf.VCFFileReader;
 
 @Command(scope = "dbsnp", name = "persist", description = "Persist dbSNP data")
 @Service
@@ -57,9 +57,26 @@ public class PersistAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistAction.class);
 
+    private static final int RESOLVE_BATCH_SIZE = 1000;
+
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private BundleContext bundleContext;
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
+    @Option(name = "--threads", description = "Number of region shards to persist concurrently", required = false, multiValued = false)
+    private Integer threads = 4;
+
+    @Option(name = "--windowSize", description = "Region shard size in bases", required = false, multiValued = false)
+    private Integer windowSize = 10000000;
+
     public PersistAction() {
         super();
     }
@@ -70,216 +87,198 @@ public class PersistAction implements Action {
 
         Path dbsnpPath = Paths.get(System.getProperty("karaf.data"), "dbsnp");
         File dbsnpDir = dbsnpPath.toFile();
-        File dbsnpTmpDir = new File(dbsnpDir, "tmp");
-
-        if (!dbsnpTmpDir.exists()) {
-            dbsnpTmpDir.mkdirs();
-        }
 
-        Executors.newSingleThreadExecutor().submit(() -> {
+        primerJobService.submit("dbsnp:persist", dataSource, () -> {
 
-            try {
-
-                Pattern p = Pattern.compile("human_9606_b(?<buildVersion>\\d+)_GRCh(?<refseqVersion>\\d+)p(?<patch>\\d+)");
-
-                List<String> buildDirectories = FTPFactory.ncbiListRemoteFiles("/snp/organisms/", "human_9606_b");
-                List<Triple<Integer, Integer, Integer>> buildVersions = new ArrayList<>();
-                buildDirectories.stream().forEach(a -> {
-                    Matcher m = p.matcher(a);
-                    m.find();
-                    if (m.matches()) {
-                        buildVersions.add(Triple.of(Integer.valueOf(m.group("buildVersion")), Integer.valueOf(m.group("refseqVersion")),
-                                Integer.valueOf(m.group("patch"))));
-                    }
-                });
+            Pattern p = Pattern.compile("human_9606_b(?<buildVersion>\\d+)_GRCh(?<refseqVersion>\\d+)p(?<patch>\\d+)");
 
-                Integer latestBuildVersion = buildVersions.stream().max((a, b) -> a.getLeft().compareTo(b.getLeft())).map(a -> a.getLeft())
-                        .get();
+            List<String> buildDirectories = FTPFactory.ncbiListRemoteFiles("/snp/organisms/", "human_9606_b");
+            List<Triple<Integer, Integer, Integer>> buildVersions = new ArrayList<>();
+            buildDirectories.stream().forEach(a -> {
+                Matcher m = p.matcher(a);
+                m.find();
+                if (m.matches()) {
+                    buildVersions.add(Triple.of(Integer.valueOf(m.group("buildVersion")), Integer.valueOf(m.group("refseqVersion")),
+                            Integer.valueOf(m.group("patch"))));
+                }
+            });
 
-                Integer latestReferenceVersion = buildVersions.stream().max((a, b) -> a.getMiddle().compareTo(b.getMiddle()))
-                        .map(a -> a.getMiddle()).get();
+            Integer latestBuildVersion = buildVersions.stream().max((a, b) -> a.getLeft().compareTo(b.getLeft())).map(a -> a.getLeft())
+                    .get();
 
-                List<Triple<Integer, Integer, Integer>> filteredTriples = buildVersions.stream()
-                        .filter(a -> a.getLeft().equals(latestBuildVersion) && a.getMiddle().equals(latestReferenceVersion))
-                        .collect(Collectors.toList());
+            Integer latestReferenceVersion = buildVersions.stream().max((a, b) -> a.getMiddle().compareTo(b.getMiddle()))
+                    .map(a -> a.getMiddle()).get();
 
-                List<GenomeRef> allGenomeRefs = canvasDAOBeanService.getGenomeRefDAO().findAll();
-                List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
+            List<Triple<Integer, Integer, Integer>> filteredTriples = buildVersions.stream()
+                    .filter(a -> a.getLeft().equals(latestBuildVersion) && a.getMiddle().equals(latestReferenceVersion))
+                    .collect(Collectors.toList());
 
-                GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getId().equals(1)).findAny().orElse(null);
-                List<GenomeRefSeq> allGenomeRef37Seqs = canvasDAOBeanService.getGenomeRefSeqDAO()
-                        .findByGenomeRefIdAndSeqType(genomeRef37.getId(), "Chromosome");
+            List<GenomeRef> allGenomeRefs = canvasDAOBeanService.getGenomeRefDAO().findAll();
+            List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
 
-                GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getId().equals(2)).findAny().orElse(null);
-                List<GenomeRefSeq> allGenomeRef38Seqs = canvasDAOBeanService.getGenomeRefSeqDAO()
-                        .findByGenomeRefIdAndSeqType(genomeRef38.getId(), "Chromosome");
+            GenomeRef genomeRef37 = allGenomeRefs.stream().filter(a -> a.getId().equals(1)).findAny().orElse(null);
+            List<GenomeRefSeq> allGenomeRef37Seqs = canvasDAOBeanService.getGenomeRefSeqDAO()
+                    .findByGenomeRefIdAndSeqType(genomeRef37.getId(), "Chromosome");
 
-                for (Triple<Integer, Integer, Integer> triple : filteredTriples) {
+            GenomeRef genomeRef38 = allGenomeRefs.stream().filter(a -> a.getId().equals(2)).findAny().orElse(null);
+            List<GenomeRefSeq> allGenomeRef38Seqs = canvasDAOBeanService.getGenomeRefSeqDAO()
+                    .findByGenomeRefIdAndSeqType(genomeRef38.getId(), "Chromosome");
 
-                    File latestVCF = FTPFactory.ncbiDownload(dbsnpDir, String.format("/snp/organisms/human_9606_b%s_GRCh%sp%s/VCF",
-                            triple.getLeft(), triple.getMiddle(), triple.getRight()), "00-All.vcf.gz");
+            LocatedVariantIndex locatedVariantIndex = LocatedVariantIndex
+                    .load(BulkWriterFactory.lookupDataSource(bundleContext, dataSource), genomeRef37.getId(), genomeRef38.getId());
 
-                    File latestVCFIndex = FTPFactory.ncbiDownload(dbsnpDir, String.format("/snp/organisms/human_9606_b%s_GRCh%sp%s/VCF",
-                            triple.getLeft(), triple.getMiddle(), triple.getRight()), "00-All.vcf.gz.tbi");
+            ReferenceSequenceSource referenceSource37 = ReferenceSequenceSource.of(ReferenceBuild.GRCH37_P13,
+                    GeReSe4jBuild_37_3.getInstance());
 
-                    if (!triple.getMiddle().equals(38)) {
-                        logger.error("refseqVersion != 38");
-                        continue;
-                    }
+            for (Triple<Integer, Integer, Integer> triple : filteredTriples) {
 
-                    List<File> fragments = fragmentVariantContexts(latestVCF, latestVCFIndex, dbsnpTmpDir);
+                File latestVCF = FTPFactory.ncbiDownload(dbsnpDir, String.format("/snp/organisms/human_9606_b%s_GRCh%sp%s/VCF",
+                        triple.getLeft(), triple.getMiddle(), triple.getRight()), "00-All.vcf.gz");
 
-                    logger.info("fragments.size(): {}", fragments.size());
-                    Date dateUpdated = new Date();
+                File latestVCFIndex = FTPFactory.ncbiDownload(dbsnpDir, String.format("/snp/organisms/human_9606_b%s_GRCh%sp%s/VCF",
+                        triple.getLeft(), triple.getMiddle(), triple.getRight()), "00-All.vcf.gz.tbi");
 
-                    for (File serializationFile : fragments) {
-
-                        List<VariantContext> vcList = null;
-                        try (FileInputStream fis = new FileInputStream(serializationFile);
-                                GZIPInputStream gzipis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 16)).intValue());
-                                ObjectInputStream ois = new ObjectInputStream(gzipis)) {
-                            vcList = (List<VariantContext>) ois.readObject();
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
-                        }
+                if (!triple.getMiddle().equals(38)) {
+                    logger.error("refseqVersion != 38");
+                    continue;
+                }
 
-                        if (CollectionUtils.isNotEmpty(vcList)) {
+                List<RegionShard> shards = RegionShard.split(latestVCF, latestVCFIndex, windowSize);
 
-                            ExecutorService es = Executors.newFixedThreadPool(3);
+                PipelineStats stats = Pipeline.<RegionShard> from("dbsnp", emitter -> shards.forEach(emitter::emit))
+                        .flatMap("read", threads, (RegionShard shard, PipelineEmitter<VariantContext> emitter) -> {
+                            long count = shard.forEach(latestVCF, latestVCFIndex, emitter::emit);
+                            logger.info("{}: {} records", shard.toString(), count);
+                        }).batch("batch", RESOLVE_BATCH_SIZE, 5, TimeUnit.SECONDS)
+                        .sink("persist", threads, variantContexts -> persist(variantContexts, locatedVariantIndex, referenceSource37,
+                                genomeRef37, allGenomeRef37Seqs, genomeRef38, allGenomeRef38Seqs, allVariantTypes))
+                        .run();
 
-                            for (VariantContext variantContext : vcList) {
+                long total = stats.getStage("read").getEmitted();
+                logger.info("{} records persisted from {} shards", total, shards.size());
 
-                                es.submit(() -> {
+            }
 
-                                    try {
-                                        GenomeRefSeq genomeRefSeq = allGenomeRef38Seqs.stream()
-                                                .filter(a -> a.getContig().equals(variantContext.getContig())).findFirst().get();
+            locatedVariantIndex.close();
 
-                                        for (Allele altAllele : variantContext.getAlternateAlleles()) {
+            UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
+            callable.setNote(String.format("Persisted latest dbSNP: %s", latestBuildVersion.toString()));
+            callable.call();
 
-                                            LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef38, genomeRefSeq,
-                                                    variantContext.getStart(), variantContext.getReference().getDisplayString(),
-                                                    altAllele.getDisplayString(), allVariantTypes);
+        });
+        return null;
+    }
 
-                                            List<LocatedVariant> foundLocatedVariants = canvasDAOBeanService.getLocatedVariantDAO()
-                                                    .findByExample(locatedVariant);
-                                            if (CollectionUtils.isNotEmpty(foundLocatedVariants)) {
-                                                locatedVariant = foundLocatedVariants.get(0);
-                                            } else {
-                                                locatedVariant.setId(canvasDAOBeanService.getLocatedVariantDAO().save(locatedVariant));
-                                            }
+    /**
+     * the located variants of the whole batch are resolved and flushed in one go, the canonical alleles are saved through their DAO
+     * and so can only reference variants that are already committed
+     */
+    private void persist(List<VariantContext> variantContexts, LocatedVariantIndex locatedVariantIndex,
+            ReferenceSequenceSource referenceSource37, GenomeRef genomeRef37, List<GenomeRefSeq> allGenomeRef37Seqs, GenomeRef genomeRef38,
+            List<GenomeRefSeq> allGenomeRef38Seqs, List<VariantType> allVariantTypes) throws Exception {
+
+        List<LocatedVariant> locatedVariants = new ArrayList<>();
+        for (VariantContext variantContext : variantContexts) {
+
+            GenomeRefSeq genomeRefSeq = allGenomeRef38Seqs.stream().filter(a -> a.getContig().equals(variantContext.getContig()))
+                    .findFirst().get();
+
+            for (Allele altAllele : variantContext.getAlternateAlleles()) {
+                LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef38, genomeRefSeq, variantContext.getStart(),
+                        variantContext.getReference().getDisplayString(), altAllele.getDisplayString(), allVariantTypes);
+                locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+                logger.info(locatedVariant.toString());
+                locatedVariants.add(locatedVariant);
+            }
 
-                                            logger.info(locatedVariant.toString());
+        }
+        locatedVariantIndex.flush();
 
-                                            // first try to find CanonicalAllele by LocatedVariant
-                                            CanonicalAllele canonicalAllele = null;
+        List<Pair<CanonicalAllele, LocatedVariant>> liftOvers = new ArrayList<>();
+        for (LocatedVariant locatedVariant : locatedVariants) {
 
-                                            List<CanonicalAllele> foundCanonicalAlleles = canvasDAOBeanService.getCanonicalAlleleDAO()
-                                                    .findByLocatedVariantId(locatedVariant.getId());
+            // first try to find CanonicalAllele by LocatedVariant
+            CanonicalAllele canonicalAllele = null;
 
-                                            if (CollectionUtils.isNotEmpty(foundCanonicalAlleles)) {
-                                                canonicalAllele = foundCanonicalAlleles.get(0);
-                                            } else {
-                                                canonicalAllele = new CanonicalAllele();
-                                                canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
-                                                canonicalAllele.getLocatedVariants().add(locatedVariant);
-                                                canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
-                                            }
+            List<CanonicalAllele> foundCanonicalAlleles = canvasDAOBeanService.getCanonicalAlleleDAO()
+                    .findByLocatedVariantId(locatedVariant.getId());
 
-                                            // does canonical allele have liftOver LocatedVariant?
-                                            Optional<LocatedVariant> optionalLocatedVariant = canonicalAllele.getLocatedVariants().stream()
-                                                    .filter(a -> a.getGenomeRef().getId().equals(genomeRef37.getId())).findAny();
+            if (CollectionUtils.isNotEmpty(foundCanonicalAlleles)) {
+                canonicalAllele = foundCanonicalAlleles.get(0);
+            } else {
+                canonicalAllele = new CanonicalAllele();
+                canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
+                canonicalAllele.getLocatedVariants().add(locatedVariant);
+                canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
+            }
 
-                                            if (!optionalLocatedVariant.isPresent()) {
+            // does canonical allele have liftOver LocatedVariant?
+            Optional<LocatedVariant> optionalLocatedVariant = canonicalAllele.getLocatedVariants().stream()
+                    .filter(a -> a.getGenomeRef().getId().equals(genomeRef37.getId())).findAny();
 
-                                                LocatedVariant liftOverLocatedVariant = liftOver(locatedVariant, genomeRef37,
-                                                        allGenomeRef37Seqs);
+            if (!optionalLocatedVariant.isPresent()) {
 
-                                                if (liftOverLocatedVariant != null) {
+                LocatedVariant liftOverLocatedVariant = liftOver(locatedVariant, referenceSource37, genomeRef37, allGenomeRef37Seqs);
 
-                                                    if (locatedVariant.getVariantType().getId().equals("ins")) {
-                                                        // could have had a deletion in ref
-                                                        liftOverLocatedVariant.setEndPosition(liftOverLocatedVariant.getPosition() + 1);
-                                                    }
+                if (liftOverLocatedVariant != null) {
 
-                                                    List<LocatedVariant> foundLiftOverLocatedVariants = canvasDAOBeanService
-                                                            .getLocatedVariantDAO().findByExample(liftOverLocatedVariant);
-                                                    if (CollectionUtils.isNotEmpty(foundLiftOverLocatedVariants)) {
-                                                        liftOverLocatedVariant = foundLocatedVariants.get(0);
-                                                    } else {
-                                                        liftOverLocatedVariant.setId(
-                                                                canvasDAOBeanService.getLocatedVariantDAO().save(liftOverLocatedVariant));
-                                                    }
-                                                    logger.info("liftOver: {}", liftOverLocatedVariant.toString());
+                    if (locatedVariant.getVariantType().getId().equals("ins")) {
+                        // could have had a deletion in ref
+                        liftOverLocatedVariant.setEndPosition(liftOverLocatedVariant.getPosition() + 1);
+                    }
 
-                                                    if (!canonicalAllele.getLocatedVariants().contains(liftOverLocatedVariant)) {
-                                                        canonicalAllele.getLocatedVariants().add(liftOverLocatedVariant);
-                                                        canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
-                                                    }
+                    liftOverLocatedVariant = locatedVariantIndex.resolve(liftOverLocatedVariant);
+                    logger.info("liftOver: {}", liftOverLocatedVariant.toString());
+                    liftOvers.add(Pair.of(canonicalAllele, liftOverLocatedVariant));
 
-                                                }
+                }
 
-                                            }
+            }
 
-                                            // Integer rsId = Integer.valueOf(variantContext.getID().replaceFirst("rs", ""));
-                                            // List<SNP> foundSNPs = canvasDAOBeanService.getSNPDAO().findByRSId(rsId);
-                                            // SNP snp = null;
-                                            // if (CollectionUtils.isNotEmpty(foundSNPs)) {
-                                            // snp = foundSNPs.get(0);
-                                            // } else {
-                                            // snp = new SNP(rsId, latestBuildVersion.toString(), dateUpdated);
-                                            // snp.setId(canvasDAOBeanService.getSNPDAO().save(snp));
-                                            // }
-                                            //
-                                            // logger.info(snp.toString());
-                                            //
-                                            // snp.getCanonicalAlleles().add(canonicalAllele);
-                                            // canvasDAOBeanService.getSNPDAO().save(snp);
-
-                                        }
-                                    } catch (Exception e) {
-                                        logger.error(e.getMessage(), e);
-                                    }
+        }
+        locatedVariantIndex.flush();
 
-                                });
+        for (Pair<CanonicalAllele, LocatedVariant> liftOver : liftOvers) {
+            CanonicalAllele canonicalAllele = liftOver.getLeft();
+            if (!canonicalAllele.getLocatedVariants().contains(liftOver.getRight())) {
+                canonicalAllele.getLocatedVariants().add(liftOver.getRight());
+                canvasDAOBeanService.getCanonicalAlleleDAO().save(canonicalAllele);
+            }
+        }
 
-                            }
+    }
 
-                            es.shutdown();
-                            if (!es.awaitTermination(2L, TimeUnit.DAYS)) {
-                                es.shutdownNow();
-                            }
-
-                        }
-
-                        logger.info(String.format("%s/%s done", fragments.indexOf(serializationFile) + 1, fragments.size()));
-                        serializationFile.delete();
+    public Integer getThreads() {
+        return threads;
+    }
 
-                    }
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
 
-                }
+    public Integer getWindowSize() {
+        return windowSize;
+    }
 
-                UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
-                callable.setNote(String.format("Persisted latest dbSNP: %s", latestBuildVersion.toString()));
-                Executors.newSingleThreadExecutor().submit(callable).get();
+    public void setWindowSize(Integer windowSize) {
+        this.windowSize = windowSize;
+    }
 
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-            }
+    public String getDataSource() {
+        return dataSource;
+    }
 
-        });
-        return null;
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
     }
 
-    private LocatedVariant liftOver(LocatedVariant locatedVariant, GenomeRef genomeRef, List<GenomeRefSeq> all37GenomeRefSeqs)
-            throws PrimerException {
+    private LocatedVariant liftOver(LocatedVariant locatedVariant, ReferenceSequenceSource referenceSource37, GenomeRef genomeRef,
+            List<GenomeRefSeq> all37GenomeRefSeqs) throws PrimerException {
         LocatedVariant ret = null;
         try {
-            File chainFile = new File(String.format("%s/liftOver", System.getProperty("karaf.data")), "hg38ToHg19.over.chain.gz");
-            LiftOver liftOver = new LiftOver(chainFile);
             Interval interval = new Interval(String.format("chr%s", locatedVariant.getGenomeRefSeq().getContig()),
                     locatedVariant.getPosition(), locatedVariant.getEndPosition());
-            Interval loInterval = liftOver.liftOver(interval);
+            Interval loInterval = LiftOverService.getInstance().liftOver(LiftOverChain.HG38_TO_HG19, interval);
             if (loInterval != null) {
 
                 Optional<GenomeRefSeq> optionalGenomeRefSeq = all37GenomeRefSeqs.stream()
@@ -296,9 +295,8 @@ public class PersistAction implements Action {
                 GenomeRefSeq liftOverGenomeRefSeq = optionalGenomeRefSeq.get();
                 logger.info(liftOverGenomeRefSeq.toString());
 
-                GeReSe4jBuild gereseq4jMgr = GeReSe4jBuild_37_3.getInstance();
-                String referenceSequence = gereseq4jMgr.getRegion(liftOverGenomeRefSeq.getId(),
-                        Range.between(loInterval.getStart(), loInterval.getEnd()), true);
+                String referenceSequence = referenceSource37.getRegion(liftOverGenomeRefSeq.getId(),
+                        Range.between(loInterval.getStart(), loInterval.getEnd()));
                 if (StringUtils.isNotEmpty(referenceSequence) && locatedVariant.getRef().equals(referenceSequence)) {
                     ret = new LocatedVariant(genomeRef, liftOverGenomeRefSeq, loInterval.getStart(), loInterval.getEnd(),
                             locatedVariant.getVariantType(), locatedVariant.getRef(), locatedVariant.getSeq());
@@ -311,38 +309,4 @@ public class PersistAction implements Action {
         return ret;
     }
 
-    private List<File> fragmentVariantContexts(File latestVCF, File latestVCFIndex, File dbsnpTmpDir) throws IOException {
-        List<File> fragmentedVCFiles = new ArrayList<>();
-        List<VariantContext> variantContextList = new ArrayList<>();
-
-        try (VCFFileReader vcfFileReader = new VCFFileReader(latestVCF, latestVCFIndex)) {
-
-            for (VariantContext variantContext : vcfFileReader) {
-                variantContextList.add(variantContext);
-                if ((variantContextList.size() % 100000) == 0) {
-                    File f = new File(dbsnpTmpDir, String.format("%s", UUID.randomUUID().toString()));
-                    fragmentedVCFiles.add(f);
-                    try (FileOutputStream fos = new FileOutputStream(f);
-                            GZIPOutputStream gzipos = new GZIPOutputStream(fos, Double.valueOf(Math.pow(2, 14)).intValue());
-                            ObjectOutputStream oos = new ObjectOutputStream(gzipos)) {
-                        oos.writeObject(variantContextList);
-                    }
-                    variantContextList.clear();
-                }
-            }
-        }
-
-        File f = new File(dbsnpTmpDir, String.format("%s", UUID.randomUUID().toString()));
-        fragmentedVCFiles.add(f);
-
-        try (FileOutputStream fos = new FileOutputStream(f);
-                GZIPOutputStream gzipos = new GZIPOutputStream(fos, Double.valueOf(Math.pow(2, 14)).intValue());
-                ObjectOutputStream oos = new ObjectOutputStream(gzipos)) {
-            oos.writeObject(variantContextList);
-        }
-        variantContextList.clear();
-
-        return fragmentedVCFiles;
-    }
-
 }
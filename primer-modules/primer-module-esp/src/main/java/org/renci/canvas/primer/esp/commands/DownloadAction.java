@@ -1,18 +1,17 @@
 package org.renci.canvas.primer.esp.commands;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
@@ -24,25 +23,40 @@ import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.renci.canvas.primer.dao.PrimerDAOBeanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.variant.vcf.VCFCodec;
+
 @Command(scope = "esp", name = "download", description = "Download ESP")
 @Service
 public class DownloadAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadAction.class);
 
+    private static final int BUFFER_SIZE = 1 << 16;
+
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
     @Reference
     private PrimerDAOBeanService annotationDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--espFileName", description = "From http://evs.gs.washington.edu/EVS/", required = false, multiValued = false)
     private String espFileName = "ESP6500SI-V2-SSA137.GRCh38-liftover.snps_indels.vcf.tar.gz";
 
+    @Option(name = "--bgzip", description = "Write the VCFs bgzip'd and tabix indexed", required = false, multiValued = false)
+    private Boolean bgzip = Boolean.FALSE;
+
     public DownloadAction() {
         super();
     }
@@ -50,51 +64,71 @@ public class DownloadAction implements Action {
     @Override
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
-        Executors.newSingleThreadExecutor().execute(() -> {
-            try {
-                String sourceDownload = String.format("http://evs.gs.washington.edu/evs_bulk_data/%s", this.espFileName);
-                URL url = new URL(sourceDownload);
-                Path destinationParentPath = Paths.get(System.getProperty("karaf.data"), "tmp", "ESP");
-                logger.info("download url: {}", sourceDownload);
-                File destinationParentFile = destinationParentPath.toFile();
-                destinationParentFile.mkdirs();
-                File downloadDestination = new File(destinationParentFile, this.espFileName);
-                FileUtils.copyURLToFile(url, downloadDestination);
-                logger.info("downloaded to: {}", downloadDestination.getAbsolutePath());
-
-                List<File> entryFileList = new ArrayList<>();
-                BufferedReader br = null;
-                try (FileInputStream fis = new FileInputStream(downloadDestination);
-                        GZIPInputStream gin = new GZIPInputStream(fis);
-                        TarArchiveInputStream tar = new TarArchiveInputStream(gin)) {
-                    TarArchiveEntry entry;
-                    while ((entry = tar.getNextTarEntry()) != null) {
-                        logger.info("entry.getName(): {}", entry.getName());
-                        br = new BufferedReader(new InputStreamReader(tar));
-                        File entryFile = new File(destinationParentFile, entry.getName());
-                        try (FileWriter fw = new FileWriter(entryFile); BufferedWriter bw = new BufferedWriter(fw)) {
-                            String line;
-                            while ((line = br.readLine()) != null) {
-                                fw.write(String.format("%s%n", line));
-                                fw.flush();
-                            }
-                        }
+        primerJobService.submit("esp:download", null, () -> {
+            String sourceDownload = String.format("http://evs.gs.washington.edu/evs_bulk_data/%s", this.espFileName);
+            URL url = new URL(sourceDownload);
+            Path destinationParentPath = Paths.get(System.getProperty("karaf.data"), "tmp", "ESP");
+            logger.info("download url: {}", sourceDownload);
+            File destinationParentFile = destinationParentPath.toFile();
+            destinationParentFile.mkdirs();
+            File downloadDestination = new File(destinationParentFile, this.espFileName);
+            FileUtils.copyURLToFile(url, downloadDestination);
+            logger.info("downloaded to: {}", downloadDestination.getAbsolutePath());
+
+            List<File> entryFileList = new ArrayList<>();
+            try (FileInputStream fis = new FileInputStream(downloadDestination);
+                    BufferedInputStream bis = new BufferedInputStream(fis, BUFFER_SIZE);
+                    GZIPInputStream gin = new GZIPInputStream(bis, BUFFER_SIZE);
+                    TarArchiveInputStream tar = new TarArchiveInputStream(gin)) {
+                TarArchiveEntry entry;
+                while ((entry = tar.getNextTarEntry()) != null) {
+                    if (!entry.isFile()) {
+                        continue;
+                    }
+                    logger.info("entry.getName(): {}", entry.getName());
+                    String entryName = new File(entry.getName()).getName();
+                    if (bgzip && entryName.endsWith(".vcf")) {
+                        File entryFile = new File(destinationParentFile, String.format("%s.gz", entryName));
+                        extractToBgzip(tar, entryFile);
+                        entryFileList.add(entryFile);
+                    } else {
+                        File entryFile = new File(destinationParentFile, entryName);
+                        Files.copy(tar, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
                         entryFileList.add(entryFile);
                     }
                 }
-
-                if (br != null) {
-                    br.close();
-                }
-
-                downloadDestination.delete();
-            } catch (IOException e) {
-                e.printStackTrace();
             }
+            logger.info("extracted {} files", entryFileList.size());
+
+            downloadDestination.delete();
         });
         return null;
     }
 
+    /**
+     * copies the entry into a bgzip'd file and writes its tabix index next to it, so loaders can read regions in parallel
+     */
+    private void extractToBgzip(InputStream input, File entryFile) throws IOException {
+        try (BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(entryFile)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bcos.write(buffer, 0, read);
+            }
+        }
+        Index index = IndexFactory.createTabixIndex(entryFile, new VCFCodec(), TabixFormat.VCF, null);
+        index.writeBasedOnFeatureFile(entryFile);
+        logger.info("indexed: {}", entryFile.getAbsolutePath());
+    }
+
+    public Boolean getBgzip() {
+        return bgzip;
+    }
+
+    public void setBgzip(Boolean bgzip) {
+        this.bgzip = bgzip;
+    }
+
     public String getEspFileName() {
         return espFileName;
     }
@@ -0,0 +1,134 @@
+package org.renci.canvas.primer.esp.commands;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.commons.lang3.tuple.Triple;
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.commons.LocatedVariantFactory;
+import org.renci.canvas.dao.esp.model.ESPSNPFrequencyPopulation;
+import org.renci.canvas.dao.esp.model.ESPSNPFrequencyPopulationPK;
+import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
+import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.InfoAttributeDecoder;
+import org.renci.canvas.primer.commons.VCFIngestEngine;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Loads the ESP6500SI-V2-SSA137 GRCh38-liftover VCFs. Those carry the GRCh37 site in the record and the lifted position in
+ * GRCh38_POSITION, which is what the located variants are built from, records without a usable GRCh38 position are dropped while
+ * reading. MAF holds the EA, AA and All minor allele frequencies (in percent) and becomes one ESPSNPFrequencyPopulation row per
+ * population, only SNPs are kept.
+ */
+public class ESPIngestEngine extends VCFIngestEngine<Triple<VariantContext, GenomeRefSeq, Integer>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ESPIngestEngine.class);
+
+    public static final String[] POPULATIONS = { "EA", "AA", "All" };
+
+    private final CANVASDAOBeanService canvasDAOBeanService;
+
+    private final GenomeRef genomeRef;
+
+    private final Map<String, GenomeRefSeq> genomeRefSeqs;
+
+    private final List<VariantType> allVariantTypes;
+
+    private final LocatedVariantIndex locatedVariantIndex;
+
+    private final BulkWriter<ESPSNPFrequencyPopulation> snpFrequencyWriter;
+
+    private final Integer version;
+
+    public ESPIngestEngine(CANVASDAOBeanService canvasDAOBeanService, GenomeRef genomeRef, Map<String, GenomeRefSeq> genomeRefSeqs,
+            List<VariantType> allVariantTypes, LocatedVariantIndex locatedVariantIndex,
+            BulkWriter<ESPSNPFrequencyPopulation> snpFrequencyWriter, Integer version) {
+        super("esp");
+        this.canvasDAOBeanService = canvasDAOBeanService;
+        this.genomeRef = genomeRef;
+        this.genomeRefSeqs = genomeRefSeqs;
+        this.allVariantTypes = allVariantTypes;
+        this.locatedVariantIndex = locatedVariantIndex;
+        this.snpFrequencyWriter = snpFrequencyWriter;
+        this.version = version;
+    }
+
+    /**
+     * emits the records that carry a usable GRCh38 position, along with their GRCh38 GenomeRefSeq and start
+     */
+    @Override
+    protected void read(File vcfFile, PipelineEmitter<Triple<VariantContext, GenomeRefSeq, Integer>> emitter) throws Exception {
+        AtomicLong unmapped = new AtomicLong();
+
+        readVCF(vcfFile, header -> variantContext -> {
+            String position = variantContext.getAttributeAsString("GRCh38_POSITION", null);
+            int idx = position != null ? position.lastIndexOf(':') : -1;
+            if (idx == -1) {
+                unmapped.incrementAndGet();
+                return;
+            }
+
+            GenomeRefSeq genomeRefSeq = genomeRefSeqs.get(position.substring(0, idx));
+            if (genomeRefSeq == null) {
+                unmapped.incrementAndGet();
+                return;
+            }
+
+            int start38 = NumberUtils.toInt(position.substring(idx + 1), -1);
+            if (start38 < 1) {
+                unmapped.incrementAndGet();
+                return;
+            }
+
+            emitter.emit(Triple.of(variantContext, genomeRefSeq, start38));
+        });
+
+        logger.info("{}: {} records not lifted to GRCh38", vcfFile.getName(), unmapped.get());
+    }
+
+    @Override
+    protected void persist(Triple<VariantContext, GenomeRefSeq, Integer> item) throws Exception {
+        double[] minorAlleleFrequencies = new double[POPULATIONS.length];
+        InfoAttributeDecoder.decodeDoubles(item.getLeft().getAttribute("MAF"), minorAlleleFrequencies);
+        persist(item.getLeft(), item.getMiddle(), item.getRight(), minorAlleleFrequencies);
+    }
+
+    private void persist(VariantContext variantContext, GenomeRefSeq genomeRefSeq, int position, double[] minorAlleleFrequencies)
+            throws Exception {
+
+        for (Allele altAllele : variantContext.getAlternateAlleles()) {
+
+            LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef, genomeRefSeq, position,
+                    variantContext.getReference().getDisplayString(), altAllele.getDisplayString(), allVariantTypes);
+
+            if (!locatedVariant.getVariantType().getId().equals("snp")) {
+                continue;
+            }
+
+            locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+
+            for (int i = 0; i < POPULATIONS.length; i++) {
+                ESPSNPFrequencyPopulation snpFrequency = new ESPSNPFrequencyPopulation(
+                        new ESPSNPFrequencyPopulationPK(locatedVariant.getId(), version, POPULATIONS[i]));
+                snpFrequency.setLocatedVariant(locatedVariant);
+                snpFrequency.setMinorAlleleFrequency(minorAlleleFrequencies[i]);
+                snpFrequencyWriter.write(snpFrequency);
+            }
+
+        }
+
+    }
+
+}
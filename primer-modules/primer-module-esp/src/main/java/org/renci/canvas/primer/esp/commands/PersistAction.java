@@ -3,27 +3,34 @@ package org.renci.canvas.primer.esp.commands;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
 
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.esp.model.ESPSNPFrequencyPopulation;
 import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
 import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.bulk.MergeStrategy;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.renci.canvas.primer.dao.PrimerDAOBeanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import htsjdk.variant.variantcontext.Allele;
-import htsjdk.variant.variantcontext.GenotypesContext;
-import htsjdk.variant.variantcontext.VariantContext;
-import htsjdk.variant.vcf.VCFFileReader;
-import htsjdk.variant.vcf.VCFHeader;
-
 @Command(scope = "esp", name = "persist", description = "Persist ESP data")
 @Service
 public class PersistAction implements Action {
@@ -36,8 +43,17 @@ public class PersistAction implements Action {
     @Reference
     private PrimerDAOBeanService annotationDAOBeanService;
 
-    @Option(name = "--espFileName", description = "From http://evs.gs.washington.edu/EVS/", required = false, multiValued = false)
-    private String espFileName = "ESP6500SI-V2-SSA137.GRCh38-liftover.snps_indels.txt.tar.gz";
+    @Reference
+    private BundleContext bundleContext;
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
+    @Option(name = "--threads", description = "Number of VCF files to persist concurrently", required = false, multiValued = false)
+    private Integer threads = 4;
 
     public PersistAction() {
         super();
@@ -50,46 +66,62 @@ public class PersistAction implements Action {
         Path destinationParentPath = Paths.get(System.getProperty("karaf.data"), "tmp", "ESP");
         File destinationParentFile = destinationParentPath.toFile();
 
-        VariantType snpVariantType = canvasDAOBeanService.getVariantTypeDAO().findById("snp");
-        VariantType insVariantType = canvasDAOBeanService.getVariantTypeDAO().findById("ins");
-        VariantType delVariantType = canvasDAOBeanService.getVariantTypeDAO().findById("del");
-
-        GenomeRef genomeRef = canvasDAOBeanService.getGenomeRefDAO().findById(2);
+        List<File> espFileList = new ArrayList<>();
+        File[] files = destinationParentFile.listFiles((dir, name) -> name.endsWith(".vcf") || name.endsWith(".vcf.gz"));
+        if (files != null) {
+            espFileList.addAll(Arrays.asList(files));
+        }
+        espFileList.sort((a, b) -> Long.compare(b.length(), a.length()));
+        logger.info("espFileList.size(): {}", espFileList.size());
 
-        List<File> espFileList = Arrays.asList(destinationParentFile.listFiles());
+        primerJobService.submit("esp:persist", dataSource, () -> {
 
-        for (File entryFile : espFileList) {
-            try (VCFFileReader vcfFileReader = new VCFFileReader(entryFile, false)) {
+            GenomeRef genomeRef = canvasDAOBeanService.getGenomeRefDAO().findById(2);
 
-                VCFHeader vcfHeader = vcfFileReader.getFileHeader();
-                List<String> sampleNames = vcfHeader.getGenotypeSamples();
+            List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
 
-                for (String sampleName : sampleNames) {
+            Map<String, GenomeRefSeq> genomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO()
+                    .findByGenomeRefIdAndSeqType(genomeRef.getId(), "Chromosome").stream()
+                    .collect(Collectors.toMap(a -> a.getContig(), a -> a, (a, b) -> a));
 
-                    for (VariantContext variantContext : vcfFileReader) {
+            Integer latestVersion = canvasDAOBeanService.getESPSNPFrequencyPopulationDAO().findLatestVersion();
+            Integer version = latestVersion != null ? latestVersion + 1 : 1;
+            logger.info("version: {}", version);
 
-                        Allele refAllele = variantContext.getReference();
+            DataSource canvasDataSource = BulkWriterFactory.lookupDataSource(bundleContext, dataSource);
 
-                        GenotypesContext genotypesContext = variantContext.getGenotypes();
+            try (LocatedVariantIndex locatedVariantIndex = LocatedVariantIndex.load(canvasDataSource, genomeRef.getId());
+                    BulkWriter<ESPSNPFrequencyPopulation> snpFrequencyWriter = BulkWriterFactory
+                            .create(canvasDataSource, ESPSNPFrequencyPopulation.class, MergeStrategy.UPSERT)
+                            .dependsOn(locatedVariantIndex.getWriter())) {
 
-                    }
+                ESPIngestEngine engine = new ESPIngestEngine(canvasDAOBeanService, genomeRef, genomeRefSeqs, allVariantTypes,
+                        locatedVariantIndex, snpFrequencyWriter, version);
+                engine.ingest(espFileList, threads);
 
-                }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
+                logger.info("rows written: {}", snpFrequencyWriter.getRowCount());
             }
-        }
+
+        });
 
         return null;
 
     }
 
-    public String getEspFileName() {
-        return espFileName;
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Integer getThreads() {
+        return threads;
     }
 
-    public void setEspFileName(String espFileName) {
-        this.espFileName = espFileName;
+    public void setThreads(Integer threads) {
+        this.threads = threads;
     }
 
 }
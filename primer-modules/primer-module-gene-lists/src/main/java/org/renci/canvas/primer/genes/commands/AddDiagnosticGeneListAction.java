@@ -3,7 +3,6 @@ package org.renci.canvas.primer.genes.commands;
 import java.io.File;
 import java.nio.file.Files;
 import java.util.List;
-import java.util.concurrent.Executors;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.karaf.shell.api.action.Action;
@@ -18,6 +17,8 @@ import org.renci.canvas.dao.clinbin.model.DiagnosticGene;
 import org.renci.canvas.dao.clinbin.model.DiagnosticGeneGroupVersion;
 import org.renci.canvas.dao.clinbin.model.DiagnosticGeneGroupVersionPK;
 import org.renci.canvas.primer.commons.UpdateDiagnosticResultVersionCallable;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +31,9 @@ public class AddDiagnosticGeneListAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--dxName", description = "DX Name", required = true, multiValued = false)
     private String dxName;
 
@@ -52,112 +56,106 @@ public class AddDiagnosticGeneListAction implements Action {
             return null;
         }
 
-        Executors.newSingleThreadExecutor().submit(() -> {
-
-            try {
+        primerJobService.submit("gene-lists:add-diagnostic-gene-list", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME, () -> {
 
-                if (dxName.contains("\"")) {
-                    dxName = dxName.replaceAll("\"", "");
-                }
+            if (dxName.contains("\"")) {
+                dxName = dxName.replaceAll("\"", "");
+            }
 
-                DX dx = null;
+            DX dx = null;
 
-                List<DX> foundDXs = canvasDAOBeanService.getDXDAO().findByName(dxName);
-                if (CollectionUtils.isEmpty(foundDXs)) {
-                    dx = new DX(dxName);
-                    dx.setId(canvasDAOBeanService.getDXDAO().save(dx));
-                } else {
-                    dx = foundDXs.get(0);
-                }
-                logger.info(dx.toString());
+            List<DX> foundDXs = canvasDAOBeanService.getDXDAO().findByName(dxName);
+            if (CollectionUtils.isEmpty(foundDXs)) {
+                dx = new DX(dxName);
+                dx.setId(canvasDAOBeanService.getDXDAO().save(dx));
+            } else {
+                dx = foundDXs.get(0);
+            }
+            logger.info(dx.toString());
 
-                Integer diagnosticListVersion = canvasDAOBeanService.getDiagnosticGeneDAO().findMaxDiagnosticListVersionByDxId(dx.getId());
-                if (diagnosticListVersion == null) {
-                    diagnosticListVersion = 0;
-                }
-                logger.info("diagnosticListVersion: {}", diagnosticListVersion);
-                ++diagnosticListVersion;
+            Integer diagnosticListVersion = canvasDAOBeanService.getDiagnosticGeneDAO().findMaxDiagnosticListVersionByDxId(dx.getId());
+            if (diagnosticListVersion == null) {
+                diagnosticListVersion = 0;
+            }
+            logger.info("diagnosticListVersion: {}", diagnosticListVersion);
+            ++diagnosticListVersion;
 
-                Integer maxDiagnosticBinGroupVersion = canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO()
-                        .findMaxDiagnosticBinGroupVersion();
-                if (maxDiagnosticBinGroupVersion == null) {
-                    maxDiagnosticBinGroupVersion = 0;
-                }
-                logger.info("maxDiagnosticBinGroupVersion: {}", maxDiagnosticBinGroupVersion);
+            Integer maxDiagnosticBinGroupVersion = canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO()
+                    .findMaxDiagnosticBinGroupVersion();
+            if (maxDiagnosticBinGroupVersion == null) {
+                maxDiagnosticBinGroupVersion = 0;
+            }
+            logger.info("maxDiagnosticBinGroupVersion: {}", maxDiagnosticBinGroupVersion);
 
-                List<DiagnosticGeneGroupVersion> diagnosticGeneGroupVersions = canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO()
-                        .findByDBinGroupVersion(maxDiagnosticBinGroupVersion);
+            List<DiagnosticGeneGroupVersion> diagnosticGeneGroupVersions = canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO()
+                    .findByDBinGroupVersion(maxDiagnosticBinGroupVersion);
 
-                ++maxDiagnosticBinGroupVersion;
+            ++maxDiagnosticBinGroupVersion;
 
-                final DX finalDX = dx;
-                final Integer finalDiagnosticListVersion = diagnosticListVersion;
+            final DX finalDX = dx;
+            final Integer finalDiagnosticListVersion = diagnosticListVersion;
 
-                Files.lines(geneNameInheritanceTierMap.toPath()).forEach(a -> {
+            Files.lines(geneNameInheritanceTierMap.toPath()).forEach(a -> {
 
-                    try {
-                        logger.info(a);
+                try {
+                    logger.info(a);
 
-                        String[] dataSplit = a.split(",");
-                        String gene = dataSplit[0].trim();
-                        List<AnnotationGene> genes = canvasDAOBeanService.getAnnotationGeneDAO().findByName(gene);
-                        if (CollectionUtils.isEmpty(genes)) {
-                            logger.error("Gene not found: %s\n", gene);
-                            return;
-                        }
+                    String[] dataSplit = a.split(",");
+                    String gene = dataSplit[0].trim();
+                    List<AnnotationGene> genes = canvasDAOBeanService.getAnnotationGeneDAO().findByName(gene);
+                    if (CollectionUtils.isEmpty(genes)) {
+                        logger.error("Gene not found: %s\n", gene);
+                        return;
+                    }
 
-                        AnnotationGene annotationGene = genes.get(0);
-                        logger.info(annotationGene.toString());
+                    AnnotationGene annotationGene = genes.get(0);
+                    logger.info(annotationGene.toString());
 
-                        String inheritance = dataSplit[1];
-                        String tier = dataSplit[2];
+                    String inheritance = dataSplit[1];
+                    String tier = dataSplit[2];
 
-                        DiagnosticGene diagnosticGene = new DiagnosticGene(annotationGene, finalDiagnosticListVersion, finalDX, tier,
-                                inheritance);
+                    DiagnosticGene diagnosticGene = new DiagnosticGene(annotationGene, finalDiagnosticListVersion, finalDX, tier,
+                            inheritance);
 
-                        List<DiagnosticGene> foundDiagnosticGenes = canvasDAOBeanService.getDiagnosticGeneDAO()
-                                .findByExample(diagnosticGene);
-                        logger.info("foundDiagnosticGenes.size(): {}", foundDiagnosticGenes.size());
-                        if (CollectionUtils.isEmpty(foundDiagnosticGenes)) {
-                            diagnosticGene.setId(canvasDAOBeanService.getDiagnosticGeneDAO().save(diagnosticGene));
-                        } else {
-                            diagnosticGene = foundDiagnosticGenes.get(0);
-                        }
-                        logger.info(diagnosticGene.toString());
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
+                    List<DiagnosticGene> foundDiagnosticGenes = canvasDAOBeanService.getDiagnosticGeneDAO()
+                            .findByExample(diagnosticGene);
+                    logger.info("foundDiagnosticGenes.size(): {}", foundDiagnosticGenes.size());
+                    if (CollectionUtils.isEmpty(foundDiagnosticGenes)) {
+                        diagnosticGene.setId(canvasDAOBeanService.getDiagnosticGeneDAO().save(diagnosticGene));
+                    } else {
+                        diagnosticGene = foundDiagnosticGenes.get(0);
                     }
+                    logger.info(diagnosticGene.toString());
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                }
 
-                });
+            });
 
-                for (DiagnosticGeneGroupVersion diagnosticGeneGroupVersion : diagnosticGeneGroupVersions) {
+            for (DiagnosticGeneGroupVersion diagnosticGeneGroupVersion : diagnosticGeneGroupVersions) {
 
-                    DiagnosticGeneGroupVersionPK diagnosticGeneGroupVersionPK = new DiagnosticGeneGroupVersionPK(
-                            maxDiagnosticBinGroupVersion, diagnosticGeneGroupVersion.getDx().getId(),
-                            diagnosticGeneGroupVersion.getId().getDiagnosticListVersion());
-                    DiagnosticGeneGroupVersion newDiagnosticGeneGroupVersion = new DiagnosticGeneGroupVersion(diagnosticGeneGroupVersionPK);
-                    newDiagnosticGeneGroupVersion.setDx(diagnosticGeneGroupVersion.getDx());
-                    newDiagnosticGeneGroupVersion
-                            .setId(canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO().save(newDiagnosticGeneGroupVersion));
-                    logger.info(newDiagnosticGeneGroupVersion.toString());
-                }
-
-                DiagnosticGeneGroupVersionPK diagnosticGeneGroupVersionPK = new DiagnosticGeneGroupVersionPK(maxDiagnosticBinGroupVersion,
-                        dx.getId(), diagnosticListVersion);
+                DiagnosticGeneGroupVersionPK diagnosticGeneGroupVersionPK = new DiagnosticGeneGroupVersionPK(
+                        maxDiagnosticBinGroupVersion, diagnosticGeneGroupVersion.getDx().getId(),
+                        diagnosticGeneGroupVersion.getId().getDiagnosticListVersion());
                 DiagnosticGeneGroupVersion newDiagnosticGeneGroupVersion = new DiagnosticGeneGroupVersion(diagnosticGeneGroupVersionPK);
-                newDiagnosticGeneGroupVersion.setDx(dx);
+                newDiagnosticGeneGroupVersion.setDx(diagnosticGeneGroupVersion.getDx());
                 newDiagnosticGeneGroupVersion
                         .setId(canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO().save(newDiagnosticGeneGroupVersion));
                 logger.info(newDiagnosticGeneGroupVersion.toString());
-
-                UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
-                callable.setNote(String.format("Adding/Updating Diagnostic Gene List: %s", dx.toString()));
-                Executors.newSingleThreadExecutor().submit(callable).get();
-
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
             }
 
+            DiagnosticGeneGroupVersionPK diagnosticGeneGroupVersionPK = new DiagnosticGeneGroupVersionPK(maxDiagnosticBinGroupVersion,
+                    dx.getId(), diagnosticListVersion);
+            DiagnosticGeneGroupVersion newDiagnosticGeneGroupVersion = new DiagnosticGeneGroupVersion(diagnosticGeneGroupVersionPK);
+            newDiagnosticGeneGroupVersion.setDx(dx);
+            newDiagnosticGeneGroupVersion
+                    .setId(canvasDAOBeanService.getDiagnosticGeneGroupVersionDAO().save(newDiagnosticGeneGroupVersion));
+            logger.info(newDiagnosticGeneGroupVersion.toString());
+
+            UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
+            callable.setNote(String.format("Adding/Updating Diagnostic Gene List: %s", dx.toString()));
+            callable.call();
+
         });
 
         return null;
@@ -40,6 +40,8 @@ import org.renci.canvas.dao.refseq.model.RegionGroupRegion;
 import org.renci.canvas.dao.refseq.model.TranscriptMaps;
 import org.renci.canvas.dao.refseq.model.TranscriptMapsExons;
 import org.renci.canvas.primer.commons.Interval;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +54,9 @@ public class PersistAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--diagnosticResultVersionId", description = "DiagnosticResultVersion identifier", required = false, multiValued = false)
     private Integer diagnosticResultVersionId;
 
@@ -69,240 +74,235 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        Executors.newSingleThreadExecutor().submit(() -> {
-
-            try {
+        primerJobService.submit("ncgenes:persist", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME, () -> {
 
-                DiagnosticResultVersion tmpDiagnosticResultVersion = null;
+            DiagnosticResultVersion tmpDiagnosticResultVersion = null;
 
-                if (diagnosticResultVersionId != null) {
-                    tmpDiagnosticResultVersion = canvasDAOBeanService.getDiagnosticResultVersionDAO().findById(diagnosticResultVersionId);
-                }
+            if (diagnosticResultVersionId != null) {
+                tmpDiagnosticResultVersion = canvasDAOBeanService.getDiagnosticResultVersionDAO().findById(diagnosticResultVersionId);
+            }
 
-                if (tmpDiagnosticResultVersion == null) {
-                    // get latest
-                    List<DiagnosticResultVersion> allDiagnosticResultVersions = canvasDAOBeanService.getDiagnosticResultVersionDAO()
-                            .findAll();
-                    allDiagnosticResultVersions.sort((a, b) -> b.getId().compareTo(a.getId()));
-                    tmpDiagnosticResultVersion = allDiagnosticResultVersions.get(0);
-                }
+            if (tmpDiagnosticResultVersion == null) {
+                // get latest
+                List<DiagnosticResultVersion> allDiagnosticResultVersions = canvasDAOBeanService.getDiagnosticResultVersionDAO()
+                        .findAll();
+                allDiagnosticResultVersions.sort((a, b) -> b.getId().compareTo(a.getId()));
+                tmpDiagnosticResultVersion = allDiagnosticResultVersions.get(0);
+            }
 
-                final DiagnosticResultVersion diagnosticResultVersion = tmpDiagnosticResultVersion;
-                logger.info(diagnosticResultVersion.toString());
+            final DiagnosticResultVersion diagnosticResultVersion = tmpDiagnosticResultVersion;
+            logger.info(diagnosticResultVersion.toString());
 
-                List<DiagnosticGene> diagnosticGenes = canvasDAOBeanService.getDiagnosticGeneDAO()
-                        .findByGroupVersionAndExternalNamespaceAndVersion(diagnosticResultVersion.getDiagnosticBinGroupVersion(), "refseq",
-                                diagnosticResultVersion.getRefseqVersion().toString());
+            List<DiagnosticGene> diagnosticGenes = canvasDAOBeanService.getDiagnosticGeneDAO()
+                    .findByGroupVersionAndExternalNamespaceAndVersion(diagnosticResultVersion.getDiagnosticBinGroupVersion(), "refseq",
+                            diagnosticResultVersion.getRefseqVersion().toString());
 
-                if (CollectionUtils.isNotEmpty(diagnosticGenes)) {
-                    logger.info("diagnosticGenes.size(): {}", diagnosticGenes.size());
+            if (CollectionUtils.isNotEmpty(diagnosticGenes)) {
+                logger.info("diagnosticGenes.size(): {}", diagnosticGenes.size());
 
-                    Set<Interval> intervals = new HashSet<>();
-                    List<String> prefixExclude = Arrays.asList("NR_", "XR_");
+                Set<Interval> intervals = new HashSet<>();
+                List<String> prefixExclude = Arrays.asList("NR_", "XR_");
 
-                    ExecutorService es = Executors.newFixedThreadPool(4);
+                ExecutorService es = Executors.newFixedThreadPool(4);
 
-                    for (DiagnosticGene diagnosticGene : diagnosticGenes) {
+                for (DiagnosticGene diagnosticGene : diagnosticGenes) {
 
-                        es.submit(() -> {
+                    es.submit(() -> {
 
-                            try {
-                                logger.info(diagnosticGene.toString());
+                        try {
+                            logger.info(diagnosticGene.toString());
 
-                                AnnotationGene annotationGene = diagnosticGene.getGene();
+                            AnnotationGene annotationGene = diagnosticGene.getGene();
 
-                                List<AnnotationGeneExternalId> annotationGeneExternalIds = canvasDAOBeanService
-                                        .getAnnotationGeneExternalIdDAO().findByAnnotationGeneId(annotationGene.getId());
+                            List<AnnotationGeneExternalId> annotationGeneExternalIds = canvasDAOBeanService
+                                    .getAnnotationGeneExternalIdDAO().findByAnnotationGeneId(annotationGene.getId());
 
-                                if (CollectionUtils.isNotEmpty(annotationGeneExternalIds)) {
-                                    logger.debug("annotationGeneExternalIds.size(): {}", annotationGeneExternalIds.size());
+                            if (CollectionUtils.isNotEmpty(annotationGeneExternalIds)) {
+                                logger.debug("annotationGeneExternalIds.size(): {}", annotationGeneExternalIds.size());
 
-                                    List<AnnotationGeneExternalId> filteredAnnotationGeneExternalIds = annotationGeneExternalIds.stream()
-                                            .filter(b -> "refseq".equals(b.getId().getNamespace()) && diagnosticResultVersion
-                                                    .getRefseqVersion().toString().equals(b.getNamespaceVersion()))
-                                            .collect(Collectors.toList());
+                                List<AnnotationGeneExternalId> filteredAnnotationGeneExternalIds = annotationGeneExternalIds.stream()
+                                        .filter(b -> "refseq".equals(b.getId().getNamespace()) && diagnosticResultVersion
+                                                .getRefseqVersion().toString().equals(b.getNamespaceVersion()))
+                                        .collect(Collectors.toList());
 
-                                    if (CollectionUtils.isNotEmpty(filteredAnnotationGeneExternalIds)) {
-                                        logger.debug("filteredExternals.size(): {}", filteredAnnotationGeneExternalIds.size());
+                                if (CollectionUtils.isNotEmpty(filteredAnnotationGeneExternalIds)) {
+                                    logger.debug("filteredExternals.size(): {}", filteredAnnotationGeneExternalIds.size());
 
-                                        for (AnnotationGeneExternalId externalAnnotationGene : filteredAnnotationGeneExternalIds) {
+                                    for (AnnotationGeneExternalId externalAnnotationGene : filteredAnnotationGeneExternalIds) {
 
-                                            RefSeqGene refseqGene = canvasDAOBeanService.getRefSeqGeneDAO()
-                                                    .findById(externalAnnotationGene.getId().getExternalId());
+                                        RefSeqGene refseqGene = canvasDAOBeanService.getRefSeqGeneDAO()
+                                                .findById(externalAnnotationGene.getId().getExternalId());
 
-                                            Optional<AnnotationGeneSynonym> optionalAnnotationGeneSynonym = annotationGene.getSynonyms()
-                                                    .parallelStream().filter(b -> b.getId().getSynonym().equals(refseqGene.getName()))
-                                                    .findAny();
+                                        Optional<AnnotationGeneSynonym> optionalAnnotationGeneSynonym = annotationGene.getSynonyms()
+                                                .parallelStream().filter(b -> b.getId().getSynonym().equals(refseqGene.getName()))
+                                                .findAny();
 
-                                            String geneName = null;
-                                            if (optionalAnnotationGeneSynonym.isPresent()
-                                                    && !refseqGene.getName().equals(diagnosticGene.getGene().getPreferredName())) {
-                                                geneName = diagnosticGene.getGene().getPreferredName();
-                                            } else {
-                                                geneName = refseqGene.getName();
-                                            }
+                                        String geneName = null;
+                                        if (optionalAnnotationGeneSynonym.isPresent()
+                                                && !refseqGene.getName().equals(diagnosticGene.getGene().getPreferredName())) {
+                                            geneName = diagnosticGene.getGene().getPreferredName();
+                                        } else {
+                                            geneName = refseqGene.getName();
+                                        }
 
-                                            List<TranscriptMaps> transcriptMapsList = canvasDAOBeanService.getTranscriptMapsDAO()
-                                                    .findByGeneIdAndGenomeRefId(refseqGene.getId(),
-                                                            diagnosticResultVersion.getGenomeRef().getId());
+                                        List<TranscriptMaps> transcriptMapsList = canvasDAOBeanService.getTranscriptMapsDAO()
+                                                .findByGeneIdAndGenomeRefId(refseqGene.getId(),
+                                                        diagnosticResultVersion.getGenomeRef().getId());
 
-                                            List<TranscriptMaps> filteredTranscriptMapsList = transcriptMapsList.stream()
-                                                    .filter(a -> a.getGenomeRefSeq().getSequenceType().getId().equals("Chromosome")
-                                                            && !prefixExclude.contains(a.getTranscript().getId().substring(0, 3)))
-                                                    .collect(Collectors.toList());
+                                        List<TranscriptMaps> filteredTranscriptMapsList = transcriptMapsList.stream()
+                                                .filter(a -> a.getGenomeRefSeq().getSequenceType().getId().equals("Chromosome")
+                                                        && !prefixExclude.contains(a.getTranscript().getId().substring(0, 3)))
+                                                .collect(Collectors.toList());
 
-                                            Map<String, List<TranscriptMaps>> transcript2TranscriptMapsMap = new HashMap<>();
+                                        Map<String, List<TranscriptMaps>> transcript2TranscriptMapsMap = new HashMap<>();
 
-                                            for (TranscriptMaps transcriptMaps : filteredTranscriptMapsList) {
-                                                String key = transcriptMaps.getTranscript().getId();
-                                                if (!transcript2TranscriptMapsMap.containsKey(key)) {
-                                                    transcript2TranscriptMapsMap.put(key, new ArrayList<>());
-                                                }
-                                                transcript2TranscriptMapsMap.get(key).add(transcriptMaps);
+                                        for (TranscriptMaps transcriptMaps : filteredTranscriptMapsList) {
+                                            String key = transcriptMaps.getTranscript().getId();
+                                            if (!transcript2TranscriptMapsMap.containsKey(key)) {
+                                                transcript2TranscriptMapsMap.put(key, new ArrayList<>());
                                             }
+                                            transcript2TranscriptMapsMap.get(key).add(transcriptMaps);
+                                        }
 
-                                            for (TranscriptMaps transcriptMaps : filteredTranscriptMapsList) {
-
-                                                List<RefSeqCodingSequence> refSeqCodingSequenceList = canvasDAOBeanService
-                                                        .getRefSeqCodingSequenceDAO().findByRefSeqVersionAndTranscriptId(
-                                                                diagnosticResultVersion.getRefseqVersion().toString(),
-                                                                transcriptMaps.getTranscript().getId());
+                                        for (TranscriptMaps transcriptMaps : filteredTranscriptMapsList) {
 
-                                                Range<Integer> proteinRange = null;
-                                                if (CollectionUtils.isNotEmpty(refSeqCodingSequenceList)) {
-                                                    RefSeqCodingSequence refSeqCDS = refSeqCodingSequenceList.get(0);
-                                                    List<RegionGroupRegion> rgrList = canvasDAOBeanService.getRegionGroupRegionDAO()
-                                                            .findByRefSeqCodingSequenceId(refSeqCDS.getId());
-                                                    if (CollectionUtils.isNotEmpty(rgrList)) {
-                                                        proteinRange = rgrList.get(0).getId().getRegionRange();
-                                                    }
-                                                }
+                                            List<RefSeqCodingSequence> refSeqCodingSequenceList = canvasDAOBeanService
+                                                    .getRefSeqCodingSequenceDAO().findByRefSeqVersionAndTranscriptId(
+                                                            diagnosticResultVersion.getRefseqVersion().toString(),
+                                                            transcriptMaps.getTranscript().getId());
 
-                                                if ("-".equals(transcriptMaps.getStrand())) {
-                                                    transcriptMaps.getExons()
-                                                            .sort((a, b) -> b.getId().getExonNum().compareTo(a.getId().getExonNum()));
-                                                } else {
-                                                    transcriptMaps.getExons()
-                                                            .sort((a, b) -> a.getId().getExonNum().compareTo(b.getId().getExonNum()));
+                                            Range<Integer> proteinRange = null;
+                                            if (CollectionUtils.isNotEmpty(refSeqCodingSequenceList)) {
+                                                RefSeqCodingSequence refSeqCDS = refSeqCodingSequenceList.get(0);
+                                                List<RegionGroupRegion> rgrList = canvasDAOBeanService.getRegionGroupRegionDAO()
+                                                        .findByRefSeqCodingSequenceId(refSeqCDS.getId());
+                                                if (CollectionUtils.isNotEmpty(rgrList)) {
+                                                    proteinRange = rgrList.get(0).getId().getRegionRange();
                                                 }
+                                            }
 
-                                                int idx = 0;
+                                            if ("-".equals(transcriptMaps.getStrand())) {
+                                                transcriptMaps.getExons()
+                                                        .sort((a, b) -> b.getId().getExonNum().compareTo(a.getId().getExonNum()));
+                                            } else {
+                                                transcriptMaps.getExons()
+                                                        .sort((a, b) -> a.getId().getExonNum().compareTo(b.getId().getExonNum()));
+                                            }
 
-                                                for (TranscriptMapsExons exons : transcriptMaps.getExons()) {
+                                            int idx = 0;
 
-                                                    Range<Integer> transcriptMapsExonsContigRange = exons.getContigRange();
-                                                    Range<Integer> transcriptMapsExonsTranscriptRange = exons.getTranscriptRange();
+                                            for (TranscriptMapsExons exons : transcriptMaps.getExons()) {
 
-                                                    Integer contigStart = transcriptMapsExonsContigRange.getMinimum();
-                                                    Integer contigEnd = transcriptMapsExonsContigRange.getMaximum();
+                                                Range<Integer> transcriptMapsExonsContigRange = exons.getContigRange();
+                                                Range<Integer> transcriptMapsExonsTranscriptRange = exons.getTranscriptRange();
 
-                                                    if (proteinRange != null) {
+                                                Integer contigStart = transcriptMapsExonsContigRange.getMinimum();
+                                                Integer contigEnd = transcriptMapsExonsContigRange.getMaximum();
 
-                                                        if (proteinRange.isAfter(transcriptMapsExonsTranscriptRange.getMaximum())) {
-                                                            continue;
-                                                        }
+                                                if (proteinRange != null) {
 
-                                                        if (proteinRange.isBefore(transcriptMapsExonsTranscriptRange.getMinimum())) {
-                                                            continue;
-                                                        }
+                                                    if (proteinRange.isAfter(transcriptMapsExonsTranscriptRange.getMaximum())) {
+                                                        continue;
+                                                    }
 
-                                                        if ("-".equals(transcriptMaps.getStrand())) {
+                                                    if (proteinRange.isBefore(transcriptMapsExonsTranscriptRange.getMinimum())) {
+                                                        continue;
+                                                    }
 
-                                                            if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMinimum())) {
-                                                                contigEnd = transcriptMapsExonsContigRange.getMaximum()
-                                                                        - (proteinRange.getMinimum()
-                                                                                - transcriptMapsExonsTranscriptRange.getMinimum());
-                                                            }
+                                                    if ("-".equals(transcriptMaps.getStrand())) {
 
-                                                            if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMaximum())) {
-                                                                contigStart = transcriptMapsExonsContigRange.getMaximum()
-                                                                        - (proteinRange.getMaximum()
-                                                                                - transcriptMapsExonsTranscriptRange.getMinimum());
-                                                            }
+                                                        if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMinimum())) {
+                                                            contigEnd = transcriptMapsExonsContigRange.getMaximum()
+                                                                    - (proteinRange.getMinimum()
+                                                                            - transcriptMapsExonsTranscriptRange.getMinimum());
+                                                        }
 
+                                                        if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMaximum())) {
+                                                            contigStart = transcriptMapsExonsContigRange.getMaximum()
+                                                                    - (proteinRange.getMaximum()
+                                                                            - transcriptMapsExonsTranscriptRange.getMinimum());
                                                         }
 
-                                                        if ("+".equals(transcriptMaps.getStrand())) {
+                                                    }
 
-                                                            if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMinimum())) {
-                                                                contigStart = transcriptMapsExonsContigRange.getMinimum()
-                                                                        + (proteinRange.getMinimum()
-                                                                                - transcriptMapsExonsTranscriptRange.getMinimum());
-                                                            }
+                                                    if ("+".equals(transcriptMaps.getStrand())) {
 
-                                                            if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMaximum())) {
-                                                                contigEnd = transcriptMapsExonsContigRange.getMaximum()
-                                                                        - (transcriptMapsExonsTranscriptRange.getMaximum()
-                                                                                - proteinRange.getMaximum());
-                                                            }
+                                                        if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMinimum())) {
+                                                            contigStart = transcriptMapsExonsContigRange.getMinimum()
+                                                                    + (proteinRange.getMinimum()
+                                                                            - transcriptMapsExonsTranscriptRange.getMinimum());
+                                                        }
 
+                                                        if (transcriptMapsExonsTranscriptRange.contains(proteinRange.getMaximum())) {
+                                                            contigEnd = transcriptMapsExonsContigRange.getMaximum()
+                                                                    - (transcriptMapsExonsTranscriptRange.getMaximum()
+                                                                            - proteinRange.getMaximum());
                                                         }
+
                                                     }
+                                                }
 
-                                                    Range<Integer> contigRange = Range.between(contigStart, contigEnd);
+                                                Range<Integer> contigRange = Range.between(contigStart, contigEnd);
 
-                                                    intervals.add(new Interval(transcriptMaps.getGenomeRefSeq().getId(),
-                                                            contigRange.getMinimum() - 2, contigRange.getMaximum() + 2, geneName, idx++,
-                                                            transcriptMaps.getTranscript().getId(), diagnosticGene.getDx().getId()));
+                                                intervals.add(new Interval(transcriptMaps.getGenomeRefSeq().getId(),
+                                                        contigRange.getMinimum() - 2, contigRange.getMaximum() + 2, geneName, idx++,
+                                                        transcriptMaps.getTranscript().getId(), diagnosticGene.getDx().getId()));
 
-                                                    if (persistExons) {
+                                                if (persistExons) {
 
-                                                        Integer mapNum = transcript2TranscriptMapsMap
-                                                                .get(transcriptMaps.getTranscript().getId()).indexOf(transcriptMaps) + 1;
+                                                    Integer mapNum = transcript2TranscriptMapsMap
+                                                            .get(transcriptMaps.getTranscript().getId()).indexOf(transcriptMaps) + 1;
 
-                                                        List<DXExons> foundExons = canvasDAOBeanService.getDXExonsDAO()
-                                                                .findByListVersionAndTranscriptAndExonAndMapNum(
-                                                                        diagnosticResultVersion.getId(),
-                                                                        transcriptMaps.getTranscript().getId(), idx, mapNum);
-
-                                                        if (CollectionUtils.isEmpty(foundExons)) {
-                                                            DXExons dxExons = new DXExons(diagnosticResultVersion.getId(), annotationGene,
-                                                                    transcriptMaps.getTranscript().getId(), idx,
-                                                                    transcriptMaps.getGenomeRefSeq().getId(), contigRange.getMinimum() - 2,
-                                                                    contigRange.getMaximum() + 2, mapNum);
-                                                            dxExons.setId(canvasDAOBeanService.getDXExonsDAO().save(dxExons));
-                                                            logger.info(dxExons.toString());
-                                                        }
+                                                    List<DXExons> foundExons = canvasDAOBeanService.getDXExonsDAO()
+                                                            .findByListVersionAndTranscriptAndExonAndMapNum(
+                                                                    diagnosticResultVersion.getId(),
+                                                                    transcriptMaps.getTranscript().getId(), idx, mapNum);
 
+                                                    if (CollectionUtils.isEmpty(foundExons)) {
+                                                        DXExons dxExons = new DXExons(diagnosticResultVersion.getId(), annotationGene,
+                                                                transcriptMaps.getTranscript().getId(), idx,
+                                                                transcriptMaps.getGenomeRefSeq().getId(), contigRange.getMinimum() - 2,
+                                                                contigRange.getMaximum() + 2, mapNum);
+                                                        dxExons.setId(canvasDAOBeanService.getDXExonsDAO().save(dxExons));
+                                                        logger.info(dxExons.toString());
                                                     }
 
                                                 }
+
                                             }
                                         }
                                     }
                                 }
-                            } catch (CANVASDAOException e) {
-                                logger.error(e.getMessage(), e);
                             }
+                        } catch (CANVASDAOException e) {
+                            logger.error(e.getMessage(), e);
+                        }
 
-                        });
+                    });
 
-                    }
-
-                    es.shutdown();
-                    if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
-                        es.shutdownNow();
-                    }
+                }
 
-                    File outputDir = new File(String.format("%s/%s", outputDirectory, diagnosticResultVersion.getId()));
-                    if (!outputDir.exists()) {
-                        outputDir.mkdirs();
-                    }
+                es.shutdown();
+                if (!es.awaitTermination(1L, TimeUnit.HOURS)) {
+                    es.shutdownNow();
+                }
 
-                    writeDXGeneFile(intervals, outputDir);
+                File outputDir = new File(String.format("%s/%s", outputDirectory, diagnosticResultVersion.getId()));
+                if (!outputDir.exists()) {
+                    outputDir.mkdirs();
+                }
 
-                    writeExonsFile(intervals, outputDir);
+                writeDXGeneFile(intervals, outputDir);
 
-                    writeExonsBedFile(intervals, diagnosticResultVersion.getId(), outputDir);
+                writeExonsFile(intervals, outputDir);
 
-                    writeDXGeneBedFiles(intervals, diagnosticResultVersion.getId(), outputDir);
+                writeExonsBedFile(intervals, diagnosticResultVersion.getId(), outputDir);
 
-                }
+                writeDXGeneBedFiles(intervals, diagnosticResultVersion.getId(), outputDir);
 
-            } catch (CANVASDAOException | InterruptedException | IOException e) {
-                logger.error(e.getMessage(), e);
             }
 
+
         });
 
         return null;
@@ -3,7 +3,6 @@ package org.renci.canvas.primer.gr.commands;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.concurrent.Executors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.karaf.shell.api.action.Action;
@@ -13,6 +12,8 @@ import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,9 @@ public class CreateCombinedFastaFileAction implements Action {
     @Reference
     private BundleContext bundleContext;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--outputDirectory", required = false, multiValued = false)
     private String outputDirectory;
 
@@ -48,7 +52,8 @@ public class CreateCombinedFastaFileAction implements Action {
             outputDir = new File(outputDirectory);
         }
 
-        Executors.newSingleThreadExecutor().submit(new CreateCombinedFastaFileCallable(outputDir, canvasDAOBeanService));
+        primerJobService.submit("genome-reference:create-combined-fasta-file", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME,
+                new CreateCombinedFastaFileCallable(outputDir, canvasDAOBeanService)::call);
         return null;
     }
 
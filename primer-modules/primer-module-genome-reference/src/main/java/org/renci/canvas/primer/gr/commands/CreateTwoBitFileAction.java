@@ -0,0 +1,59 @@
+package org.renci.canvas.primer.gr.commands;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.renci.canvas.primer.commons.reference.TwoBitReferenceStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Command(scope = "genome-reference", name = "create-2bit-file", description = "Convert the reference builds to memory mappable 2bit files")
+@Service
+public class CreateTwoBitFileAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreateTwoBitFileAction.class);
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--outputDirectory", required = false, multiValued = false)
+    private String outputDirectory;
+
+    public CreateTwoBitFileAction() {
+        super();
+    }
+
+    @Override
+    public Object execute() throws Exception {
+        logger.debug("ENTERING execute()");
+
+        File outputDir = null;
+        if (StringUtils.isEmpty(outputDirectory)) {
+            Path outputPath = Paths.get(System.getProperty("karaf.data"), TwoBitReferenceStore.REFERENCE_DIRECTORY);
+            outputDir = outputPath.toFile();
+            outputDir.mkdirs();
+        } else {
+            outputDir = new File(outputDirectory);
+        }
+
+        primerJobService.submit("genome-reference:create-2bit-file", null, new CreateTwoBitFileCallable(outputDir)::call);
+        return null;
+    }
+
+    public String getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory(String outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.renci.canvas.primer.gr.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.renci.canvas.primer.commons.reference.ReferenceBuild;
+import org.renci.canvas.primer.commons.reference.TwoBitWriter;
+import org.renci.gerese4j.core.GeReSe4jBuild;
+import org.renci.gerese4j.core.ReferenceSequence;
+import org.renci.gerese4j.core.impl.GeReSe4jBuild_37_3;
+import org.renci.gerese4j.core.impl.GeReSe4jBuild_38_7;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CreateTwoBitFileCallable implements Callable<Void> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CreateTwoBitFileCallable.class);
+
+    private File outputDirectory;
+
+    public CreateTwoBitFileCallable(File outputDirectory) {
+        super();
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public Void call() throws Exception {
+        logger.debug("ENTERING call()");
+
+        long start = System.currentTimeMillis();
+
+        Map<ReferenceBuild, GeReSe4jBuild> gerese4jBuilds = new LinkedHashMap<>();
+        gerese4jBuilds.put(ReferenceBuild.GRCH37_P13, GeReSe4jBuild_37_3.getInstance());
+        gerese4jBuilds.put(ReferenceBuild.GRCH38_P7, GeReSe4jBuild_38_7.getInstance());
+
+        for (ReferenceBuild referenceBuild : gerese4jBuilds.keySet()) {
+            GeReSe4jBuild gerese4jBuild = gerese4jBuilds.get(referenceBuild);
+
+            List<String> sequenceNames = new ArrayList<>(gerese4jBuild.getIndices());
+
+            File twoBitFile = new File(outputDirectory, referenceBuild.getFileName());
+            File tmpTwoBitFile = new File(outputDirectory, String.format("%s.tmp", referenceBuild.getFileName()));
+            logger.info(twoBitFile.getAbsolutePath());
+
+            try (TwoBitWriter writer = new TwoBitWriter(tmpTwoBitFile, sequenceNames)) {
+                for (String key : sequenceNames) {
+                    ReferenceSequence referenceSequence = gerese4jBuild.getReferenceSequence(key, false);
+                    writer.add(key, referenceSequence.getSequence().toString());
+                    gerese4jBuild.getReferenceSequenceCache().clear();
+                }
+            }
+
+            if (!tmpTwoBitFile.renameTo(twoBitFile)) {
+                throw new IOException(String.format("Could not rename %s to %s", tmpTwoBitFile.getAbsolutePath(),
+                        twoBitFile.getAbsolutePath()));
+            }
+
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("duration = {}", String.format("%d seconds", (end - start) / 1000));
+
+        return null;
+    }
+
+}
@@ -1,10 +1,10 @@
 package org.renci.canvas.primer.gr.commands;
 
-import java.util.concurrent.Executors;
-
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +14,9 @@ public class DownloadAndSerializeAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadAndSerializeAction.class);
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     public DownloadAndSerializeAction() {
         super();
     }
@@ -21,7 +24,7 @@ public class DownloadAndSerializeAction implements Action {
     @Override
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
-        Executors.newSingleThreadExecutor().submit(new DownloadAndSerializeCallable());
+        primerJobService.submit("genome-reference:serialize", null, new DownloadAndSerializeCallable()::call);
         return null;
     }
 
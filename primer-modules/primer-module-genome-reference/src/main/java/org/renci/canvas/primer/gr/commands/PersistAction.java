@@ -1,12 +1,12 @@
 package org.renci.canvas.primer.gr.commands;
 
-import java.util.concurrent.Executors;
-
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +19,9 @@ public class PersistAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     public PersistAction() {
         super();
     }
@@ -27,7 +30,8 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        Executors.newSingleThreadExecutor().submit(new PersistRunnable(canvasDAOBeanService));
+        primerJobService.submit("genome-reference:persist", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME,
+                new PersistRunnable(canvasDAOBeanService)::call);
         return null;
     }
 }
@@ -0,0 +1,181 @@
+package org.renci.canvas.primer.gnomad.commands;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.commons.LocatedVariantFactory;
+import org.renci.canvas.dao.gnomad.model.GnomADMaxVariantFrequency;
+import org.renci.canvas.dao.gnomad.model.GnomADMaxVariantFrequencyPK;
+import org.renci.canvas.dao.gnomad.model.GnomADVariantFrequency;
+import org.renci.canvas.dao.gnomad.model.GnomADVariantFrequencyPK;
+import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
+import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.VCFIngestEngine;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Turns the non-SNP alleles of gnomAD sites VCF records into GnomADVariantFrequency rows. A record is decoded once with
+ * {@link GnomADSitesRecord}, and only when one of its alleles is kept. Rows go to the bulk writers when they are given, otherwise
+ * through the DAO. The GnomADMaxVariantFrequency row of each allele is derived from the same decoded record, so no second pass over
+ * the frequency table is needed.
+ */
+public class GnomADIngestEngine extends VCFIngestEngine<VariantContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(GnomADIngestEngine.class);
+
+    private final CANVASDAOBeanService canvasDAOBeanService;
+
+    private final GenomeRef genomeRef;
+
+    private final Map<String, GenomeRefSeq> genomeRefSeqs;
+
+    private final List<VariantType> allVariantTypes;
+
+    private final LocatedVariantIndex locatedVariantIndex;
+
+    private final BulkWriter<GnomADVariantFrequency> variantFrequencyWriter;
+
+    private final BulkWriter<GnomADMaxVariantFrequency> maxVariantFrequencyWriter;
+
+    private final String version;
+
+    private final GnomADPopulationKeys keys = new GnomADPopulationKeys();
+
+    public GnomADIngestEngine(CANVASDAOBeanService canvasDAOBeanService, GenomeRef genomeRef, Map<String, GenomeRefSeq> genomeRefSeqs,
+            List<VariantType> allVariantTypes, LocatedVariantIndex locatedVariantIndex,
+            BulkWriter<GnomADVariantFrequency> variantFrequencyWriter, BulkWriter<GnomADMaxVariantFrequency> maxVariantFrequencyWriter,
+            String version) {
+        super("gnomad");
+        this.canvasDAOBeanService = canvasDAOBeanService;
+        this.genomeRef = genomeRef;
+        this.genomeRefSeqs = genomeRefSeqs;
+        this.allVariantTypes = allVariantTypes;
+        this.locatedVariantIndex = locatedVariantIndex;
+        this.variantFrequencyWriter = variantFrequencyWriter;
+        this.maxVariantFrequencyWriter = maxVariantFrequencyWriter;
+        this.version = version;
+    }
+
+    @Override
+    protected void read(File vcfFile, PipelineEmitter<VariantContext> emitter) throws Exception {
+        readVCF(vcfFile, header -> emitter::emit);
+    }
+
+    @Override
+    protected void persist(VariantContext variantContext) throws Exception {
+
+        GenomeRefSeq genomeRefSeq = genomeRefSeqs.get(variantContext.getContig());
+        if (genomeRefSeq == null) {
+            logger.warn("GenomeRefSeq not found: {}", variantContext.getContig());
+            return;
+        }
+
+        persist(variantContext, genomeRefSeq);
+    }
+
+    private void persist(VariantContext variantContext, GenomeRefSeq genomeRefSeq) throws Exception {
+
+        GnomADSitesRecord record = null;
+
+        List<Allele> alternateAlleles = variantContext.getAlternateAlleles();
+        for (int i = 0; i < alternateAlleles.size(); i++) {
+
+            LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef, genomeRefSeq, variantContext.getStart(),
+                    variantContext.getReference().getDisplayString(), alternateAlleles.get(i).getDisplayString(), allVariantTypes);
+
+            if (locatedVariant.getVariantType().getId().equals("snp")) {
+                continue;
+            }
+
+            if (record == null) {
+                record = GnomADSitesRecord.decode(variantContext, keys);
+            }
+
+            locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+            if (variantFrequencyWriter == null) {
+                // the DAO saves below commit right away, the variant has to be in loc_var first
+                locatedVariantIndex.flush();
+            }
+
+            // stays -1 when no population has a non-zero frequency, such alleles get no max row
+            int maxPopulation = -1;
+            for (int p = 0; p < keys.size(); p++) {
+
+                if (record.getAlleleFrequency(p, i) > (maxPopulation == -1 ? 0D : record.getAlleleFrequency(maxPopulation, i))) {
+                    maxPopulation = p;
+                }
+
+                try {
+
+                    GnomADVariantFrequencyPK variantFrequencyPK = new GnomADVariantFrequencyPK(locatedVariant.getId(), version,
+                            keys.getPopulation(p));
+
+                    GnomADVariantFrequency variantFrequency = variantFrequencyWriter != null ? null
+                            : canvasDAOBeanService.getGnomADVariantFrequencyDAO().findById(variantFrequencyPK);
+                    if (variantFrequency == null) {
+                        variantFrequency = new GnomADVariantFrequency(variantFrequencyPK);
+                    }
+                    variantFrequency.setLocatedVariant(locatedVariant);
+                    variantFrequency.setAlternateAlleleFrequency(record.getAlleleFrequency(p, i));
+                    variantFrequency.setAlternateAlleleCount(record.getAlleleCount(p, i));
+                    variantFrequency.setTotalAlleleCount(record.getAlleleTotal(p));
+                    variantFrequency.setHemizygousCount(record.getHemizygousCount(p, i));
+                    variantFrequency.setHomozygousCount(record.getHomozygousCount(p, i));
+
+                    if (variantFrequencyWriter != null) {
+                        variantFrequencyWriter.write(variantFrequency);
+                    } else {
+                        canvasDAOBeanService.getGnomADVariantFrequencyDAO().save(variantFrequency);
+                    }
+
+                    logger.debug(variantFrequency.toString());
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+
+            if (maxPopulation != -1) {
+                persistMax(locatedVariant, record, i, maxPopulation);
+            }
+
+        }
+
+    }
+
+    private void persistMax(LocatedVariant locatedVariant, GnomADSitesRecord record, int alternateAllele, int population)
+            throws Exception {
+
+        GnomADMaxVariantFrequencyPK maxVariantFrequencyPK = new GnomADMaxVariantFrequencyPK(locatedVariant.getId(), version);
+
+        GnomADMaxVariantFrequency maxVariantFrequency = maxVariantFrequencyWriter != null ? null
+                : canvasDAOBeanService.getGnomADMaxVariantFrequencyDAO().findById(maxVariantFrequencyPK);
+        if (maxVariantFrequency == null) {
+            maxVariantFrequency = new GnomADMaxVariantFrequency(maxVariantFrequencyPK);
+        }
+        maxVariantFrequency.setLocatedVariant(locatedVariant);
+        maxVariantFrequency.setPopulation(keys.getPopulation(population));
+        maxVariantFrequency.setMaxAlleleFrequency(record.getAlleleFrequency(population, alternateAllele));
+        maxVariantFrequency.setAlternateAlleleCount(record.getAlleleCount(population, alternateAllele));
+        maxVariantFrequency.setTotalAlleleCount(record.getAlleleTotal(population));
+
+        if (maxVariantFrequencyWriter != null) {
+            maxVariantFrequencyWriter.write(maxVariantFrequency);
+        } else {
+            canvasDAOBeanService.getGnomADMaxVariantFrequencyDAO().save(maxVariantFrequency);
+        }
+
+        logger.debug(maxVariantFrequency.toString());
+    }
+
+}
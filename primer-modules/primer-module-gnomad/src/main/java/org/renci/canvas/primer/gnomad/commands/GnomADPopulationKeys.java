@@ -0,0 +1,78 @@
+package org.renci.canvas.primer.gnomad.commands;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The per-population INFO keys of a gnomAD sites VCF, formatted once instead of once per record.
+ */
+public class GnomADPopulationKeys {
+
+    public static final List<String> POPULATIONS = Collections
+            .unmodifiableList(Arrays.asList("AFR", "AMR", "ASJ", "EAS", "FIN", "NFE", "OTH", "SAS"));
+
+    private final String[] populations;
+
+    private final String[] alleleFrequencyKeys;
+
+    private final String[] alleleCountKeys;
+
+    private final String[] alleleTotalKeys;
+
+    private final String[] hemizygousCountKeys;
+
+    private final String[] homozygousCountKeys;
+
+    public GnomADPopulationKeys() {
+        this(POPULATIONS);
+    }
+
+    public GnomADPopulationKeys(List<String> populations) {
+        super();
+        int size = populations.size();
+        this.populations = populations.toArray(new String[size]);
+        this.alleleFrequencyKeys = new String[size];
+        this.alleleCountKeys = new String[size];
+        this.alleleTotalKeys = new String[size];
+        this.hemizygousCountKeys = new String[size];
+        this.homozygousCountKeys = new String[size];
+        for (int i = 0; i < size; i++) {
+            String population = this.populations[i];
+            alleleFrequencyKeys[i] = String.format("AF_%s", population);
+            alleleCountKeys[i] = String.format("AC_%s", population);
+            alleleTotalKeys[i] = String.format("AN_%s", population);
+            hemizygousCountKeys[i] = String.format("Hemi_%s", population);
+            homozygousCountKeys[i] = String.format("Hom_%s", population);
+        }
+    }
+
+    public int size() {
+        return populations.length;
+    }
+
+    public String getPopulation(int index) {
+        return populations[index];
+    }
+
+    public String getAlleleFrequencyKey(int index) {
+        return alleleFrequencyKeys[index];
+    }
+
+    public String getAlleleCountKey(int index) {
+        return alleleCountKeys[index];
+    }
+
+    public String getAlleleTotalKey(int index) {
+        return alleleTotalKeys[index];
+    }
+
+    public String getHemizygousCountKey(int index) {
+        return hemizygousCountKeys[index];
+    }
+
+    public String getHomozygousCountKey(int index) {
+        return homozygousCountKeys[index];
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.renci.canvas.primer.gnomad.commands;
+
+import org.renci.canvas.primer.commons.InfoAttributeDecoder;
+
+import htsjdk.variant.variantcontext.CommonInfo;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * The population INFO fields of one gnomAD site, each decoded once into [population][alternate allele] arrays. Missing fields and
+ * "." values decode to 0, as the per-population rows have always been written.
+ */
+public class GnomADSitesRecord {
+
+    private final int alternateAlleleCount;
+
+    private final double[][] alleleFrequencies;
+
+    private final int[][] alleleCounts;
+
+    private final int[] alleleTotals;
+
+    private final int[][] hemizygousCounts;
+
+    private final int[][] homozygousCounts;
+
+    private GnomADSitesRecord(int populationCount, int alternateAlleleCount) {
+        super();
+        this.alternateAlleleCount = alternateAlleleCount;
+        this.alleleFrequencies = new double[populationCount][alternateAlleleCount];
+        this.alleleCounts = new int[populationCount][alternateAlleleCount];
+        this.alleleTotals = new int[populationCount];
+        this.hemizygousCounts = new int[populationCount][alternateAlleleCount];
+        this.homozygousCounts = new int[populationCount][alternateAlleleCount];
+    }
+
+    public static GnomADSitesRecord decode(VariantContext variantContext, GnomADPopulationKeys keys) {
+        int alternateAlleleCount = variantContext.getAlternateAlleles().size();
+        GnomADSitesRecord ret = new GnomADSitesRecord(keys.size(), alternateAlleleCount);
+        CommonInfo commonInfo = variantContext.getCommonInfo();
+        for (int i = 0; i < keys.size(); i++) {
+            InfoAttributeDecoder.decodeDoubles(commonInfo.getAttribute(keys.getAlleleFrequencyKey(i)), ret.alleleFrequencies[i]);
+            InfoAttributeDecoder.decodeInts(commonInfo.getAttribute(keys.getAlleleCountKey(i)), ret.alleleCounts[i]);
+            InfoAttributeDecoder.decodeInts(commonInfo.getAttribute(keys.getHemizygousCountKey(i)), ret.hemizygousCounts[i]);
+            InfoAttributeDecoder.decodeInts(commonInfo.getAttribute(keys.getHomozygousCountKey(i)), ret.homozygousCounts[i]);
+            ret.alleleTotals[i] = InfoAttributeDecoder
+                    .parseInt(InfoAttributeDecoder.firstValue(commonInfo.getAttribute(keys.getAlleleTotalKey(i))));
+        }
+        return ret;
+    }
+
+    public int getAlternateAlleleCount() {
+        return alternateAlleleCount;
+    }
+
+    public double getAlleleFrequency(int population, int alternateAllele) {
+        return alleleFrequencies[population][alternateAllele];
+    }
+
+    public int getAlleleCount(int population, int alternateAllele) {
+        return alleleCounts[population][alternateAllele];
+    }
+
+    public int getAlleleTotal(int population) {
+        return alleleTotals[population];
+    }
+
+    public int getHemizygousCount(int population, int alternateAllele) {
+        return hemizygousCounts[population][alternateAllele];
+    }
+
+    public int getHomozygousCount(int population, int alternateAllele) {
+        return homozygousCounts[population][alternateAllele];
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.renci.canvas.primer.hgmd.commands;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.commons.LocatedVariantFactory;
+import org.renci.canvas.dao.hgmd.model.HGMDLocatedVariant;
+import org.renci.canvas.dao.hgmd.model.HGMDLocatedVariantPK;
+import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
+import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.VCFIngestEngine;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.variantcontext.Allele;
+
+/**
+ * Loads HGMD release files as one (contig, position, ref, alt, accession, class) row per allele, each row becomes an
+ * HGMDLocatedVariant. VCFs are read with the accession in ID and the variant class in INFO/CLASS, anything else is read as a tab
+ * delimited export with a header naming the chromosome, position, ref, alt, accession and class columns.
+ */
+public class HGMDIngestEngine extends VCFIngestEngine<String[]> {
+
+    private static final Logger logger = LoggerFactory.getLogger(HGMDIngestEngine.class);
+
+    private static final List<String> CHROMOSOME_COLUMNS = Arrays.asList("chromosome", "chrom", "chr", "#chrom");
+
+    private static final List<String> POSITION_COLUMNS = Arrays.asList("position", "pos", "startcoord");
+
+    private static final List<String> REF_COLUMNS = Arrays.asList("ref", "reference");
+
+    private static final List<String> ALT_COLUMNS = Arrays.asList("alt", "alternate");
+
+    private static final List<String> ACCESSION_COLUMNS = Arrays.asList("acc_num", "accession", "id");
+
+    private static final List<String> CLASS_COLUMNS = Arrays.asList("tag", "class", "variantclass");
+
+    private final CANVASDAOBeanService canvasDAOBeanService;
+
+    private final GenomeRef genomeRef;
+
+    private final Map<String, GenomeRefSeq> genomeRefSeqs;
+
+    private final List<VariantType> allVariantTypes;
+
+    private final LocatedVariantIndex locatedVariantIndex;
+
+    private final BulkWriter<HGMDLocatedVariant> hgmdLocatedVariantWriter;
+
+    private final Integer version;
+
+    public HGMDIngestEngine(CANVASDAOBeanService canvasDAOBeanService, GenomeRef genomeRef, Map<String, GenomeRefSeq> genomeRefSeqs,
+            List<VariantType> allVariantTypes, LocatedVariantIndex locatedVariantIndex,
+            BulkWriter<HGMDLocatedVariant> hgmdLocatedVariantWriter, Integer version) {
+        super("hgmd");
+        this.canvasDAOBeanService = canvasDAOBeanService;
+        this.genomeRef = genomeRef;
+        this.genomeRefSeqs = genomeRefSeqs;
+        this.allVariantTypes = allVariantTypes;
+        this.locatedVariantIndex = locatedVariantIndex;
+        this.hgmdLocatedVariantWriter = hgmdLocatedVariantWriter;
+        this.version = version;
+    }
+
+    @Override
+    protected void read(File file, PipelineEmitter<String[]> emitter) throws Exception {
+        String name = file.getName();
+        if (name.endsWith(".vcf") || name.endsWith(".vcf.gz")) {
+            // a row per alternate allele
+            readVCF(file, header -> variantContext -> {
+                String variantClass = variantContext.getAttributeAsString("CLASS", null);
+                for (Allele altAllele : variantContext.getAlternateAlleles()) {
+                    emitter.emit(new String[] { variantContext.getContig(), String.valueOf(variantContext.getStart()),
+                            variantContext.getReference().getDisplayString(), altAllele.getDisplayString(), variantContext.getID(),
+                            variantClass });
+                }
+            });
+        } else {
+            readTSV(file, emitter);
+        }
+    }
+
+    @Override
+    protected void persist(String[] row) throws Exception {
+        persist(row[0], Integer.valueOf(row[1]), row[2], row[3], row[4], row[5]);
+    }
+
+    /**
+     * emits a (contig, position, ref, alt, accession, class) row per line, lines without a numeric position are logged and skipped
+     */
+    private void readTSV(File tsvFile, PipelineEmitter<String[]> emitter) throws PrimerException {
+        logger.debug("ENTERING readTSV(File, PipelineEmitter<String[]>)");
+        long start = System.currentTimeMillis();
+
+        long count = 0;
+        try (InputStream is = tsvFile.getName().endsWith(".gz") ? new GZIPInputStream(new FileInputStream(tsvFile), 1 << 16)
+                : new FileInputStream(tsvFile);
+                BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8), 1 << 16)) {
+
+            String line = br.readLine();
+            if (line == null) {
+                return;
+            }
+            List<String> header = new ArrayList<>();
+            for (String column : line.split("\t")) {
+                header.add(column.trim().toLowerCase());
+            }
+            int chromosomeIdx = indexOf(header, CHROMOSOME_COLUMNS, tsvFile);
+            int positionIdx = indexOf(header, POSITION_COLUMNS, tsvFile);
+            int refIdx = indexOf(header, REF_COLUMNS, tsvFile);
+            int altIdx = indexOf(header, ALT_COLUMNS, tsvFile);
+            int accessionIdx = indexOf(header, ACCESSION_COLUMNS, tsvFile);
+            int classIdx = indexOf(header, CLASS_COLUMNS, tsvFile);
+            int columnCount = Collections.max(Arrays.asList(chromosomeIdx, positionIdx, refIdx, altIdx, accessionIdx, classIdx)) + 1;
+
+            while ((line = br.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                count++;
+                records.inc();
+                String[] columns = line.split("\t", -1);
+                if (columns.length < columnCount || !NumberUtils.isDigits(columns[positionIdx])) {
+                    logger.warn("{}: malformed line: {}", tsvFile.getName(), line);
+                    continue;
+                }
+                emitter.emit(new String[] { columns[chromosomeIdx], columns[positionIdx], columns[refIdx], columns[altIdx],
+                        columns[accessionIdx], columns[classIdx] });
+            }
+
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+
+        long end = System.currentTimeMillis();
+        logger.info("{}: {} records in {} seconds", tsvFile.getName(), count, (end - start) / 1000);
+    }
+
+    private int indexOf(List<String> header, List<String> names, File file) throws PrimerException {
+        for (String name : names) {
+            int idx = header.indexOf(name);
+            if (idx != -1) {
+                return idx;
+            }
+        }
+        throw new PrimerException(String.format("%s: none of %s in header", file.getName(), names.toString()));
+    }
+
+    private void persist(String contig, Integer position, String ref, String alt, String accession, String variantClass)
+            throws Exception {
+
+        if (accession == null || ".".equals(accession)) {
+            logger.warn("no accession: {}:{} {}>{}", contig, position, ref, alt);
+            return;
+        }
+
+        GenomeRefSeq genomeRefSeq = genomeRefSeqs.get(contig.startsWith("chr") ? contig.substring(3) : contig);
+        if (genomeRefSeq == null) {
+            logger.warn("GenomeRefSeq not found: {}", contig);
+            return;
+        }
+
+        LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef, genomeRefSeq, position, ref, alt, allVariantTypes);
+        locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+
+        HGMDLocatedVariant hgmdLocatedVariant = new HGMDLocatedVariant(
+                new HGMDLocatedVariantPK(locatedVariant.getId(), accession, version));
+        hgmdLocatedVariant.setLocatedVariant(locatedVariant);
+        hgmdLocatedVariant.setVariantClass(variantClass);
+        hgmdLocatedVariantWriter.write(hgmdLocatedVariant);
+    }
+
+}
@@ -1,15 +1,40 @@
 package org.renci.canvas.primer.hgmd.commands;
 
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.hgmd.model.HGMDLocatedVariant;
+import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
+import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.UpdateDiagnosticResultVersionCallable;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.bulk.MergeStrategy;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.renci.canvas.primer.dao.PrimerDAOBeanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Command(scope = "dbsnp", name = "persist", description = "Persist dbSNP data")
+@Command(scope = "hgmd", name = "persist", description = "Persist HGMD data from the release files in karaf.data/hgmd")
 @Service
 public class PersistAction implements Action {
 
@@ -21,6 +46,26 @@ public class PersistAction implements Action {
     @Reference
     private PrimerDAOBeanService annotationDAOBeanService;
 
+    @Reference
+    private BundleContext bundleContext;
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--version", description = "HGMD version, defaults to the latest persisted version + 1", required = false,
+            multiValued = false)
+    private Integer version;
+
+    @Option(name = "--genomeRefId", description = "GenomeRef of the release, defaults to the 37 GenomeRef for hg19/GRCh37 files and "
+            + "the 38 GenomeRef otherwise", required = false, multiValued = false)
+    private Integer genomeRefId;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
+    @Option(name = "--threads", description = "Number of release files to persist concurrently", required = false, multiValued = false)
+    private Integer threads = 4;
+
     public PersistAction() {
         super();
     }
@@ -29,7 +74,110 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
+        Path hgmdPath = Paths.get(System.getProperty("karaf.data"), "hgmd");
+        File hgmdDir = hgmdPath.toFile();
+
+        List<File> hgmdFiles = new ArrayList<>();
+        File[] files = hgmdDir.listFiles((dir, name) -> name.endsWith(".vcf") || name.endsWith(".vcf.gz") || name.endsWith(".tsv")
+                || name.endsWith(".tsv.gz") || name.endsWith(".txt") || name.endsWith(".txt.gz"));
+        if (files != null) {
+            hgmdFiles.addAll(Arrays.asList(files));
+        }
+        if (hgmdFiles.isEmpty()) {
+            logger.warn("no HGMD files found in {}", hgmdDir.getAbsolutePath());
+            return null;
+        }
+        logger.info("hgmdFiles: {}", hgmdFiles.toString());
+
+        // all files of a run are loaded as one version against one GenomeRef
+        Set<String> builds = hgmdFiles.stream()
+                .map(a -> a.getName().contains("hg19") || a.getName().contains("GRCh37") ? "37" : "38").collect(Collectors.toSet());
+        if (genomeRefId == null && builds.size() > 1) {
+            throw new PrimerException(String.format("%s holds files of more than one build, persist them separately or use --genomeRefId",
+                    hgmdDir.getAbsolutePath()));
+        }
+        String build = builds.iterator().next();
+
+        primerJobService.submit("hgmd:persist", dataSource, () -> {
+
+            if (version == null) {
+                Integer latestVersion = canvasDAOBeanService.getHGMDLocatedVariantDAO().findLatestVersion();
+                version = latestVersion != null ? latestVersion + 1 : 1;
+            }
+            logger.info("version: {}", version);
+
+            GenomeRef genomeRef = null;
+            if (genomeRefId != null) {
+                genomeRef = canvasDAOBeanService.getGenomeRefDAO().findById(genomeRefId);
+            } else {
+                List<GenomeRef> allGenomeRefs = canvasDAOBeanService.getGenomeRefDAO().findAll();
+                genomeRef = allGenomeRefs.stream().filter(a -> a.getName().startsWith(build))
+                        .sorted((a, b) -> a.getName().compareTo(b.getName())).findFirst().orElse(null);
+            }
+            if (genomeRef == null) {
+                throw new PrimerException(String.format("GenomeRef not found: %s", genomeRefId != null ? genomeRefId : build));
+            }
+            logger.info(genomeRef.toString());
+
+            List<VariantType> allVariantTypes = canvasDAOBeanService.getVariantTypeDAO().findAll();
+
+            Map<String, GenomeRefSeq> genomeRefSeqs = canvasDAOBeanService.getGenomeRefSeqDAO()
+                    .findByGenomeRefIdAndSeqType(genomeRef.getId(), "Chromosome").stream()
+                    .collect(Collectors.toMap(a -> a.getContig(), a -> a, (a, b) -> a));
+
+            DataSource canvasDataSource = BulkWriterFactory.lookupDataSource(bundleContext, dataSource);
+
+            try (LocatedVariantIndex locatedVariantIndex = LocatedVariantIndex.load(canvasDataSource, genomeRef.getId());
+                    BulkWriter<HGMDLocatedVariant> hgmdLocatedVariantWriter = BulkWriterFactory
+                            .create(canvasDataSource, HGMDLocatedVariant.class, MergeStrategy.UPSERT)
+                            .dependsOn(locatedVariantIndex.getWriter())) {
+
+                HGMDIngestEngine engine = new HGMDIngestEngine(canvasDAOBeanService, genomeRef, genomeRefSeqs, allVariantTypes,
+                        locatedVariantIndex, hgmdLocatedVariantWriter, version);
+                engine.ingest(hgmdFiles, threads);
+
+                logger.info("rows written: {}", hgmdLocatedVariantWriter.getRowCount());
+            }
+
+            UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
+            callable.setNote(String.format("Persisted latest HGMD: %s", version));
+            callable.call();
+
+        });
+
         return null;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public Integer getGenomeRefId() {
+        return genomeRefId;
+    }
+
+    public void setGenomeRefId(Integer genomeRefId) {
+        this.genomeRefId = genomeRefId;
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
 }
@@ -0,0 +1,49 @@
+package org.renci.canvas.primer.init.commands;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Command(scope = "primer", name = "job-cancel", description = "Cancel a queued or running job")
+@Service
+public class JobCancelAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobCancelAction.class);
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--jobId", description = "Job identifier", required = true, multiValued = false)
+    private Long jobId;
+
+    public JobCancelAction() {
+        super();
+    }
+
+    @Override
+    public Object execute() throws Exception {
+        logger.debug("ENTERING execute()");
+
+        if (primerJobService.cancel(jobId)) {
+            System.out.println(String.format("Cancelling job: %s", jobId));
+        } else {
+            System.out.println(String.format("Job not found or already finished: %s", jobId));
+        }
+
+        return null;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+}
@@ -0,0 +1,51 @@
+package org.renci.canvas.primer.init.commands;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.renci.canvas.primer.commons.job.PrimerJob;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Command(scope = "primer", name = "job-status", description = "Show the status of a job")
+@Service
+public class JobStatusAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusAction.class);
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--jobId", description = "Job identifier", required = true, multiValued = false)
+    private Long jobId;
+
+    public JobStatusAction() {
+        super();
+    }
+
+    @Override
+    public Object execute() throws Exception {
+        logger.debug("ENTERING execute()");
+
+        PrimerJob job = primerJobService.getJob(jobId);
+        if (job == null) {
+            System.out.println(String.format("Job not found: %s", jobId));
+            return null;
+        }
+        System.out.println(job.toString());
+
+        return null;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+}
@@ -0,0 +1,62 @@
+package org.renci.canvas.primer.init.commands;
+
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.renci.canvas.primer.commons.job.PrimerJob;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Command(scope = "primer", name = "jobs", description = "List submitted jobs")
+@Service
+public class JobsAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobsAction.class);
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--all", description = "Include finished jobs", required = false, multiValued = false)
+    private Boolean all = Boolean.FALSE;
+
+    public JobsAction() {
+        super();
+    }
+
+    @Override
+    public Object execute() throws Exception {
+        logger.debug("ENTERING execute()");
+
+        ShellTable table = new ShellTable();
+        table.column("Id");
+        table.column("Name");
+        table.column("DataSource");
+        table.column("State");
+        table.column("Submitted");
+        table.column("Duration (s)");
+
+        for (PrimerJob job : primerJobService.getJobs()) {
+            if (!all && job.getState().isDone()) {
+                continue;
+            }
+            table.addRow().addContent(job.getId(), job.getName(), job.getDataSource() != null ? job.getDataSource() : "",
+                    job.getState(), job.getSubmitted(), job.getDuration() != null ? job.getDuration() : "");
+        }
+        table.print(System.out);
+
+        return null;
+    }
+
+    public Boolean getAll() {
+        return all;
+    }
+
+    public void setAll(Boolean all) {
+        this.all = all;
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.renci.canvas.primer.init.commands;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.karaf.shell.api.action.Action;
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.apache.karaf.shell.support.table.ShellTable;
+import org.renci.canvas.primer.commons.metrics.Metric;
+import org.renci.canvas.primer.commons.metrics.PrimerMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Command(scope = "primer", name = "metrics", description = "List loader metrics (also available over JMX)")
+@Service
+public class MetricsAction implements Action {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsAction.class);
+
+    @Option(name = "--filter", description = "Only metrics whose name starts with this, ie dbsnp", required = false, multiValued = false)
+    private String filter;
+
+    @Option(name = "--reset", description = "Reset the listed metrics after printing them", required = false, multiValued = false)
+    private Boolean reset = Boolean.FALSE;
+
+    public MetricsAction() {
+        super();
+    }
+
+    @Override
+    public Object execute() throws Exception {
+        logger.debug("ENTERING execute()");
+
+        ShellTable table = new ShellTable();
+        table.column("Name");
+        table.column("Type");
+        table.column("Count");
+        table.column("Rate (/s)");
+        table.column("Summary");
+
+        for (Metric metric : PrimerMetrics.getMetrics().values()) {
+            if (StringUtils.isNotEmpty(filter) && !metric.getName().startsWith(filter)) {
+                continue;
+            }
+            table.addRow().addContent(metric.getName(), metric.getType(), metric.getCount(), String.format("%.1f", metric.getRate()),
+                    metric.getSummary());
+            if (reset) {
+                metric.reset();
+            }
+        }
+        table.print(System.out);
+
+        return null;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+
+}
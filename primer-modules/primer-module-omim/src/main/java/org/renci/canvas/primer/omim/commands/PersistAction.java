@@ -1,26 +1,71 @@
 package org.renci.canvas.primer.omim.commands;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.annotation.model.AnnotationGene;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalId;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalIdPK;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.bulk.MergeStrategy;
+import org.renci.canvas.primer.commons.index.AnnotationGeneSymbolIndex;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.renci.canvas.primer.dao.PrimerDAOBeanService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@Command(scope = "omim", name = "persist", description = "Persist OMIM data")
+@Command(scope = "omim", name = "persist", description = "Persist OMIM data from genemap2.txt & mim2gene.txt in karaf.data/omim")
 @Service
 public class PersistAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistAction.class);
 
+    public static final String GENE_NAMESPACE = "OMIM";
+
+    /**
+     * the phenotype MIM numbers of genemap2's Phenotypes column, ie the gene-phenotype associations. They get their own namespace as
+     * they are a different kind of id than the gene MIM numbers in {@link #GENE_NAMESPACE}, which consumers look genes up by.
+     */
+    public static final String PHENOTYPE_NAMESPACE = "OMIM-phenotype";
+
+    // ie "Cardiomyopathy, dilated, 1A, 115200 (3), Autosomal dominant"
+    private static final Pattern PHENOTYPE_PATTERN = Pattern.compile(",\\s*(?<mimNumber>\\d{6})\\s*\\((?<mappingKey>\\d)\\)");
+
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
     @Reference
     private PrimerDAOBeanService annotationDAOBeanService;
 
+    @Reference
+    private BundleContext bundleContext;
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
     public PersistAction() {
         super();
     }
@@ -29,7 +74,156 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
+        Path omimPath = Paths.get(System.getProperty("karaf.data"), "omim");
+        File omimDir = omimPath.toFile();
+
+        File mim2geneFile = new File(omimDir, "mim2gene.txt");
+        File genemap2File = new File(omimDir, "genemap2.txt");
+
+        if (!mim2geneFile.exists() && !genemap2File.exists()) {
+            logger.warn("neither mim2gene.txt nor genemap2.txt found in {}", omimDir.getAbsolutePath());
+            return null;
+        }
+
+        primerJobService.submit("omim:persist", dataSource, () -> {
+
+            long start = System.currentTimeMillis();
+
+            AnnotationGeneSymbolIndex annotationGeneSymbolIndex = AnnotationGeneSymbolIndex.load(canvasDAOBeanService);
+
+            DataSource canvasDataSource = BulkWriterFactory.lookupDataSource(bundleContext, dataSource);
+
+            Set<AnnotationGeneExternalIdPK> written = new HashSet<>();
+
+            try (BulkWriter<AnnotationGeneExternalId> externalIdWriter = BulkWriterFactory.create(canvasDataSource,
+                    AnnotationGeneExternalId.class, MergeStrategy.INSERT_MISSING)) {
+
+                if (mim2geneFile.exists()) {
+                    persistMim2Gene(mim2geneFile, annotationGeneSymbolIndex, externalIdWriter, written);
+                }
+
+                if (genemap2File.exists()) {
+                    persistGeneMap(genemap2File, annotationGeneSymbolIndex, externalIdWriter, written);
+                }
+
+                externalIdWriter.flush();
+                logger.info("rows written: {}", externalIdWriter.getRowCount());
+            }
+
+            long end = System.currentTimeMillis();
+            logger.info("duration = {}", String.format("%s seconds", (end - start) / 1000D));
+
+        });
+
         return null;
     }
 
+    /**
+     * MIM Number, MIM Entry Type, Entrez Gene ID, Approved Gene Symbol (HGNC), Ensembl Gene ID
+     */
+    private void persistMim2Gene(File mim2geneFile, AnnotationGeneSymbolIndex annotationGeneSymbolIndex,
+            BulkWriter<AnnotationGeneExternalId> externalIdWriter, Set<AnnotationGeneExternalIdPK> written) throws PrimerException {
+        logger.debug("ENTERING persistMim2Gene(File, AnnotationGeneSymbolIndex, BulkWriter<AnnotationGeneExternalId>, Set)");
+
+        int lines = 0;
+        int unresolved = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(mim2geneFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#") || StringUtils.isBlank(line)) {
+                    continue;
+                }
+                lines++;
+                String[] columns = line.split("\t", -1);
+                if (columns.length < 4 || !columns[1].startsWith("gene") || StringUtils.isEmpty(columns[3])) {
+                    continue;
+                }
+                AnnotationGene annotationGene = annotationGeneSymbolIndex.get(columns[3]);
+                if (annotationGene == null) {
+                    unresolved++;
+                    continue;
+                }
+                write(Integer.valueOf(columns[0].trim()), annotationGene, GENE_NAMESPACE, externalIdWriter, written);
+            }
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+        logger.info("{}: {} entries, {} gene symbols not found", mim2geneFile.getName(), lines, unresolved);
+    }
+
+    /**
+     * Chromosome, Genomic Position Start, Genomic Position End, Cyto Location, Computed Cyto Location, MIM Number, Gene Symbols, Gene
+     * Name, Approved Symbol, Entrez Gene ID, Ensembl Gene ID, Comments, Phenotypes, Mouse Gene Symbol/ID
+     */
+    private void persistGeneMap(File genemap2File, AnnotationGeneSymbolIndex annotationGeneSymbolIndex,
+            BulkWriter<AnnotationGeneExternalId> externalIdWriter, Set<AnnotationGeneExternalIdPK> written) throws PrimerException {
+        logger.debug("ENTERING persistGeneMap(File, AnnotationGeneSymbolIndex, BulkWriter<AnnotationGeneExternalId>, Set)");
+
+        int lines = 0;
+        int unresolved = 0;
+        int phenotypes = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(genemap2File))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#") || StringUtils.isBlank(line)) {
+                    continue;
+                }
+                lines++;
+                String[] columns = line.split("\t", -1);
+                if (columns.length < 13) {
+                    continue;
+                }
+
+                AnnotationGene annotationGene = annotationGeneSymbolIndex.get(columns[8]);
+                if (annotationGene == null) {
+                    for (String geneSymbol : columns[6].split(",")) {
+                        annotationGene = annotationGeneSymbolIndex.get(geneSymbol);
+                        if (annotationGene != null) {
+                            break;
+                        }
+                    }
+                }
+                if (annotationGene == null) {
+                    unresolved++;
+                    continue;
+                }
+
+                write(Integer.valueOf(columns[5].trim()), annotationGene, GENE_NAMESPACE, externalIdWriter, written);
+
+                if (StringUtils.isNotEmpty(columns[12])) {
+                    for (String phenotype : columns[12].split(";")) {
+                        Matcher m = PHENOTYPE_PATTERN.matcher(phenotype);
+                        if (m.find()) {
+                            write(Integer.valueOf(m.group("mimNumber")), annotationGene, PHENOTYPE_NAMESPACE, externalIdWriter, written);
+                            phenotypes++;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+        logger.info("{}: {} entries, {} phenotypes, {} gene symbols not found", genemap2File.getName(), lines, phenotypes, unresolved);
+    }
+
+    private void write(Integer mimNumber, AnnotationGene annotationGene, String namespace,
+            BulkWriter<AnnotationGeneExternalId> externalIdWriter, Set<AnnotationGeneExternalIdPK> written) throws PrimerException {
+        AnnotationGeneExternalIdPK annotationGeneExternalIdPK = new AnnotationGeneExternalIdPK(mimNumber, annotationGene.getId(),
+                namespace);
+        if (!written.add(annotationGeneExternalIdPK)) {
+            return;
+        }
+        AnnotationGeneExternalId annotationGeneExternalId = new AnnotationGeneExternalId(annotationGeneExternalIdPK);
+        annotationGeneExternalId.setGene(annotationGene);
+        externalIdWriter.write(annotationGeneExternalId);
+    }
+
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
 }
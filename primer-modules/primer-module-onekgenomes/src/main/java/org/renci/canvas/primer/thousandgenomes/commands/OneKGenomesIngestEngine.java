@@ -0,0 +1,193 @@
+package org.renci.canvas.primer.thousandgenomes.commands;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.commons.LocatedVariantFactory;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesIndelFrequency;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesIndelFrequencyPK;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesIndelMaxFrequency;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesIndelMaxFrequencyPK;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesSNPFrequencyPopulation;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesSNPFrequencyPopulationPK;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesSNPPopulationMaxFrequency;
+import org.renci.canvas.dao.onekgen.model.OneKGenomesSNPPopulationMaxFrequencyPK;
+import org.renci.canvas.dao.ref.model.GenomeRef;
+import org.renci.canvas.dao.ref.model.GenomeRefSeq;
+import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.dao.var.model.VariantType;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.VCFIngestEngine;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.index.LocatedVariantIndex;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Loads the ALL.chr*.vcf.gz release files. Each file's header is mapped to super populations once through the
+ * {@link OneKGenomesPopulationPanel}, and its records travel with that mapping. SNPs get a row per super population plus a population
+ * max row, indels get an overall frequency row plus a max row, all through the bulk writers.
+ */
+public class OneKGenomesIngestEngine extends VCFIngestEngine<Pair<VariantContext, int[]>> {
+
+    private static final Logger logger = LoggerFactory.getLogger(OneKGenomesIngestEngine.class);
+
+    private final CANVASDAOBeanService canvasDAOBeanService;
+
+    private final GenomeRef genomeRef;
+
+    private final Map<String, GenomeRefSeq> genomeRefSeqs;
+
+    private final List<VariantType> allVariantTypes;
+
+    private final LocatedVariantIndex locatedVariantIndex;
+
+    private final OneKGenomesPopulationPanel panel;
+
+    private final Integer version;
+
+    private final BulkWriter<OneKGenomesSNPFrequencyPopulation> snpFrequencyWriter;
+
+    private final BulkWriter<OneKGenomesSNPPopulationMaxFrequency> snpMaxFrequencyWriter;
+
+    private final BulkWriter<OneKGenomesIndelFrequency> indelFrequencyWriter;
+
+    private final BulkWriter<OneKGenomesIndelMaxFrequency> indelMaxFrequencyWriter;
+
+    private final String[] alleleFrequencyKeys;
+
+    public OneKGenomesIngestEngine(CANVASDAOBeanService canvasDAOBeanService, GenomeRef genomeRef, Map<String, GenomeRefSeq> genomeRefSeqs,
+            List<VariantType> allVariantTypes, LocatedVariantIndex locatedVariantIndex, OneKGenomesPopulationPanel panel, Integer version,
+            BulkWriter<OneKGenomesSNPFrequencyPopulation> snpFrequencyWriter,
+            BulkWriter<OneKGenomesSNPPopulationMaxFrequency> snpMaxFrequencyWriter,
+            BulkWriter<OneKGenomesIndelFrequency> indelFrequencyWriter, BulkWriter<OneKGenomesIndelMaxFrequency> indelMaxFrequencyWriter) {
+        super("onekgenomes");
+        this.canvasDAOBeanService = canvasDAOBeanService;
+        this.genomeRef = genomeRef;
+        this.genomeRefSeqs = genomeRefSeqs;
+        this.allVariantTypes = allVariantTypes;
+        this.locatedVariantIndex = locatedVariantIndex;
+        this.panel = panel;
+        this.version = version;
+        this.snpFrequencyWriter = snpFrequencyWriter;
+        this.snpMaxFrequencyWriter = snpMaxFrequencyWriter;
+        this.indelFrequencyWriter = indelFrequencyWriter;
+        this.indelMaxFrequencyWriter = indelMaxFrequencyWriter;
+        this.alleleFrequencyKeys = OneKGenomesPopulationPanel.POPULATIONS.stream().map(a -> String.format("%s_AF", a))
+                .toArray(String[]::new);
+    }
+
+    @Override
+    protected void read(File vcfFile, PipelineEmitter<Pair<VariantContext, int[]>> emitter) throws Exception {
+        readVCF(vcfFile, header -> {
+            int[] samplePopulations = panel.getSamplePopulations(header);
+            return variantContext -> emitter.emit(Pair.of(variantContext, samplePopulations));
+        });
+    }
+
+    @Override
+    protected void persist(Pair<VariantContext, int[]> item) throws Exception {
+        persist(item.getLeft(), item.getRight());
+    }
+
+    private void persist(VariantContext variantContext, int[] samplePopulations) throws Exception {
+
+        GenomeRefSeq genomeRefSeq = genomeRefSeqs.get(variantContext.getContig());
+        if (genomeRefSeq == null) {
+            logger.warn("GenomeRefSeq not found: {}", variantContext.getContig());
+            return;
+        }
+
+        persist(variantContext, genomeRefSeq, samplePopulations);
+    }
+
+    private void persist(VariantContext variantContext, GenomeRefSeq genomeRefSeq, int[] samplePopulations) throws Exception {
+
+        OneKGenomesSitesRecord record = OneKGenomesSitesRecord.decode(variantContext, samplePopulations, alleleFrequencyKeys);
+
+        List<Allele> alternateAlleles = variantContext.getAlternateAlleles();
+        for (int i = 0; i < alternateAlleles.size(); i++) {
+
+            Allele alternateAllele = alternateAlleles.get(i);
+            if (alternateAllele.isSymbolic()) {
+                continue;
+            }
+
+            LocatedVariant locatedVariant = LocatedVariantFactory.create(genomeRef, genomeRefSeq, variantContext.getStart(),
+                    variantContext.getReference().getDisplayString(), alternateAllele.getDisplayString(), allVariantTypes);
+            locatedVariant = locatedVariantIndex.resolve(locatedVariant);
+
+            // stays -1 when no population has a non-zero frequency, such alleles get no max row
+            int maxPopulation = -1;
+            for (int p = 0; p < alleleFrequencyKeys.length; p++) {
+                if (record.getAlleleFrequency(p, i) > (maxPopulation == -1 ? 0D : record.getAlleleFrequency(maxPopulation, i))) {
+                    maxPopulation = p;
+                }
+            }
+
+            if (locatedVariant.getVariantType().getId().equals("snp")) {
+                persistSNP(locatedVariant, record, i, maxPopulation);
+            } else {
+                persistIndel(locatedVariant, record, i, maxPopulation);
+            }
+
+        }
+
+    }
+
+    private void persistSNP(LocatedVariant locatedVariant, OneKGenomesSitesRecord record, int alternateAllele, int maxPopulation)
+            throws PrimerException {
+
+        for (int p = 0; p < alleleFrequencyKeys.length; p++) {
+            OneKGenomesSNPFrequencyPopulationPK snpFrequencyPK = new OneKGenomesSNPFrequencyPopulationPK(locatedVariant.getId(), version,
+                    OneKGenomesPopulationPanel.POPULATIONS.get(p));
+            OneKGenomesSNPFrequencyPopulation snpFrequency = new OneKGenomesSNPFrequencyPopulation(snpFrequencyPK);
+            snpFrequency.setLocatedVariant(locatedVariant);
+            snpFrequency.setAlternateAlleleFrequency(record.getAlleleFrequency(p, alternateAllele));
+            snpFrequency.setAlternateAlleleCount(record.getAlleleCount(p, alternateAllele));
+            snpFrequency.setTotalAlleleCount(record.getAlleleTotal(p));
+            snpFrequencyWriter.write(snpFrequency);
+        }
+
+        if (maxPopulation == -1) {
+            return;
+        }
+
+        OneKGenomesSNPPopulationMaxFrequency snpMaxFrequency = new OneKGenomesSNPPopulationMaxFrequency(
+                new OneKGenomesSNPPopulationMaxFrequencyPK(locatedVariant.getId(), version));
+        snpMaxFrequency.setLocatedVariant(locatedVariant);
+        snpMaxFrequency.setPopulation(OneKGenomesPopulationPanel.POPULATIONS.get(maxPopulation));
+        snpMaxFrequency.setMaxAlleleFrequency(record.getAlleleFrequency(maxPopulation, alternateAllele));
+        snpMaxFrequencyWriter.write(snpMaxFrequency);
+    }
+
+    private void persistIndel(LocatedVariant locatedVariant, OneKGenomesSitesRecord record, int alternateAllele, int maxPopulation)
+            throws PrimerException {
+
+        OneKGenomesIndelFrequency indelFrequency = new OneKGenomesIndelFrequency(
+                new OneKGenomesIndelFrequencyPK(locatedVariant.getId(), version));
+        indelFrequency.setLocatedVariant(locatedVariant);
+        indelFrequency.setAlternateAlleleFrequency(record.getAlleleFrequency(alternateAllele));
+        indelFrequency.setAlternateAlleleCount(record.getAlleleCount(alternateAllele));
+        indelFrequency.setTotalAlleleCount(record.getAlleleTotal());
+        indelFrequencyWriter.write(indelFrequency);
+
+        if (maxPopulation == -1) {
+            return;
+        }
+
+        OneKGenomesIndelMaxFrequency indelMaxFrequency = new OneKGenomesIndelMaxFrequency(
+                new OneKGenomesIndelMaxFrequencyPK(locatedVariant.getId(), version));
+        indelMaxFrequency.setLocatedVariant(locatedVariant);
+        indelMaxFrequency.setMaxAlleleFrequency(record.getAlleleFrequency(maxPopulation, alternateAllele));
+        indelMaxFrequencyWriter.write(indelMaxFrequency);
+    }
+
+}
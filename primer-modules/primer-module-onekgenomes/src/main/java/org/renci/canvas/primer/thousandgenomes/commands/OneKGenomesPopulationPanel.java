@@ -0,0 +1,73 @@
+package org.renci.canvas.primer.thousandgenomes.commands;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.renci.canvas.primer.commons.PrimerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * sample -> super population, read from the release's integrated_call_samples panel (sample, pop, super_pop, gender)
+ */
+public class OneKGenomesPopulationPanel {
+
+    private static final Logger logger = LoggerFactory.getLogger(OneKGenomesPopulationPanel.class);
+
+    public static final String PANEL_FILE_NAME = "integrated_call_samples_v3.20130502.ALL.panel";
+
+    public static final List<String> POPULATIONS = Collections.unmodifiableList(Arrays.asList("AFR", "AMR", "EAS", "EUR", "SAS"));
+
+    private final Map<String, Integer> samplePopulations;
+
+    private OneKGenomesPopulationPanel(Map<String, Integer> samplePopulations) {
+        super();
+        this.samplePopulations = samplePopulations;
+    }
+
+    public static OneKGenomesPopulationPanel load(File panelFile) throws PrimerException {
+        logger.debug("ENTERING load(File)");
+        Map<String, Integer> samplePopulations = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(panelFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] columns = line.split("\t");
+                if (columns.length < 3 || "sample".equals(columns[0])) {
+                    continue;
+                }
+                int population = POPULATIONS.indexOf(columns[2]);
+                if (population == -1) {
+                    logger.warn("unknown super population: {}", line);
+                    continue;
+                }
+                samplePopulations.put(columns[0], population);
+            }
+        } catch (IOException e) {
+            throw new PrimerException(e);
+        }
+        logger.info("{} samples in {}", samplePopulations.size(), panelFile.getName());
+        return new OneKGenomesPopulationPanel(samplePopulations);
+    }
+
+    /**
+     * the super population index of each sample, in the header's sample order, -1 for samples not in the panel
+     */
+    public int[] getSamplePopulations(VCFHeader header) {
+        List<String> sampleNames = header.getGenotypeSamples();
+        int[] ret = new int[sampleNames.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = samplePopulations.getOrDefault(sampleNames.get(i), -1);
+        }
+        return ret;
+    }
+
+}
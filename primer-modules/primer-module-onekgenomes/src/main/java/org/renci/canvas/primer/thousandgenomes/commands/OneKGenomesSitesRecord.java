@@ -0,0 +1,121 @@
+package org.renci.canvas.primer.thousandgenomes.commands;
+
+import java.util.List;
+
+import org.renci.canvas.primer.commons.InfoAttributeDecoder;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.CommonInfo;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Frequencies of one 1000 Genomes site. The overall AF and the super population AFs come from INFO, the per population allele counts
+ * are tallied from the called genotypes, everything held in [population][alternate allele] arrays.
+ */
+public class OneKGenomesSitesRecord {
+
+    private final double[] alleleFrequencies;
+
+    private final int[] alleleCounts;
+
+    private final int alleleTotal;
+
+    private final double[][] populationAlleleFrequencies;
+
+    private final int[][] populationAlleleCounts;
+
+    private final int[] populationAlleleTotals;
+
+    private OneKGenomesSitesRecord(double[] alleleFrequencies, int[] alleleCounts, int alleleTotal, double[][] populationAlleleFrequencies,
+            int[][] populationAlleleCounts, int[] populationAlleleTotals) {
+        super();
+        this.alleleFrequencies = alleleFrequencies;
+        this.alleleCounts = alleleCounts;
+        this.alleleTotal = alleleTotal;
+        this.populationAlleleFrequencies = populationAlleleFrequencies;
+        this.populationAlleleCounts = populationAlleleCounts;
+        this.populationAlleleTotals = populationAlleleTotals;
+    }
+
+    /**
+     * @param samplePopulations
+     *            population index per genotype, see {@link OneKGenomesPopulationPanel#getSamplePopulations}
+     * @param alleleFrequencyKeys
+     *            the INFO key of each population's AF, ie EUR_AF
+     */
+    public static OneKGenomesSitesRecord decode(VariantContext variantContext, int[] samplePopulations, String[] alleleFrequencyKeys) {
+        List<Allele> alleles = variantContext.getAlleles();
+        int alternateAlleleCount = alleles.size() - 1;
+        int populationCount = alleleFrequencyKeys.length;
+
+        CommonInfo commonInfo = variantContext.getCommonInfo();
+
+        double[] alleleFrequencies = new double[alternateAlleleCount];
+        InfoAttributeDecoder.decodeDoubles(commonInfo.getAttribute("AF"), alleleFrequencies);
+
+        double[][] populationAlleleFrequencies = new double[populationCount][alternateAlleleCount];
+        for (int i = 0; i < populationCount; i++) {
+            InfoAttributeDecoder.decodeDoubles(commonInfo.getAttribute(alleleFrequencyKeys[i]), populationAlleleFrequencies[i]);
+        }
+
+        int[] alleleCounts = new int[alternateAlleleCount];
+        int alleleTotal = 0;
+        int[][] populationAlleleCounts = new int[populationCount][alternateAlleleCount];
+        int[] populationAlleleTotals = new int[populationCount];
+
+        GenotypesContext genotypes = variantContext.getGenotypes();
+        for (int i = 0; i < genotypes.size() && i < samplePopulations.length; i++) {
+            Genotype genotype = genotypes.get(i);
+            int population = samplePopulations[i];
+            for (Allele allele : genotype.getAlleles()) {
+                if (allele.isNoCall()) {
+                    continue;
+                }
+                int alleleIndex = alleles.indexOf(allele);
+                if (alleleIndex == -1) {
+                    continue;
+                }
+                alleleTotal++;
+                if (alleleIndex > 0) {
+                    alleleCounts[alleleIndex - 1]++;
+                }
+                if (population != -1) {
+                    populationAlleleTotals[population]++;
+                    if (alleleIndex > 0) {
+                        populationAlleleCounts[population][alleleIndex - 1]++;
+                    }
+                }
+            }
+        }
+
+        return new OneKGenomesSitesRecord(alleleFrequencies, alleleCounts, alleleTotal, populationAlleleFrequencies, populationAlleleCounts,
+                populationAlleleTotals);
+    }
+
+    public double getAlleleFrequency(int alternateAllele) {
+        return alleleFrequencies[alternateAllele];
+    }
+
+    public int getAlleleCount(int alternateAllele) {
+        return alleleCounts[alternateAllele];
+    }
+
+    public int getAlleleTotal() {
+        return alleleTotal;
+    }
+
+    public double getAlleleFrequency(int population, int alternateAllele) {
+        return populationAlleleFrequencies[population][alternateAllele];
+    }
+
+    public int getAlleleCount(int population, int alternateAllele) {
+        return populationAlleleCounts[population][alternateAllele];
+    }
+
+    public int getAlleleTotal(int population) {
+        return populationAlleleTotals[population];
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.renci.canvas.primer.refseq.commands;
+
+/**
+ * A parsed GFF3 Gap attribute (ie "M6352 I2 M5901"), kept as parallel int arrays of {@link CIGARType} ordinals and lengths. Parsing is a
+ * single pass over the characters with no split or substring, so the ~200k alignment records of a release don't produce garbage
+ * tokens.
+ *
+ * Per the GFF3 spec M is aligned in both sequences, I is an insertion into the reference (bases only in the transcript) and D a deletion
+ * from the reference (bases only in the contig).
+ */
+public final class AlignmentGap {
+
+    private static final CIGARType[] TYPES = CIGARType.values();
+
+    private final int[] operations;
+
+    private final int[] lengths;
+
+    private AlignmentGap(int[] operations, int[] lengths) {
+        super();
+        this.operations = operations;
+        this.lengths = lengths;
+    }
+
+    public static AlignmentGap parse(CharSequence gap) {
+        int count = 0;
+        for (int i = 0; i < gap.length(); i++) {
+            if (Character.isLetter(gap.charAt(i))) {
+                count++;
+            }
+        }
+
+        int[] operations = new int[count];
+        int[] lengths = new int[count];
+
+        int idx = -1;
+        for (int i = 0; i < gap.length(); i++) {
+            char c = gap.charAt(i);
+            switch (c) {
+                case 'M':
+                    operations[++idx] = CIGARType.MATCH.ordinal();
+                    break;
+                case 'I':
+                    operations[++idx] = CIGARType.INSERT.ordinal();
+                    break;
+                case 'D':
+                    operations[++idx] = CIGARType.DELETION.ordinal();
+                    break;
+                case ' ':
+                    break;
+                default:
+                    if (c < '0' || c > '9' || idx < 0) {
+                        throw new IllegalArgumentException(String.format("invalid gap: %s", gap));
+                    }
+                    lengths[idx] = lengths[idx] * 10 + (c - '0');
+                    break;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] == 0) {
+                throw new IllegalArgumentException(String.format("invalid gap: %s", gap));
+            }
+        }
+
+        return new AlignmentGap(operations, lengths);
+    }
+
+    public int size() {
+        return operations.length;
+    }
+
+    public int getOperation(int idx) {
+        return operations[idx];
+    }
+
+    public CIGARType getType(int idx) {
+        return TYPES[operations[idx]];
+    }
+
+    public int getLength(int idx) {
+        return lengths[idx];
+    }
+
+    /**
+     * bases of the contig covered by the alignment, M + D
+     */
+    public int getContigLength() {
+        int ret = 0;
+        for (int i = 0; i < operations.length; i++) {
+            if (operations[i] != CIGARType.INSERT.ordinal()) {
+                ret += lengths[i];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * bases of the transcript covered by the alignment, M + I
+     */
+    public int getTranscriptLength() {
+        int ret = 0;
+        for (int i = 0; i < operations.length; i++) {
+            if (operations[i] != CIGARType.DELETION.ordinal()) {
+                ret += lengths[i];
+            }
+        }
+        return ret;
+    }
+
+    public int getMatchCount() {
+        int ret = 0;
+        for (int i = 0; i < operations.length; i++) {
+            if (operations[i] == CIGARType.MATCH.ordinal()) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Splits the alignment into one block per M operation, returned flattened as contigStart, contigEnd, transcriptStart, transcriptEnd
+     * (all inclusive) per block. Operations are walked up the contig from contigStart, the transcript runs up from transcriptStart on
+     * the + strand and down from transcriptEnd on the - strand, where a block's transcriptStart is then greater than its transcriptEnd.
+     */
+    public int[] toBlocks(int contigStart, int transcriptStart, int transcriptEnd, char strand) {
+        boolean minus = strand == '-';
+        int[] ret = new int[getMatchCount() * 4];
+
+        int contig = contigStart;
+        int transcript = minus ? transcriptEnd : transcriptStart;
+        int step = minus ? -1 : 1;
+
+        int block = 0;
+        for (int i = 0; i < operations.length; i++) {
+            int length = lengths[i];
+            if (operations[i] == CIGARType.MATCH.ordinal()) {
+                ret[block++] = contig;
+                ret[block++] = contig + length - 1;
+                ret[block++] = transcript;
+                ret[block++] = transcript + step * (length - 1);
+                contig += length;
+                transcript += step * length;
+            } else if (operations[i] == CIGARType.INSERT.ordinal()) {
+                transcript += step * length;
+            } else {
+                contig += length;
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < operations.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(TYPES[operations[i]].getName()).append(lengths[i]);
+        }
+        return sb.toString();
+    }
+
+}
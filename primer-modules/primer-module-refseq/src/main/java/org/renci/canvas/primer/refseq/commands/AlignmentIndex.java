@@ -0,0 +1,97 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.renci.gff3.GFF3Manager;
+import org.renci.gff3.model.GFF3Record;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * GFF3 alignment records keyed by the versioned transcript accession of their Target attribute.
+ */
+public class AlignmentIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(AlignmentIndex.class);
+
+    private final Map<String, Set<AlignmentRecord>> recordsByTarget = new HashMap<>();
+
+    public AlignmentIndex() {
+        super();
+    }
+
+    public static AlignmentIndex build(List<File> alignmentFiles) {
+        AlignmentIndex ret = new AlignmentIndex();
+        GFF3Manager gff3Mgr = GFF3Manager.getInstance();
+        Map<String, String> sequenceIds = new HashMap<>();
+        for (File alignmentFile : alignmentFiles) {
+            logger.info("parsing alignment file: {}", alignmentFile.getName());
+            List<GFF3Record> results = gff3Mgr.deserialize(alignmentFile);
+            if (CollectionUtils.isEmpty(results)) {
+                continue;
+            }
+            for (GFF3Record record : results) {
+                AlignmentRecord alignmentRecord = toAlignmentRecord(record, sequenceIds);
+                if (alignmentRecord != null) {
+                    ret.add(alignmentRecord);
+                }
+            }
+        }
+        logger.info("indexed alignments for {} transcripts", ret.size());
+        return ret;
+    }
+
+    private static AlignmentRecord toAlignmentRecord(GFF3Record record, Map<String, String> sequenceIds) {
+        Map<String, String> attributes = record.getAttributes();
+        String target = attributes.get("Target");
+        if (StringUtils.isEmpty(target)) {
+            return null;
+        }
+
+        // Target=NM_000014.4 1 100 +
+        String[] parts = StringUtils.split(target, ' ');
+        if (parts.length < 3) {
+            logger.warn("invalid Target: {}", target);
+            return null;
+        }
+
+        Double identity = null;
+        String identityValue = attributes.get("identity");
+        if (StringUtils.isNotEmpty(identityValue)) {
+            identity = Double.valueOf(identityValue) * 100D;
+        } else {
+            identityValue = attributes.get("pct_identity_gap");
+            if (StringUtils.isNotEmpty(identityValue)) {
+                identity = Double.valueOf(identityValue);
+            }
+        }
+
+        String sequenceId = sequenceIds.computeIfAbsent(record.getSequenceId(), a -> a);
+
+        return new AlignmentRecord(sequenceId, record.getStart(), record.getEnd(), record.getStrand().getSymbol().charAt(0), parts[0],
+                Integer.valueOf(parts[1]), Integer.valueOf(parts[2]), attributes.get("Gap"), identity);
+    }
+
+    public void add(AlignmentRecord record) {
+        recordsByTarget.computeIfAbsent(record.getTargetAccession(), a -> new LinkedHashSet<>()).add(record);
+    }
+
+    public List<AlignmentRecord> get(String targetAccession) {
+        Set<AlignmentRecord> ret = recordsByTarget.get(targetAccession);
+        return ret != null ? new ArrayList<>(ret) : Collections.emptyList();
+    }
+
+    public int size() {
+        return recordsByTarget.size();
+    }
+
+}
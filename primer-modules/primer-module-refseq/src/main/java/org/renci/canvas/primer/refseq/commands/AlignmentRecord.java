@@ -0,0 +1,129 @@
+package org.renci.canvas.primer.refseq.commands;
+
+/**
+ * The parts of a GFF3 cDNA_match record persistMappings uses.
+ */
+public class AlignmentRecord {
+
+    private final String sequenceId;
+
+    private final int start;
+
+    private final int end;
+
+    private final char strand;
+
+    private final String targetAccession;
+
+    private final int targetStart;
+
+    private final int targetEnd;
+
+    private final String gap;
+
+    private final Double identity;
+
+    public AlignmentRecord(String sequenceId, int start, int end, char strand, String targetAccession, int targetStart, int targetEnd,
+            String gap, Double identity) {
+        super();
+        this.sequenceId = sequenceId;
+        this.start = start;
+        this.end = end;
+        this.strand = strand;
+        this.targetAccession = targetAccession;
+        this.targetStart = targetStart;
+        this.targetEnd = targetEnd;
+        this.gap = gap;
+        this.identity = identity;
+    }
+
+    public String getSequenceId() {
+        return sequenceId;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public char getStrand() {
+        return strand;
+    }
+
+    public String getTargetAccession() {
+        return targetAccession;
+    }
+
+    public int getTargetStart() {
+        return targetStart;
+    }
+
+    public int getTargetEnd() {
+        return targetEnd;
+    }
+
+    public String getGap() {
+        return gap;
+    }
+
+    public Double getIdentity() {
+        return identity;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "AlignmentRecord [sequenceId=%s, start=%s, end=%s, strand=%s, targetAccession=%s, targetStart=%s, targetEnd=%s, gap=%s, identity=%s]",
+                sequenceId, start, end, strand, targetAccession, targetStart, targetEnd, gap, identity);
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + end;
+        result = prime * result + ((sequenceId == null) ? 0 : sequenceId.hashCode());
+        result = prime * result + start;
+        result = prime * result + strand;
+        result = prime * result + ((targetAccession == null) ? 0 : targetAccession.hashCode());
+        result = prime * result + targetEnd;
+        result = prime * result + targetStart;
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        AlignmentRecord other = (AlignmentRecord) obj;
+        if (end != other.end)
+            return false;
+        if (sequenceId == null) {
+            if (other.sequenceId != null)
+                return false;
+        } else if (!sequenceId.equals(other.sequenceId))
+            return false;
+        if (start != other.start)
+            return false;
+        if (strand != other.strand)
+            return false;
+        if (targetAccession == null) {
+            if (other.targetAccession != null)
+                return false;
+        } else if (!targetAccession.equals(other.targetAccession))
+            return false;
+        if (targetEnd != other.targetEnd)
+            return false;
+        if (targetStart != other.targetStart)
+            return false;
+        return true;
+    }
+
+}
@@ -1,10 +1,10 @@
 package org.renci.canvas.primer.refseq.commands;
 
-import java.util.concurrent.Executors;
-
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,6 +14,9 @@ public class DownloadAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(DownloadAction.class);
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     public DownloadAction() {
         super();
     }
@@ -22,7 +25,7 @@ public class DownloadAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
         long start = System.currentTimeMillis();
-        Executors.newSingleThreadExecutor().execute(new DownloadRunnable());
+        primerJobService.submit("refseq:download", null, new DownloadRunnable()::run);
         long end = System.currentTimeMillis();
         logger.info("duration: {} seconds", (end - start) / 1000D);
         return null;
@@ -0,0 +1,129 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a gzipped GenBank flat file and cuts it, at the "//" record terminators, into small gzipped chunk files of recordsPerChunk
+ * records. Each chunk is handed to the consumer and deleted once the consumer returns, so only one chunk per reader is ever on disk or
+ * parsed into memory, instead of the whole release file.
+ */
+public class GBFFChunkReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(GBFFChunkReader.class);
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File gbffFile;
+
+    private final File workDir;
+
+    private final int recordsPerChunk;
+
+    public GBFFChunkReader(File gbffFile, File workDir, int recordsPerChunk) {
+        super();
+        this.gbffFile = gbffFile;
+        this.workDir = workDir;
+        this.recordsPerChunk = recordsPerChunk;
+    }
+
+    /**
+     * returns the number of records read
+     */
+    public long read(ChunkConsumer consumer) throws Exception {
+        logger.debug("ENTERING read(ChunkConsumer)");
+
+        workDir.mkdirs();
+        String prefix = gbffFile.getName().replace(".gbff.gz", "");
+
+        long records = 0;
+        int chunkIdx = 0;
+        int chunkRecords = 0;
+        File chunkFile = null;
+        BufferedWriter writer = null;
+
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(new FileInputStream(gbffFile), BUFFER_SIZE), StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+
+            boolean inRecord = false;
+            String line;
+            while ((line = br.readLine()) != null) {
+
+                if (!inRecord) {
+                    // release files start with a header block, records start at LOCUS
+                    if (!line.startsWith("LOCUS")) {
+                        continue;
+                    }
+                    inRecord = true;
+                    if (writer == null) {
+                        chunkFile = new File(workDir, String.format("%s.%05d.gbff.gz", prefix, ++chunkIdx));
+                        writer = new BufferedWriter(new OutputStreamWriter(
+                                new GZIPOutputStream(new FileOutputStream(chunkFile), BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+                    }
+                }
+
+                writer.write(line);
+                writer.newLine();
+
+                if (line.startsWith("//")) {
+                    inRecord = false;
+                    records++;
+                    if (++chunkRecords == recordsPerChunk) {
+                        writer.close();
+                        writer = null;
+                        consume(consumer, chunkFile);
+                        chunkRecords = 0;
+                    }
+                }
+
+            }
+
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                if (chunkRecords > 0) {
+                    consume(consumer, chunkFile);
+                } else {
+                    chunkFile.delete();
+                }
+            }
+
+        } finally {
+            if (writer != null) {
+                writer.close();
+                chunkFile.delete();
+            }
+        }
+
+        logger.info("{}: {} records in {} chunks", gbffFile.getName(), records, chunkIdx);
+        return records;
+    }
+
+    private void consume(ChunkConsumer consumer, File chunkFile) throws Exception {
+        try {
+            consumer.accept(chunkFile);
+        } finally {
+            chunkFile.delete();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+
+        public void accept(File chunkFile) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,287 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import java.util.Arrays;
+
+/**
+ * A GenBank feature location (ie "join(<12..78,134..>202)" or "complement(join(1..10,20..30))") as a compact list of ranges. Parsing is a
+ * single pass over the characters with a hand written lexer, ranges are kept in int arrays and the fuzzy bounds ('<' and '>') of each
+ * range in a flags byte, so nothing but the arrays is allocated.
+ *
+ * Single bases ("467"), sites between bases ("123^124") and single bases within a range ("102.110") are read as ranges, references to
+ * other entries ("J00194.1:100..202") are rejected. complement() is accepted but not kept, the regions are stored against the
+ * transcript, which carries its own strand.
+ */
+public final class GenBankLocation {
+
+    public static final String EXACT = "exact";
+
+    public static final String LESS_THAN = "less-than";
+
+    public static final String GREATER_THAN = "greater-than";
+
+    private static final int START_LESS_THAN = 1;
+
+    private static final int START_GREATER_THAN = 1 << 1;
+
+    private static final int STOP_LESS_THAN = 1 << 2;
+
+    private static final int STOP_GREATER_THAN = 1 << 3;
+
+    public enum Grouping {
+
+        SINGLE("single"),
+
+        JOIN("join"),
+
+        ORDER("order");
+
+        private final String groupingType;
+
+        private Grouping(String groupingType) {
+            this.groupingType = groupingType;
+        }
+
+        /**
+         * id of the matching refseq GroupingType
+         */
+        public String getGroupingType() {
+            return groupingType;
+        }
+
+    }
+
+    private final CharSequence location;
+
+    private Grouping grouping = Grouping.SINGLE;
+
+    private int[] starts = new int[4];
+
+    private int[] stops = new int[4];
+
+    private byte[] flags = new byte[4];
+
+    private int size;
+
+    private int pos;
+
+    private GenBankLocation(CharSequence location) {
+        super();
+        this.location = location;
+    }
+
+    public static GenBankLocation parse(CharSequence location) {
+        GenBankLocation ret = new GenBankLocation(location);
+        ret.parseLocation();
+        ret.skipWhitespace();
+        if (ret.pos != location.length()) {
+            throw ret.error();
+        }
+        if (ret.size == 0) {
+            throw ret.error();
+        }
+        return ret;
+    }
+
+    private void parseLocation() {
+        skipWhitespace();
+        if (pos >= location.length()) {
+            throw error();
+        }
+        char c = location.charAt(pos);
+        if (Character.isLetter(c)) {
+            if (keyword("complement")) {
+                parseLocation();
+                expect(')');
+            } else if (keyword("join")) {
+                parseGroup(Grouping.JOIN);
+            } else if (keyword("order")) {
+                parseGroup(Grouping.ORDER);
+            } else {
+                throw error();
+            }
+        } else {
+            parseRange();
+        }
+    }
+
+    private void parseGroup(Grouping type) {
+        if (grouping == Grouping.SINGLE) {
+            grouping = type;
+        }
+        parseLocation();
+        skipWhitespace();
+        while (pos < location.length() && location.charAt(pos) == ',') {
+            pos++;
+            parseLocation();
+            skipWhitespace();
+        }
+        expect(')');
+    }
+
+    private void parseRange() {
+        int flag = 0;
+
+        if (peek('<')) {
+            pos++;
+            flag |= START_LESS_THAN;
+        } else if (peek('>')) {
+            pos++;
+            flag |= START_GREATER_THAN;
+        }
+        int start = number();
+        int stop = start;
+
+        if (peek('.')) {
+            pos++;
+            boolean range = peek('.');
+            if (range) {
+                pos++;
+            }
+            if (peek('<')) {
+                pos++;
+                flag |= STOP_LESS_THAN;
+            } else if (peek('>')) {
+                pos++;
+                flag |= STOP_GREATER_THAN;
+            }
+            stop = number();
+        } else if (peek('^')) {
+            pos++;
+            stop = number();
+        } else if ((flag & START_LESS_THAN) != 0) {
+            flag |= STOP_LESS_THAN;
+        } else if ((flag & START_GREATER_THAN) != 0) {
+            flag |= STOP_GREATER_THAN;
+        }
+
+        add(start, stop, flag);
+    }
+
+    private void add(int start, int stop, int flag) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            stops = Arrays.copyOf(stops, size * 2);
+            flags = Arrays.copyOf(flags, size * 2);
+        }
+        starts[size] = start;
+        stops[size] = stop;
+        flags[size] = (byte) flag;
+        size++;
+    }
+
+    private int number() {
+        int begin = pos;
+        int ret = 0;
+        while (pos < location.length()) {
+            char c = location.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            ret = ret * 10 + (c - '0');
+            pos++;
+        }
+        if (pos == begin) {
+            throw error();
+        }
+        return ret;
+    }
+
+    private boolean keyword(String keyword) {
+        int end = pos + keyword.length();
+        if (end >= location.length() || location.charAt(end) != '(') {
+            return false;
+        }
+        for (int i = 0; i < keyword.length(); i++) {
+            if (location.charAt(pos + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        pos = end + 1;
+        return true;
+    }
+
+    private boolean peek(char c) {
+        return pos < location.length() && location.charAt(pos) == c;
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (!peek(c)) {
+            throw error();
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < location.length() && Character.isWhitespace(location.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private IllegalArgumentException error() {
+        return new IllegalArgumentException(String.format("invalid location at %d: %s", pos, location));
+    }
+
+    public Grouping getGrouping() {
+        return grouping;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int idx) {
+        return starts[idx];
+    }
+
+    public int getStop(int idx) {
+        return stops[idx];
+    }
+
+    /**
+     * exact, less-than or greater-than
+     */
+    public String getStartType(int idx) {
+        return (flags[idx] & START_LESS_THAN) != 0 ? LESS_THAN : (flags[idx] & START_GREATER_THAN) != 0 ? GREATER_THAN : EXACT;
+    }
+
+    public String getStopType(int idx) {
+        return (flags[idx] & STOP_LESS_THAN) != 0 ? LESS_THAN : (flags[idx] & STOP_GREATER_THAN) != 0 ? GREATER_THAN : EXACT;
+    }
+
+    /**
+     * lowest position of any range
+     */
+    public int getMin() {
+        int ret = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ret = Math.min(ret, Math.min(starts[i], stops[i]));
+        }
+        return ret;
+    }
+
+    /**
+     * highest position of any range
+     */
+    public int getMax() {
+        int ret = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            ret = Math.max(ret, Math.max(starts[i], stops[i]));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(grouping.getGroupingType()).append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(starts[i]).append('-').append(stops[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+}
@@ -1,12 +1,12 @@
 package org.renci.canvas.primer.refseq.commands;
 
-import java.util.concurrent.Executors;
-
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +19,9 @@ public class InitializeAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     public InitializeAction() {
         super();
     }
@@ -27,7 +30,8 @@ public class InitializeAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
         long start = System.currentTimeMillis();
-        Executors.newSingleThreadExecutor().execute(new InitializeRunnable(canvasDAOBeanService));
+        primerJobService.submit("refseq:init", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME,
+                new InitializeRunnable(canvasDAOBeanService)::run);
         long end = System.currentTimeMillis();
         logger.info("duration: {} seconds", (end - start) / 1000D);
         return null;
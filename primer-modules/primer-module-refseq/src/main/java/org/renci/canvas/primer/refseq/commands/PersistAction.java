@@ -1,41 +1,32 @@
 package org.renci.canvas.primer.refseq.commands;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.ObjectInputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
+
+import javax.sql.DataSource;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.karaf.shell.api.action.Action;
 import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Option;
 import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.osgi.framework.BundleContext;
 import org.renci.canvas.dao.CANVASDAOBeanService;
 import org.renci.canvas.dao.CANVASDAOException;
-import org.renci.canvas.dao.annotation.model.AnnotationGene;
-import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalId;
-import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalIdPK;
-import org.renci.canvas.dao.annotation.model.AnnotationGeneSynonym;
-import org.renci.canvas.dao.annotation.model.AnnotationGeneSynonymPK;
 import org.renci.canvas.dao.ref.model.GenomeRef;
 import org.renci.canvas.dao.ref.model.GenomeRefSeq;
 import org.renci.canvas.dao.refseq.model.CDSECNumber;
@@ -57,11 +48,21 @@ import org.renci.canvas.dao.refseq.model.TranscriptMapsExonsPK;
 import org.renci.canvas.dao.refseq.model.TranscriptRefSeqVersion;
 import org.renci.canvas.dao.refseq.model.TranscriptRefSeqVersionPK;
 import org.renci.canvas.primer.commons.FTPFactory;
+import org.renci.canvas.primer.commons.PrimerException;
 import org.renci.canvas.primer.commons.UpdateDiagnosticResultVersionCallable;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.renci.canvas.primer.commons.pipeline.Pipeline;
+import org.renci.canvas.primer.commons.pipeline.PipelineEmitter;
+import org.renci.gbff.GBFFFilter;
+import org.renci.gbff.GBFFManager;
+import org.renci.gbff.filter.GBFFAndFilter;
+import org.renci.gbff.filter.GBFFFeatureSourceOrganismNameFilter;
+import org.renci.gbff.filter.GBFFFeatureTypeNameFilter;
+import org.renci.gbff.filter.GBFFSequenceAccessionPrefixFilter;
+import org.renci.gbff.filter.GBFFSourceOrganismNameFilter;
 import org.renci.gbff.model.Sequence;
 import org.renci.gbff.model.TranslationException;
-import org.renci.gff3.GFF3Manager;
-import org.renci.gff3.model.GFF3Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -71,11 +72,33 @@ public class PersistAction implements Action {
 
     private static final Logger logger = LoggerFactory.getLogger(PersistAction.class);
 
-    private static final Pattern locationPattern = Pattern.compile("(?<start>\\d+)\\.+?(?<stop>\\d+)?");
+    private static final List<String> featureExclusionList = Arrays.asList("CDS", "gene", "STS", "variation", "exon", "source",
+            "precursor_RNA");
+
+    private static final GBFFManager gbffMgr = GBFFManager.getInstance();
+
+    private static final int PARSE_THREADS = 4;
+
+    private static final int RECORDS_PER_CHUNK = 250;
+
+    private static final int QUEUE_CAPACITY = 500;
 
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private BundleContext bundleContext;
+
+    @Reference
+    private PrimerJobService primerJobService;
+
+    @Option(name = "--dataSource", description = "CANVAS DataSource JNDI name", required = false, multiValued = false)
+    private String dataSource = BulkWriterFactory.CANVAS_DATA_SOURCE_NAME;
+
+    @Option(name = "--threads", description = "Number of persist workers, all transcripts of a gene go to the same one", required = false,
+            multiValued = false)
+    private Integer threads = Runtime.getRuntime().availableProcessors();
+
     public PersistAction() {
         super();
     }
@@ -84,144 +107,134 @@ public class PersistAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        Executors.newSingleThreadExecutor().execute(() -> {
+        primerJobService.submit("refseq:persist", dataSource, () -> {
             long start = System.currentTimeMillis();
 
-            try {
-
-                List<String> remoteFileNames = FTPFactory.ncbiListRemoteFiles("/refseq/release/release-catalog", "release");
-                if (CollectionUtils.isEmpty(remoteFileNames)) {
-                    logger.error("No remote files found to get version");
-                    return;
-                }
+            List<String> remoteFileNames = FTPFactory.ncbiListRemoteFiles("/refseq/release/release-catalog", "release");
+            if (CollectionUtils.isEmpty(remoteFileNames)) {
+                throw new PrimerException("No remote files found to get version");
+            }
 
-                Path alignmentPath = Paths.get(System.getProperty("karaf.data"), "refseq", "alignment");
-                File alignmentDir = alignmentPath.toFile();
-                List<File> alignmentFiles = Arrays.asList(alignmentDir.listFiles());
-
-                GFF3Manager gff3Mgr = GFF3Manager.getInstance();
-                Map<String, List<GFF3Record>> alignmentMap = new HashMap<>();
-                for (File alignmentFile : alignmentFiles) {
-                    logger.info("parsing alignment file: {}", alignmentFile.getName());
-                    List<GFF3Record> results = gff3Mgr.deserialize(alignmentFile);
-                    if (CollectionUtils.isNotEmpty(results)) {
-                        for (GFF3Record record : results) {
-                            alignmentMap.putIfAbsent(record.getSequenceId(), new ArrayList<>());
-                            alignmentMap.get(record.getSequenceId()).add(record);
-                        }
-                    }
-                }
+            Path alignmentPath = Paths.get(System.getProperty("karaf.data"), "refseq", "alignment");
+            File alignmentDir = alignmentPath.toFile();
+            List<File> alignmentFiles = Arrays.asList(alignmentDir.listFiles());
 
-                String first = remoteFileNames.get(0);
-                String refseqVersion = first.substring(7, first.indexOf("."));
-                logger.info("refseqVersion = {}", refseqVersion);
+            AlignmentIndex alignmentIndex = AlignmentIndex.build(alignmentFiles);
 
-                List<GroupingType> allGroupingTypes = canvasDAOBeanService.getGroupingTypeDAO().findAll();
+            String first = remoteFileNames.get(0);
+            String refseqVersion = first.substring(7, first.indexOf("."));
+            logger.info("refseqVersion = {}", refseqVersion);
 
-                GroupingType singleGroupingType = allGroupingTypes.stream().filter(a -> a.getId().equals("single")).findAny().get();
+            List<GroupingType> allGroupingTypes = canvasDAOBeanService.getGroupingTypeDAO().findAll();
 
-                Path outputPath = Paths.get(System.getProperty("karaf.data"), "refseq");
-                File refseqDir = outputPath.toFile();
+            GroupingType singleGroupingType = allGroupingTypes.stream().filter(a -> a.getId().equals("single")).findAny().get();
 
-                List<File> serializedSequenceFiles = Arrays.asList(refseqDir.listFiles());
+            Path outputPath = Paths.get(System.getProperty("karaf.data"), "refseq");
+            File refseqDir = outputPath.toFile();
 
-                logger.info("serializedSequenceFiles.size(): {}", serializedSequenceFiles.size());
+            File gbffDir = new File(refseqDir, "gbff");
+            List<File> gbffFiles = Arrays.asList(gbffDir.listFiles((dir, name) -> name.endsWith("rna.gbff.gz")));
+            logger.info("gbffFiles.size(): {}", gbffFiles.size());
 
-                for (File serializedSequenceFile : serializedSequenceFiles) {
+            File chunkDir = new File(refseqDir, "chunks");
+            GBFFFilter gbffFilter = createFilter();
+            DataSource canvasDataSource = BulkWriterFactory.lookupDataSource(bundleContext, dataSource);
+            RefSeqDictionaryResolver resolver = new RefSeqDictionaryResolver(canvasDataSource, canvasDAOBeanService, refseqVersion,
+                    featureExclusionList);
 
-                    List<Sequence> sequenceList = null;
+            // handed out in memory, the persist workers never ask the database for the next one
+            AtomicInteger mapCount = new AtomicInteger(canvasDAOBeanService.getTranscriptMapsDAO().findNextMapCount());
 
-                    try (FileInputStream fis = new FileInputStream(serializedSequenceFile);
-                            GZIPInputStream gzipis = new GZIPInputStream(fis, Double.valueOf(Math.pow(2, 16)).intValue());
-                            ObjectInputStream ois = new ObjectInputStream(gzipis)) {
-                        logger.info("deserializing: {}", serializedSequenceFile.getAbsolutePath());
-                        sequenceList = (List<Sequence>) ois.readObject();
-                    } catch (Exception e) {
-                        logger.error(e.getMessage(), e);
-                    }
+            Pipeline.<File> from("refseq", emitter -> gbffFiles.forEach(emitter::emit)).queueCapacity(QUEUE_CAPACITY)
+                    .flatMap("parse", Math.max(1, Math.min(PARSE_THREADS, gbffFiles.size())),
+                            (File gbffFile, PipelineEmitter<Sequence> emitter) -> parse(gbffFile, chunkDir, gbffFilter, resolver,
+                                    emitter))
+                    .partitionBy(PersistAction::getGeneName).sink("persist", threads, sequence -> {
 
-                    logger.info("sequenceList.size(): {}", sequenceList.size());
-
-                    List<String> featureExclusionList = Arrays.asList("CDS", "gene", "STS", "variation", "exon", "source", "precursor_RNA");
-
-                    for (Sequence sequence : sequenceList) {
-                        try {
-                            List<org.renci.gbff.model.Feature> features = sequence.getFeatures();
-                            List<org.renci.gbff.model.Feature> filteredFeatures = features.stream()
-                                    .filter(a -> !featureExclusionList.contains(a.getType())).collect(Collectors.toList());
-                            for (org.renci.gbff.model.Feature gbffFeature : filteredFeatures) {
-                                FeatureType featureType = canvasDAOBeanService.getFeatureTypeDAO().findById(gbffFeature.getType());
-                                if (featureType == null) {
-                                    canvasDAOBeanService.getFeatureTypeDAO().save(new FeatureType(gbffFeature.getType()));
-                                }
-                            }
-                        } catch (CANVASDAOException e) {
-                            logger.error(e.getMessage(), e);
-                        }
-                    }
+                        logger.info(sequence.toString());
 
-                    ExecutorService es = Executors.newFixedThreadPool(3);
-                    for (Sequence sequence : sequenceList) {
-                        es.submit(() -> {
+                        Transcript transcript = persistTranscript(refseqVersion, sequence);
+                        logger.info(transcript.toString());
 
-                            logger.info(sequence.toString());
-                            try {
+                        persistGenes(resolver, refseqVersion, transcript, singleGroupingType, sequence.getFeatures());
 
-                                Transcript transcript = persistTranscript(refseqVersion, sequence);
-                                logger.info(transcript.toString());
+                        persistCodingSequence(resolver, refseqVersion, transcript, singleGroupingType, sequence.getFeatures());
 
-                                persistGenes(refseqVersion, transcript, singleGroupingType, sequence.getFeatures());
+                        persistFeatures(resolver, refseqVersion, transcript, allGroupingTypes, sequence.getFeatures());
 
-                                persistCodingSequence(refseqVersion, transcript, singleGroupingType, sequence.getFeatures());
+                        persistMappings(refseqVersion, transcript, alignmentIndex, mapCount);
 
-                                persistFeatures(refseqVersion, transcript, allGroupingTypes, sequence.getFeatures());
+                    }).run();
 
-                                persistMappings(refseqVersion, transcript, alignmentMap);
+            UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
+            callable.setNote(String.format("Pulling latest RefSeq: %s", refseqVersion));
+            callable.call();
 
-                            } catch (Exception e) {
-                                logger.error(e.getMessage(), e);
-                            }
+            long end = System.currentTimeMillis();
+            logger.info("duration = {}", String.format("%d seconds", (end - start) / 1000));
 
-                        });
-                    }
-                    es.shutdown();
-                    if (!es.awaitTermination(1L, TimeUnit.DAYS)) {
-                        es.shutdownNow();
-                    }
+        });
 
-                    serializedSequenceFile.delete();
+        return null;
+    }
 
+    /**
+     * parses the gbff file a chunk of records at a time and emits the sequences that pass the filter, the feature types, genes and coding
+     * sequences of a chunk are resolved in bulk before any of its sequences is handed on
+     */
+    private void parse(File gbffFile, File chunkDir, GBFFFilter gbffFilter, RefSeqDictionaryResolver resolver,
+            PipelineEmitter<Sequence> emitter) throws Exception {
+        logger.debug("ENTERING parse(File, File, GBFFFilter, RefSeqDictionaryResolver, PipelineEmitter<Sequence>)");
+        logger.info("parsing GenBankFlatFile: {}", gbffFile.getAbsolutePath());
+
+        new GBFFChunkReader(gbffFile, chunkDir, RECORDS_PER_CHUNK).read(chunkFile -> {
+            // a chunk that can't be parsed or resolved is logged and skipped, the rest of the file is still read
+            List<Sequence> sequenceList;
+            try {
+                sequenceList = gbffMgr.deserialize(gbffFilter, false, chunkFile);
+                if (CollectionUtils.isEmpty(sequenceList)) {
+                    return;
                 }
-
-                UpdateDiagnosticResultVersionCallable callable = new UpdateDiagnosticResultVersionCallable(canvasDAOBeanService);
-                callable.setNote(String.format("Pulling latest RefSeq: %s", refseqVersion));
-                Executors.newSingleThreadExecutor().submit(callable).get();
-
+                resolver.resolve(sequenceList);
             } catch (Exception e) {
-                logger.error(e.getMessage(), e);
+                logger.error(String.format("%s: skipping %s: %s", gbffFile.getName(), chunkFile.getName(), e.getMessage()), e);
+                return;
+            }
+            for (Sequence sequence : sequenceList) {
+                emitter.emit(sequence);
             }
-            long end = System.currentTimeMillis();
-            logger.info("duration = {}", String.format("%d seconds", (end - start) / 1000));
-
         });
+    }
 
-        return null;
+    /**
+     * the partition key of a sequence, its accession if it has no gene
+     */
+    private static String getGeneName(Sequence sequence) {
+        return sequence.getFeatures().stream().filter(a -> "gene".equals(a.getType())).map(a -> a.getQualifiers().get("gene"))
+                .filter(a -> StringUtils.isNotEmpty(a)).findAny().orElse(sequence.getAccession());
     }
 
-    private void persistMappings(String refseqVersion, Transcript transcript, Map<String, List<GFF3Record>> map) throws CANVASDAOException {
-        logger.debug("ENTERING persistMappings(String, Transcript, List<File>)");
+    private GBFFFilter createFilter() {
+        List<GBFFFilter> filters = Arrays
+                .asList(new GBFFFilter[] { new GBFFSequenceAccessionPrefixFilter(Arrays.asList(new String[] { "NM_", "XM_" })),
+                        new GBFFSourceOrganismNameFilter("Homo sapiens"), new GBFFFeatureSourceOrganismNameFilter("Homo sapiens"),
+                        new GBFFFeatureTypeNameFilter("CDS"), new GBFFFeatureTypeNameFilter("source") });
+        return new GBFFAndFilter(filters);
+    }
+
+    private void persistMappings(String refseqVersion, Transcript transcript, AlignmentIndex alignmentIndex, AtomicInteger mapCount)
+            throws CANVASDAOException {
+        logger.debug("ENTERING persistMappings(String, Transcript, AlignmentIndex, AtomicInteger)");
 
-        Map<String, List<GFF3Record>> filteredMap = map.entrySet().stream()
-                .filter(a -> CollectionUtils.isNotEmpty(a.getValue().stream()
-                        .filter(b -> b.getAttributes().get("Target").startsWith(transcript.getId())).collect(Collectors.toSet())))
-                .collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue()));
+        Map<String, List<AlignmentRecord>> recordsBySequenceId = alignmentIndex.get(transcript.getId()).stream()
+                .collect(Collectors.groupingBy(AlignmentRecord::getSequenceId, LinkedHashMap::new, Collectors.toList()));
 
-        for (String sequenceId : filteredMap.keySet()) {
-            List<GFF3Record> records = map.get(sequenceId);
+        for (String sequenceId : recordsBySequenceId.keySet()) {
+            List<AlignmentRecord> records = recordsBySequenceId.get(sequenceId);
 
             String genomeReferenceAccession = sequenceId;
-            String strand = records.stream().map(a -> a.getStrand().getSymbol()).distinct().collect(Collectors.joining());
-            String identity = records.stream().map(a -> a.getAttributes().get("identity")).distinct().collect(Collectors.joining());
+            String strand = records.stream().map(a -> String.valueOf(a.getStrand())).distinct().collect(Collectors.joining());
+            Double identity = records.stream().map(AlignmentRecord::getIdentity).filter(a -> a != null).findFirst().orElse(null);
 
             if ("null".equals(genomeReferenceAccession)) {
                 logger.error("Could not get valid GenomeRefSeq for: {}", genomeReferenceAccession);
@@ -230,7 +243,7 @@ public class PersistAction implements Action {
 
             logger.info("genomeReferenceAccession: {}", genomeReferenceAccession);
 
-            if ("null".equals(strand)) {
+            if (strand.length() != 1) {
                 logger.error("Could not get valid strand for: {}", genomeReferenceAccession);
                 return;
             }
@@ -260,17 +273,20 @@ public class PersistAction implements Action {
             transcriptMaps.setGenomeRef(genomeRef);
             transcriptMaps.setGenomeRefSeq(genomeRefSeq);
             transcriptMaps.setStrand(strand);
-            transcriptMaps.setMapCount(canvasDAOBeanService.getTranscriptMapsDAO().findNextMapCount());
+            transcriptMaps.setMapCount(mapCount.getAndIncrement());
 
-            if (StringUtils.isNotEmpty(identity) && !"null".equals(identity)) {
-                transcriptMaps.setIdentity(Double.valueOf(identity) * 100D);
-            } else {
-                identity = records.stream().map(a -> a.getAttributes().get("pct_identity_gap")).distinct().collect(Collectors.joining());
-                transcriptMaps.setIdentity(Double.valueOf(identity));
+            transcriptMaps.setIdentity(identity);
+
+            List<int[]> recordBlocks = new ArrayList<>(records.size());
+            int exonCount = 0;
+            for (AlignmentRecord record : records) {
+                int[] blocks = toBlocks(record);
+                recordBlocks.add(blocks);
+                exonCount += blocks.length / 4;
             }
 
             transcriptMaps.setScore(transcriptMaps.getIdentity());
-            transcriptMaps.setExonCount(records.size());
+            transcriptMaps.setExonCount(exonCount);
 
             List<TranscriptMaps> foundTranscriptMaps = canvasDAOBeanService.getTranscriptMapsDAO().findByExample(transcriptMaps);
             if (CollectionUtils.isNotEmpty(foundTranscriptMaps)) {
@@ -281,39 +297,38 @@ public class PersistAction implements Action {
 
             List<Integer> contigCoordinates = new ArrayList<>();
 
-            int recordIdx = 1;
-            for (GFF3Record record : records) {
-
-                String gap = record.getAttributes().get("Gap");
+            int exonIdx = 1;
+            for (int r = 0; r < records.size(); r++) {
+                AlignmentRecord record = records.get(r);
+                int[] blocks = recordBlocks.get(r);
+                int blockCount = blocks.length / 4;
 
-                String target = record.getAttributes().get("Target");
-                String[] parts = target.split(" ");
+                for (int b = 0; b < blockCount; b++) {
+                    // blocks run up the contig, on the - strand the transcript runs the other way
+                    int offset = (record.getStrand() == '-' ? blockCount - 1 - b : b) * 4;
+                    try {
+                        TranscriptMapsExonsPK exonPK = new TranscriptMapsExonsPK(transcriptMaps.getId(), exonIdx++);
+                        TranscriptMapsExons exon = new TranscriptMapsExons(exonPK);
+                        exon.setTranscriptMaps(transcriptMaps);
 
-                String exonStart = parts[1];
-                String exonStop = parts[2];
+                        exon.setContigStart(blocks[offset]);
+                        contigCoordinates.add(blocks[offset]);
 
-                try {
-                    TranscriptMapsExonsPK exonPK = new TranscriptMapsExonsPK(transcriptMaps.getId(), recordIdx++);
-                    TranscriptMapsExons exon = new TranscriptMapsExons(exonPK);
-                    exon.setTranscriptMaps(transcriptMaps);
+                        exon.setContigEnd(blocks[offset + 1]);
+                        contigCoordinates.add(blocks[offset + 1]);
 
-                    exon.setContigStart(record.getStart());
-                    contigCoordinates.add(record.getStart());
+                        if (StringUtils.isNotEmpty(record.getGap())) {
+                            exon.setGap(record.getGap());
+                        }
 
-                    exon.setContigEnd(record.getEnd());
-                    contigCoordinates.add(record.getEnd());
+                        exon.setTranscriptStart(Math.min(blocks[offset + 2], blocks[offset + 3]));
+                        exon.setTranscriptEnd(Math.max(blocks[offset + 2], blocks[offset + 3]));
 
-                    if (StringUtils.isNotEmpty(gap)) {
-                        exon.setGap(gap);
+                        canvasDAOBeanService.getTranscriptMapsExonsDAO().save(exon);
+                        transcriptMaps.getExons().add(exon);
+                    } catch (Exception e) {
+                        logger.error(e.getMessage(), e);
                     }
-
-                    exon.setTranscriptStart(Integer.valueOf(exonStart));
-                    exon.setTranscriptEnd(Integer.valueOf(exonStop));
-
-                    canvasDAOBeanService.getTranscriptMapsExonsDAO().save(exon);
-                    transcriptMaps.getExons().add(exon);
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
                 }
 
             }
@@ -330,52 +345,62 @@ public class PersistAction implements Action {
 
     }
 
-    private void persistFeatures(String refseqVersion, Transcript transcript, List<GroupingType> allGroupingTypes,
-            List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
-        logger.debug("ENTERING persistFeatures(String, Transcript, List<GroupingType>, List<Feature>)");
+    /**
+     * one block (contigStart, contigEnd, transcriptStart, transcriptEnd) per aligned part of the record, the whole record if it has no
+     * gap or a gap that doesn't add up to the record's coordinates
+     */
+    private int[] toBlocks(AlignmentRecord record) {
+        if (StringUtils.isNotEmpty(record.getGap())) {
+            try {
+                AlignmentGap gap = AlignmentGap.parse(record.getGap());
+                if (gap.getContigLength() == record.getEnd() - record.getStart() + 1
+                        && gap.getTranscriptLength() == record.getTargetEnd() - record.getTargetStart() + 1) {
+                    return gap.toBlocks(record.getStart(), record.getTargetStart(), record.getTargetEnd(), record.getStrand());
+                }
+                logger.warn("gap does not match coordinates: {}", record.toString());
+            } catch (IllegalArgumentException e) {
+                logger.warn(e.getMessage());
+            }
+        }
+        return new int[] { record.getStart(), record.getEnd(), record.getTargetStart(), record.getTargetEnd() };
+    }
+
+    /**
+     * null, and logged, if the location can't be parsed
+     */
+    private GenBankLocation parseLocation(String location) {
+        try {
+            return GenBankLocation.parse(location);
+        } catch (IllegalArgumentException e) {
+            logger.warn(e.getMessage());
+            return null;
+        }
+    }
+
+    private void persistFeatures(RefSeqDictionaryResolver resolver, String refseqVersion, Transcript transcript,
+            List<GroupingType> allGroupingTypes, List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
+        logger.debug("ENTERING persistFeatures(RefSeqDictionaryResolver, String, Transcript, List<GroupingType>, List<Feature>)");
 
-        List<String> featureExclusionList = Arrays.asList("CDS", "gene", "STS", "variation", "exon", "source", "precursor_RNA");
         List<org.renci.gbff.model.Feature> filteredFeatures = features.stream().filter(a -> !featureExclusionList.contains(a.getType()))
                 .collect(Collectors.toList());
 
         for (org.renci.gbff.model.Feature gbffFeature : filteredFeatures) {
             logger.info(gbffFeature.toString());
 
-            FeatureType featureType = canvasDAOBeanService.getFeatureTypeDAO().findById(gbffFeature.getType());
+            FeatureType featureType = resolver.getFeatureType(gbffFeature.getType());
+            if (featureType == null) {
+                featureType = canvasDAOBeanService.getFeatureTypeDAO().findById(gbffFeature.getType());
+            }
 
             Map<String, String> qualifiers = gbffFeature.getQualifiers();
             String note = qualifiers.get("note");
-            String location = gbffFeature.getLocation();
-
-            List<Pair<String, String>> rangeList = new ArrayList<>();
-
-            GroupingType groupingType;
-            if (gbffFeature.getLocation().startsWith("join")) {
-                groupingType = allGroupingTypes.stream().filter(a -> a.getId().equals("join")).findAny().get();
-                Arrays.asList(location.substring(6, location.length() - 1).split(",")).forEach(a -> {
-                    Matcher m = locationPattern.matcher(a);
-                    m.find();
-                    if (m.matches()) {
-                        rangeList.add(Pair.of(m.group("start"), m.group("stop")));
-                    }
-                });
-            } else if (gbffFeature.getLocation().startsWith("order")) {
-                Arrays.asList(location.substring(7, location.length() - 1).split(",")).forEach(a -> {
-                    Matcher m = locationPattern.matcher(a);
-                    m.find();
-                    if (m.matches()) {
-                        rangeList.add(Pair.of(m.group("start"), m.group("stop")));
-                    }
-                });
-                groupingType = allGroupingTypes.stream().filter(a -> a.getId().equals("order")).findAny().get();
-            } else {
-                Matcher m = locationPattern.matcher(location);
-                m.find();
-                if (m.matches()) {
-                    rangeList.add(Pair.of(m.group("start"), m.group("stop")));
-                }
-                groupingType = allGroupingTypes.stream().filter(a -> a.getId().equals("single")).findAny().get();
+            GenBankLocation location = parseLocation(gbffFeature.getLocation());
+            if (location == null) {
+                continue;
             }
+
+            GroupingType groupingType = allGroupingTypes.stream()
+                    .filter(a -> a.getId().equals(location.getGrouping().getGroupingType())).findAny().get();
             logger.debug(groupingType.toString());
 
             RegionGroup regionGroup = new RegionGroup();
@@ -384,32 +409,10 @@ public class PersistAction implements Action {
             regionGroup.setId(canvasDAOBeanService.getRegionGroupDAO().save(regionGroup));
             logger.info(regionGroup.toString());
 
-            for (Pair<String, String> pair : rangeList) {
+            for (int i = 0; i < location.size(); i++) {
 
-                String startLocation = pair.getLeft();
-                String stopLocation = pair.getRight();
-
-                String startType = "exact";
-                String stopType = "exact";
-
-                if (pair.getLeft().startsWith("<")) {
-                    startType = "less-than";
-                    startLocation = startLocation.substring(1, startLocation.length());
-                } else if (pair.getLeft().startsWith(">")) {
-                    startType = "greater-than";
-                    startLocation = startLocation.substring(1, startLocation.length());
-                }
-
-                if (pair.getRight().startsWith("<")) {
-                    stopType = "less-than";
-                    stopLocation = stopLocation.substring(1, stopLocation.length());
-                } else if (pair.getRight().startsWith(">")) {
-                    stopType = "greater-than";
-                    stopLocation = stopLocation.substring(1, stopLocation.length());
-                }
-
-                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(Integer.valueOf(startLocation), Integer.valueOf(stopLocation),
-                        startType, stopType, regionGroup.getId());
+                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(location.getStart(i), location.getStop(i), location.getStartType(i),
+                        location.getStopType(i), regionGroup.getId());
 
                 RegionGroupRegion rgr = new RegionGroupRegion(rgrPK);
                 rgr.setRegionGroup(regionGroup);
@@ -428,9 +431,9 @@ public class PersistAction implements Action {
 
     }
 
-    private void persistCodingSequence(String refseqVersion, Transcript transcript, GroupingType singleGroupingType,
-            List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
-        logger.debug("ENTERING persistCodingSequence(String, Transcript, List<Feature>)");
+    private void persistCodingSequence(RefSeqDictionaryResolver resolver, String refseqVersion, Transcript transcript,
+            GroupingType singleGroupingType, List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
+        logger.debug("ENTERING persistCodingSequence(RefSeqDictionaryResolver, String, Transcript, GroupingType, List<Feature>)");
         Optional<org.renci.gbff.model.Feature> optionalCodingSequenceFeature = features.stream().filter(a -> "CDS".equals(a.getType()))
                 .findAny();
         if (optionalCodingSequenceFeature.isPresent()) {
@@ -449,42 +452,35 @@ public class PersistAction implements Action {
             String description = qualifiers.get("desc");
             String ecNumber = qualifiers.get("EC_number");
 
-            RefSeqCodingSequence refseqCodingSequence = new RefSeqCodingSequence(refseqVersion, proteinId, product,
-                    Integer.valueOf(codonStart), description, translation, note);
-
-            List<RefSeqCodingSequence> foundRefSeqCodingSequences = canvasDAOBeanService.getRefSeqCodingSequenceDAO()
-                    .findByExample(refseqCodingSequence);
-
-            if (CollectionUtils.isEmpty(foundRefSeqCodingSequences)) {
-                refseqCodingSequence.setId(canvasDAOBeanService.getRefSeqCodingSequenceDAO().save(refseqCodingSequence));
+            Integer refseqCodingSequenceId = resolver.getCodingSequenceId(proteinId);
+            RefSeqCodingSequence refseqCodingSequence = null;
+            if (refseqCodingSequenceId != null) {
+                refseqCodingSequence = canvasDAOBeanService.getRefSeqCodingSequenceDAO().findById(refseqCodingSequenceId);
             } else {
-                refseqCodingSequence = foundRefSeqCodingSequences.get(0);
+                // no protein_id to resolve it by
+                refseqCodingSequence = new RefSeqCodingSequence(refseqVersion, proteinId, product, Integer.valueOf(codonStart), description,
+                        translation, note);
+                List<RefSeqCodingSequence> foundRefSeqCodingSequences = canvasDAOBeanService.getRefSeqCodingSequenceDAO()
+                        .findByExample(refseqCodingSequence);
+                if (CollectionUtils.isEmpty(foundRefSeqCodingSequences)) {
+                    refseqCodingSequence.setId(canvasDAOBeanService.getRefSeqCodingSequenceDAO().save(refseqCodingSequence));
+                } else {
+                    refseqCodingSequence = foundRefSeqCodingSequences.get(0);
+                }
             }
             logger.info(refseqCodingSequence.toString());
 
-            String location = codingSequenceFeature.getLocation();
-            Integer start = null;
-            Integer stop = null;
-
-            Matcher m = locationPattern.matcher(location);
-            if (m.find()) {
-                String startValue = m.group("start");
-                start = Integer.valueOf(startValue);
-                stop = start;
-                String stopValue = m.group("stop");
-                if (StringUtils.isNotEmpty(stopValue)) {
-                    stop = Integer.valueOf(stopValue);
-                }
-            }
+            GenBankLocation location = parseLocation(codingSequenceFeature.getLocation());
 
-            if (start != null && stop != null) {
+            if (location != null) {
 
                 RegionGroup regionGroup = new RegionGroup();
                 regionGroup.setTranscript(transcript);
                 regionGroup.setGroupingType(singleGroupingType);
                 regionGroup.setId(canvasDAOBeanService.getRegionGroupDAO().save(regionGroup));
 
-                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(start, stop, "exact", "exact", regionGroup.getId());
+                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(location.getMin(), location.getMax(), location.getStartType(0),
+                        location.getStopType(location.size() - 1), regionGroup.getId());
                 RegionGroupRegion rgr = new RegionGroupRegion(rgrPK);
                 logger.info(rgr.toString());
                 rgr.setRegionGroup(regionGroup);
@@ -529,9 +525,9 @@ public class PersistAction implements Action {
         }
     }
 
-    private void persistGenes(String refseqVersion, Transcript transcript, GroupingType singleGroupingType,
-            List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
-        logger.debug("ENTERING persistCodingSequence(String, Transcript, GroupingType, List<Feature>)");
+    private void persistGenes(RefSeqDictionaryResolver resolver, String refseqVersion, Transcript transcript,
+            GroupingType singleGroupingType, List<org.renci.gbff.model.Feature> features) throws CANVASDAOException {
+        logger.debug("ENTERING persistGenes(RefSeqDictionaryResolver, String, Transcript, GroupingType, List<Feature>)");
 
         Optional<org.renci.gbff.model.Feature> optionalGeneFeature = features.stream().filter(a -> "gene".equals(a.getType())).findAny();
         if (optionalGeneFeature.isPresent()) {
@@ -542,35 +538,27 @@ public class PersistAction implements Action {
 
             String geneName = qualifiers.get("gene");
             String geneDesc = qualifiers.get("note");
-            String geneSynonyms = qualifiers.get("gene_synonym");
-
-            RefSeqGene refseqGene = new RefSeqGene(refseqVersion, geneName, geneDesc);
 
-            List<RefSeqGene> foundRefseqGenes = canvasDAOBeanService.getRefSeqGeneDAO().findByExample(refseqGene);
-            if (CollectionUtils.isEmpty(foundRefseqGenes)) {
-                refseqGene.setId(canvasDAOBeanService.getRefSeqGeneDAO().save(refseqGene));
+            // the gene, its AnnotationGene, synonyms and refseq external id were all written when the chunk was resolved
+            Integer refseqGeneId = resolver.getRefSeqGeneId(geneName);
+            RefSeqGene refseqGene = null;
+            if (refseqGeneId != null) {
+                refseqGene = canvasDAOBeanService.getRefSeqGeneDAO().findById(refseqGeneId);
             } else {
-                refseqGene = foundRefseqGenes.get(0);
+                // no gene name to resolve it by
+                refseqGene = new RefSeqGene(refseqVersion, geneName, geneDesc);
+                List<RefSeqGene> foundRefseqGenes = canvasDAOBeanService.getRefSeqGeneDAO().findByExample(refseqGene);
+                if (CollectionUtils.isEmpty(foundRefseqGenes)) {
+                    refseqGene.setId(canvasDAOBeanService.getRefSeqGeneDAO().save(refseqGene));
+                } else {
+                    refseqGene = foundRefseqGenes.get(0);
+                }
             }
             logger.info(refseqGene.toString());
 
-            String location = geneFeature.getLocation();
-            Integer start = null;
-            Integer stop = null;
-
-            Matcher m = locationPattern.matcher(location);
-            m.find();
-            if (m.matches()) {
-                String startValue = m.group("start");
-                start = Integer.valueOf(startValue);
-                stop = start;
-                String stopValue = m.group("stop");
-                if (StringUtils.isNotEmpty(stopValue)) {
-                    stop = Integer.valueOf(stopValue);
-                }
-            }
+            GenBankLocation location = parseLocation(geneFeature.getLocation());
 
-            if (start != null && stop != null) {
+            if (location != null) {
 
                 RegionGroup regionGroup = new RegionGroup();
                 regionGroup.setTranscript(transcript);
@@ -591,7 +579,8 @@ public class PersistAction implements Action {
                 transcript.setRegionGroups(regionGroups);
                 canvasDAOBeanService.getTranscriptDAO().save(transcript);
 
-                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(start, stop, "exact", "exact", regionGroup.getId());
+                RegionGroupRegionPK rgrPK = new RegionGroupRegionPK(location.getMin(), location.getMax(), location.getStartType(0),
+                        location.getStopType(location.size() - 1), regionGroup.getId());
 
                 RegionGroupRegion foundRGR = canvasDAOBeanService.getRegionGroupRegionDAO().findById(rgrPK);
                 if (foundRGR == null) {
@@ -607,76 +596,6 @@ public class PersistAction implements Action {
 
             }
 
-            AnnotationGene annotationGene = null;
-
-            List<AnnotationGene> foundAnnotationGenes = canvasDAOBeanService.getAnnotationGeneDAO().findByName(geneName);
-            if (CollectionUtils.isEmpty(foundAnnotationGenes)) {
-                annotationGene = new AnnotationGene(geneName, geneDesc);
-                annotationGene.setId(canvasDAOBeanService.getAnnotationGeneDAO().save(annotationGene));
-            } else {
-                annotationGene = foundAnnotationGenes.get(0);
-            }
-            logger.info(annotationGene.toString());
-
-            Set<AnnotationGeneExternalId> externalIdSet = new HashSet<>();
-
-            AnnotationGeneExternalIdPK annotationGeneExternalIdPK = new AnnotationGeneExternalIdPK(refseqGene.getId(),
-                    annotationGene.getId(), "refseq", refseqVersion);
-
-            AnnotationGeneExternalId foundAnnotationGeneExternalId = canvasDAOBeanService.getAnnotationGeneExternalIdDAO()
-                    .findById(annotationGeneExternalIdPK);
-
-            if (foundAnnotationGeneExternalId == null) {
-
-                AnnotationGeneExternalId annotationGeneExternalId = new AnnotationGeneExternalId(annotationGeneExternalIdPK);
-
-                annotationGeneExternalId.setGene(annotationGene);
-                logger.info(annotationGeneExternalId.toString());
-                canvasDAOBeanService.getAnnotationGeneExternalIdDAO().save(annotationGeneExternalId);
-                externalIdSet.add(annotationGeneExternalId);
-
-            } else {
-                externalIdSet.add(foundAnnotationGeneExternalId);
-            }
-
-            annotationGene.setExternals(externalIdSet);
-            canvasDAOBeanService.getAnnotationGeneDAO().save(annotationGene);
-
-            List<AnnotationGeneSynonym> annotationGeneSynonyms = canvasDAOBeanService.getAnnotationGeneSynonymDAO()
-                    .findByGeneId(annotationGene.getId());
-
-            Set<AnnotationGeneSynonym> annotationGeneSynonymSet = new HashSet<>(annotationGeneSynonyms);
-
-            List<String> synonymList = new ArrayList<>();
-            if (StringUtils.isNotEmpty(geneSynonyms)) {
-                if (geneSynonyms.contains(";")) {
-                    synonymList.addAll(Arrays.asList(geneSynonyms.split(";")));
-                } else {
-                    synonymList.add(geneSynonyms);
-                }
-            }
-
-            if (CollectionUtils.isNotEmpty(synonymList)) {
-                for (String synonym : synonymList) {
-                    AnnotationGeneSynonymPK annotationGeneSynonymPK = new AnnotationGeneSynonymPK(annotationGene.getId(), synonym);
-                    AnnotationGeneSynonym foundAnnotationGeneSynonym = canvasDAOBeanService.getAnnotationGeneSynonymDAO()
-                            .findById(annotationGeneSynonymPK);
-                    if (foundAnnotationGeneSynonym == null) {
-                        AnnotationGeneSynonym annotationGeneSynonym = new AnnotationGeneSynonym(annotationGeneSynonymPK);
-                        annotationGeneSynonym.setGene(annotationGene);
-                        annotationGeneSynonym.setId(canvasDAOBeanService.getAnnotationGeneSynonymDAO().save(annotationGeneSynonym));
-                        logger.info(annotationGeneSynonym.toString());
-                        annotationGeneSynonymSet.add(annotationGeneSynonym);
-                    } else {
-                        logger.info(foundAnnotationGeneSynonym.toString());
-                        annotationGeneSynonymSet.add(foundAnnotationGeneSynonym);
-                    }
-                }
-            }
-
-            annotationGene.setSynonyms(annotationGeneSynonymSet);
-            canvasDAOBeanService.getAnnotationGeneDAO().save(annotationGene);
-
         }
 
     }
@@ -714,4 +633,20 @@ public class PersistAction implements Action {
         return transcript;
     }
 
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(String dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
 }
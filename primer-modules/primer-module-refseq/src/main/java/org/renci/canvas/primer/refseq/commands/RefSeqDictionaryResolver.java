@@ -0,0 +1,367 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.renci.canvas.dao.CANVASDAOBeanService;
+import org.renci.canvas.dao.CANVASDAOException;
+import org.renci.canvas.dao.annotation.model.AnnotationGene;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalId;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneExternalIdPK;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneSynonym;
+import org.renci.canvas.dao.annotation.model.AnnotationGeneSynonymPK;
+import org.renci.canvas.dao.refseq.model.FeatureType;
+import org.renci.canvas.dao.refseq.model.RefSeqCodingSequence;
+import org.renci.canvas.dao.refseq.model.RefSeqGene;
+import org.renci.canvas.primer.commons.PrimerException;
+import org.renci.canvas.primer.commons.bulk.BulkWriter;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.bulk.EntityTableMapping;
+import org.renci.canvas.primer.commons.bulk.MergeStrategy;
+import org.renci.gbff.model.Feature;
+import org.renci.gbff.model.Sequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves the dictionary rows a chunk of sequences refers to (feature types, RefSeqGenes, RefSeqCodingSequences, AnnotationGenes with
+ * their synonyms and refseq external ids) before the sequences are persisted. Whatever the run hasn't seen yet is looked up with one
+ * IN (...) query per table and what is still missing is bulk inserted.
+ *
+ * Only the ids are kept for the run, the persist workers load the rows they attach locations to. Each key is claimed by the first chunk
+ * that needs it, a chunk that needs a key another chunk is resolving waits for that chunk instead of inserting the row twice, so chunks
+ * are resolved concurrently.
+ */
+public class RefSeqDictionaryResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefSeqDictionaryResolver.class);
+
+    private static final int IN_LIST_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    private final CANVASDAOBeanService canvasDAOBeanService;
+
+    private final String refseqVersion;
+
+    private final Collection<String> featureExclusionList;
+
+    private final Claims<FeatureType> featureTypes = new Claims<>();
+
+    private final Claims<Integer> refseqGeneIds = new Claims<>();
+
+    private final Claims<Integer> codingSequenceIds = new Claims<>();
+
+    public RefSeqDictionaryResolver(DataSource dataSource, CANVASDAOBeanService canvasDAOBeanService, String refseqVersion,
+            Collection<String> featureExclusionList) {
+        super();
+        this.dataSource = dataSource;
+        this.canvasDAOBeanService = canvasDAOBeanService;
+        this.refseqVersion = refseqVersion;
+        this.featureExclusionList = featureExclusionList;
+    }
+
+    public void resolve(List<Sequence> sequences) throws PrimerException {
+        logger.debug("ENTERING resolve(List<Sequence>)");
+
+        List<String> types = new ArrayList<>();
+        Map<String, Feature> geneFeatures = new LinkedHashMap<>();
+        Map<String, Feature> codingSequenceFeatures = new LinkedHashMap<>();
+
+        for (Sequence sequence : sequences) {
+            for (Feature feature : sequence.getFeatures()) {
+                if ("gene".equals(feature.getType())) {
+                    String geneName = feature.getQualifiers().get("gene");
+                    if (StringUtils.isNotEmpty(geneName)) {
+                        geneFeatures.putIfAbsent(geneName, feature);
+                    }
+                } else if ("CDS".equals(feature.getType())) {
+                    String proteinId = feature.getQualifiers().get("protein_id");
+                    if (StringUtils.isNotEmpty(proteinId)) {
+                        codingSequenceFeatures.putIfAbsent(proteinId, feature);
+                    }
+                } else if (!featureExclusionList.contains(feature.getType()) && !types.contains(feature.getType())) {
+                    types.add(feature.getType());
+                }
+            }
+        }
+
+        List<CompletableFuture<?>> others = new ArrayList<>();
+
+        List<String> claimedTypes = featureTypes.claim(types, others);
+        featureTypes.run(claimedTypes, () -> resolveFeatureTypes(claimedTypes));
+
+        Map<String, Feature> claimedGenes = new LinkedHashMap<>();
+        refseqGeneIds.claim(geneFeatures.keySet(), others).forEach(a -> claimedGenes.put(a, geneFeatures.get(a)));
+        refseqGeneIds.run(claimedGenes.keySet(), () -> resolveGenes(claimedGenes));
+
+        Map<String, Feature> claimedCodingSequences = new LinkedHashMap<>();
+        codingSequenceIds.claim(codingSequenceFeatures.keySet(), others)
+                .forEach(a -> claimedCodingSequences.put(a, codingSequenceFeatures.get(a)));
+        codingSequenceIds.run(claimedCodingSequences.keySet(), () -> resolveCodingSequences(claimedCodingSequences));
+
+        // keys claimed by other chunks, a failure there was logged by that chunk and leaves the key unresolved
+        for (CompletableFuture<?> other : others) {
+            try {
+                other.join();
+            } catch (CompletionException e) {
+                continue;
+            }
+        }
+
+        logger.debug("{} feature types, {} genes, {} coding sequences resolved", claimedTypes.size(), claimedGenes.size(),
+                claimedCodingSequences.size());
+    }
+
+    private void resolveFeatureTypes(List<String> types) throws PrimerException, CANVASDAOException {
+        if (types.isEmpty()) {
+            return;
+        }
+        List<FeatureType> rows = new ArrayList<>();
+        types.forEach(a -> rows.add(new FeatureType(a)));
+        write(FeatureType.class, rows, MergeStrategy.INSERT_MISSING);
+        for (String type : types) {
+            featureTypes.complete(type, canvasDAOBeanService.getFeatureTypeDAO().findById(type));
+        }
+    }
+
+    private void resolveGenes(Map<String, Feature> geneFeatures) throws PrimerException, SQLException {
+        if (geneFeatures.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> refseqGeneIdsByName = findIds(EntityTableMapping.of(RefSeqGene.class), "name", geneFeatures.keySet(),
+                "refseqVersion");
+        Map<String, Integer> annotationGeneIdsByName = findIds(EntityTableMapping.of(AnnotationGene.class), "preferredName",
+                geneFeatures.keySet(), null);
+
+        Map<String, RefSeqGene> missingRefSeqGenes = new LinkedHashMap<>();
+        Map<String, AnnotationGene> missingAnnotationGenes = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Feature> entry : geneFeatures.entrySet()) {
+            String geneName = entry.getKey();
+            String geneDesc = entry.getValue().getQualifiers().get("note");
+            if (!refseqGeneIdsByName.containsKey(geneName)) {
+                missingRefSeqGenes.put(geneName, new RefSeqGene(refseqVersion, geneName, geneDesc));
+            }
+            if (!annotationGeneIdsByName.containsKey(geneName)) {
+                missingAnnotationGenes.put(geneName, new AnnotationGene(geneName, geneDesc));
+            }
+        }
+
+        // ids come from the entity sequences as the rows are written
+        write(RefSeqGene.class, new ArrayList<>(missingRefSeqGenes.values()), MergeStrategy.APPEND);
+        write(AnnotationGene.class, new ArrayList<>(missingAnnotationGenes.values()), MergeStrategy.APPEND);
+        missingRefSeqGenes.forEach((k, v) -> refseqGeneIdsByName.put(k, v.getId()));
+        missingAnnotationGenes.forEach((k, v) -> annotationGeneIdsByName.put(k, v.getId()));
+
+        List<AnnotationGeneExternalId> externalIds = new ArrayList<>();
+        List<AnnotationGeneSynonym> synonyms = new ArrayList<>();
+
+        for (Map.Entry<String, Feature> entry : geneFeatures.entrySet()) {
+            Integer annotationGeneId = annotationGeneIdsByName.get(entry.getKey());
+            // only carries the id the rows are keyed by
+            AnnotationGene annotationGene = new AnnotationGene(entry.getKey(), null);
+            annotationGene.setId(annotationGeneId);
+
+            AnnotationGeneExternalId externalId = new AnnotationGeneExternalId(
+                    new AnnotationGeneExternalIdPK(refseqGeneIdsByName.get(entry.getKey()), annotationGeneId, "refseq", refseqVersion));
+            externalId.setGene(annotationGene);
+            externalIds.add(externalId);
+
+            String geneSynonyms = entry.getValue().getQualifiers().get("gene_synonym");
+            if (StringUtils.isNotEmpty(geneSynonyms)) {
+                for (String synonym : Arrays.asList(geneSynonyms.split(";"))) {
+                    AnnotationGeneSynonym annotationGeneSynonym = new AnnotationGeneSynonym(
+                            new AnnotationGeneSynonymPK(annotationGeneId, synonym));
+                    annotationGeneSynonym.setGene(annotationGene);
+                    synonyms.add(annotationGeneSynonym);
+                }
+            }
+        }
+
+        write(AnnotationGeneExternalId.class, externalIds, MergeStrategy.INSERT_MISSING);
+        write(AnnotationGeneSynonym.class, synonyms, MergeStrategy.INSERT_MISSING);
+
+        geneFeatures.keySet().forEach(a -> refseqGeneIds.complete(a, refseqGeneIdsByName.get(a)));
+    }
+
+    private void resolveCodingSequences(Map<String, Feature> codingSequenceFeatures) throws PrimerException, SQLException {
+        if (codingSequenceFeatures.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> ids = findIds(EntityTableMapping.of(RefSeqCodingSequence.class), "proteinId",
+                codingSequenceFeatures.keySet(), "refseqVersion");
+
+        Map<String, RefSeqCodingSequence> missing = new LinkedHashMap<>();
+        for (Map.Entry<String, Feature> entry : codingSequenceFeatures.entrySet()) {
+            if (ids.containsKey(entry.getKey())) {
+                continue;
+            }
+            Map<String, String> qualifiers = entry.getValue().getQualifiers();
+            try {
+                missing.put(entry.getKey(), new RefSeqCodingSequence(refseqVersion, entry.getKey(), qualifiers.get("product"),
+                        Integer.valueOf(qualifiers.get("codon_start")), qualifiers.get("desc"), qualifiers.get("translation"),
+                        qualifiers.get("note")));
+            } catch (NumberFormatException e) {
+                // left unresolved, only this CDS's sequence fails to persist
+                logger.warn("{}: invalid codon_start {}", entry.getKey(), qualifiers.get("codon_start"));
+            }
+        }
+
+        write(RefSeqCodingSequence.class, new ArrayList<>(missing.values()), MergeStrategy.APPEND);
+        missing.forEach((k, v) -> ids.put(k, v.getId()));
+
+        codingSequenceFeatures.keySet().forEach(a -> codingSequenceIds.complete(a, ids.get(a)));
+    }
+
+    /**
+     * key -> id for the rows whose keyField is one of keys (and, if versionField is given, of this refseq version)
+     */
+    private Map<String, Integer> findIds(EntityTableMapping<?> mapping, String keyField, Collection<String> keys, String versionField)
+            throws PrimerException, SQLException {
+        Map<String, Integer> ret = new HashMap<>();
+        String idColumn = mapping.getKeyColumnNames().get(0);
+        String keyColumn = column(mapping, keyField);
+        String versionColumn = versionField != null ? column(mapping, versionField) : null;
+
+        List<String> keyList = new ArrayList<>(keys);
+        try (Connection connection = dataSource.getConnection()) {
+            for (int i = 0; i < keyList.size(); i += IN_LIST_SIZE) {
+                List<String> part = keyList.subList(i, Math.min(keyList.size(), i + IN_LIST_SIZE));
+                String sql = String.format("select %s, %s from %s where %s in (%s)", idColumn, keyColumn, mapping.getQualifiedTableName(),
+                        keyColumn, String.join(", ", Collections.nCopies(part.size(), "?")));
+                if (versionColumn != null) {
+                    sql = String.format("%s and %s = ?", sql, versionColumn);
+                }
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    int idx = 1;
+                    for (String key : part) {
+                        ps.setString(idx++, key);
+                    }
+                    if (versionColumn != null) {
+                        ps.setString(idx, refseqVersion);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ret.putIfAbsent(rs.getString(2), rs.getInt(1));
+                        }
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    private String column(EntityTableMapping<?> mapping, String field) throws PrimerException {
+        String ret = mapping.getColumnName(field);
+        if (ret == null) {
+            throw new PrimerException(String.format("no column mapped for %s.%s", mapping.getEntityClass().getSimpleName(), field));
+        }
+        return ret;
+    }
+
+    private <T> void write(Class<T> entityClass, List<T> rows, MergeStrategy mergeStrategy) throws PrimerException {
+        if (CollectionUtils.isEmpty(rows)) {
+            return;
+        }
+        try (BulkWriter<T> writer = BulkWriterFactory.create(dataSource, entityClass, mergeStrategy)) {
+            writer.writeAll(rows);
+        }
+    }
+
+    /**
+     * null if the type hasn't been resolved
+     */
+    public FeatureType getFeatureType(String type) {
+        return featureTypes.get(type);
+    }
+
+    public Integer getRefSeqGeneId(String geneName) {
+        return refseqGeneIds.get(geneName);
+    }
+
+    public Integer getCodingSequenceId(String proteinId) {
+        return codingSequenceIds.get(proteinId);
+    }
+
+    @FunctionalInterface
+    private interface Resolution {
+
+        public void run() throws Exception;
+
+    }
+
+    /**
+     * resolved values by key, a key is claimed by the first caller and completed once its rows are written
+     */
+    private static class Claims<V> {
+
+        private final Map<String, CompletableFuture<V>> values = new ConcurrentHashMap<>();
+
+        /**
+         * returns the keys the caller has to resolve, the futures of keys claimed before are added to others
+         */
+        private List<String> claim(Collection<String> keys, List<CompletableFuture<?>> others) {
+            List<String> ret = new ArrayList<>();
+            for (String key : keys) {
+                CompletableFuture<V> future = new CompletableFuture<>();
+                CompletableFuture<V> existing = values.putIfAbsent(key, future);
+                if (existing == null) {
+                    ret.add(key);
+                } else if (!existing.isDone()) {
+                    others.add(existing);
+                }
+            }
+            return ret;
+        }
+
+        /**
+         * runs the resolution of the claimed keys, if it fails they are released for a later chunk to claim again
+         */
+        private void run(Collection<String> claimed, Resolution resolution) throws PrimerException {
+            try {
+                resolution.run();
+            } catch (Exception e) {
+                for (String key : claimed) {
+                    CompletableFuture<V> future = values.remove(key);
+                    if (future != null) {
+                        future.completeExceptionally(e);
+                    }
+                }
+                throw new PrimerException(e.getMessage(), e);
+            }
+            // never leave a waiting chunk blocked on a key the resolution skipped
+            claimed.forEach(a -> values.get(a).complete(null));
+        }
+
+        private void complete(String key, V value) {
+            values.get(key).complete(value);
+        }
+
+        private V get(String key) {
+            CompletableFuture<V> future = values.get(key);
+            return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AlignmentGapTest {
+
+    @Test
+    public void parse() {
+        // NM_173600.2
+        AlignmentGap gap = AlignmentGap.parse("M6352 I2 M5901");
+        assertEquals(3, gap.size());
+        assertEquals(CIGARType.MATCH, gap.getType(0));
+        assertEquals(6352, gap.getLength(0));
+        assertEquals(CIGARType.INSERT, gap.getType(1));
+        assertEquals(2, gap.getLength(1));
+        assertEquals(CIGARType.MATCH, gap.getType(2));
+        assertEquals(5901, gap.getLength(2));
+        assertEquals(12253, gap.getContigLength());
+        assertEquals(12255, gap.getTranscriptLength());
+        assertEquals("M6352 I2 M5901", gap.toString());
+    }
+
+    @Test
+    public void insertPositiveStrand() {
+        AlignmentGap gap = AlignmentGap.parse("M6352 I2 M5901");
+        int[] blocks = gap.toBlocks(1000, 1, 12255, '+');
+        assertArrayEquals(new int[] { 1000, 7351, 1, 6352, 7352, 13252, 6355, 12255 }, blocks);
+    }
+
+    @Test
+    public void insertNegativeStrand() {
+        AlignmentGap gap = AlignmentGap.parse("M6352 I2 M5901");
+        int[] blocks = gap.toBlocks(1000, 1, 12255, '-');
+        assertArrayEquals(new int[] { 1000, 7351, 12255, 5904, 7352, 13252, 5901, 1 }, blocks);
+    }
+
+    @Test
+    public void deletion() {
+        // NM_005578.4
+        AlignmentGap gap = AlignmentGap.parse("M9944 D1 M6377");
+        assertEquals(16322, gap.getContigLength());
+        assertEquals(16321, gap.getTranscriptLength());
+        int[] blocks = gap.toBlocks(1, 1, 16321, '+');
+        assertArrayEquals(new int[] { 1, 9944, 1, 9944, 9946, 16322, 9945, 16321 }, blocks);
+    }
+
+    @Test
+    public void blocksHaveEqualLengths() {
+        // NM_001278267.1 1209 1396
+        AlignmentGap gap = AlignmentGap.parse("M174 I3 M3 I3 M5");
+        assertEquals(3, gap.getMatchCount());
+        for (char strand : new char[] { '+', '-' }) {
+            int[] blocks = gap.toBlocks(500, 1209, 1396, strand);
+            for (int i = 0; i < blocks.length; i += 4) {
+                assertEquals(blocks[i + 1] - blocks[i], Math.abs(blocks[i + 3] - blocks[i + 2]));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid() {
+        AlignmentGap.parse("M12 X3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingLength() {
+        AlignmentGap.parse("M12 I");
+    }
+
+}
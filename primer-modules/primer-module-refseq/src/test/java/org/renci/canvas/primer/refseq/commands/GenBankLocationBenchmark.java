@@ -0,0 +1,85 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * GenBankLocation against the regex + substring/split path refseq:persist used before, run with main() from the test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class GenBankLocationBenchmark {
+
+    private static final Pattern locationPattern = Pattern.compile("(?<start>\\d+)\\.+?(?<stop>\\d+)?");
+
+    private static final String[] LOCATIONS = { "1..2369", "<1..>888", "467", "join(266..395,1067..1178,2160..2275,3075..>3190)",
+            "order(31..33,40..42,52..54,61..63)", "join(<12..78,134..202,300..>310,412..560,700..902,1003..1178)" };
+
+    @Benchmark
+    public void regex(Blackhole blackhole) {
+        for (String location : LOCATIONS) {
+            List<Pair<String, String>> rangeList = new ArrayList<>();
+            if (location.startsWith("join")) {
+                Arrays.asList(location.substring(6, location.length() - 1).split(",")).forEach(a -> {
+                    Matcher m = locationPattern.matcher(a);
+                    m.find();
+                    if (m.matches()) {
+                        rangeList.add(Pair.of(m.group("start"), m.group("stop")));
+                    }
+                });
+            } else if (location.startsWith("order")) {
+                Arrays.asList(location.substring(7, location.length() - 1).split(",")).forEach(a -> {
+                    Matcher m = locationPattern.matcher(a);
+                    m.find();
+                    if (m.matches()) {
+                        rangeList.add(Pair.of(m.group("start"), m.group("stop")));
+                    }
+                });
+            } else {
+                Matcher m = locationPattern.matcher(location);
+                m.find();
+                if (m.matches()) {
+                    rangeList.add(Pair.of(m.group("start"), m.group("stop")));
+                }
+            }
+            blackhole.consume(rangeList);
+        }
+    }
+
+    @Benchmark
+    public void lexer(Blackhole blackhole) {
+        for (String location : LOCATIONS) {
+            blackhole.consume(GenBankLocation.parse(location));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(GenBankLocationBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.renci.canvas.primer.refseq.commands;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GenBankLocationTest {
+
+    @Test
+    public void single() {
+        GenBankLocation location = GenBankLocation.parse("1..2369");
+        assertEquals(GenBankLocation.Grouping.SINGLE, location.getGrouping());
+        assertEquals(1, location.size());
+        assertEquals(1, location.getStart(0));
+        assertEquals(2369, location.getStop(0));
+        assertEquals(GenBankLocation.EXACT, location.getStartType(0));
+        assertEquals(GenBankLocation.EXACT, location.getStopType(0));
+    }
+
+    @Test
+    public void singleBase() {
+        GenBankLocation location = GenBankLocation.parse("467");
+        assertEquals(1, location.size());
+        assertEquals(467, location.getStart(0));
+        assertEquals(467, location.getStop(0));
+    }
+
+    @Test
+    public void fuzzy() {
+        GenBankLocation location = GenBankLocation.parse("<1..>888");
+        assertEquals(1, location.getStart(0));
+        assertEquals(888, location.getStop(0));
+        assertEquals(GenBankLocation.LESS_THAN, location.getStartType(0));
+        assertEquals(GenBankLocation.GREATER_THAN, location.getStopType(0));
+    }
+
+    @Test
+    public void join() {
+        GenBankLocation location = GenBankLocation.parse("join(<12..78,134..202, 300..>310)");
+        assertEquals(GenBankLocation.Grouping.JOIN, location.getGrouping());
+        assertEquals("join", location.getGrouping().getGroupingType());
+        assertEquals(3, location.size());
+        assertEquals(12, location.getStart(0));
+        assertEquals(GenBankLocation.LESS_THAN, location.getStartType(0));
+        assertEquals(134, location.getStart(1));
+        assertEquals(202, location.getStop(1));
+        assertEquals(310, location.getStop(2));
+        assertEquals(GenBankLocation.GREATER_THAN, location.getStopType(2));
+        assertEquals(12, location.getMin());
+        assertEquals(310, location.getMax());
+    }
+
+    @Test
+    public void order() {
+        GenBankLocation location = GenBankLocation.parse("order(1..10,20..30)");
+        assertEquals(GenBankLocation.Grouping.ORDER, location.getGrouping());
+        assertEquals(2, location.size());
+    }
+
+    @Test
+    public void complement() {
+        GenBankLocation location = GenBankLocation.parse("complement(join(2691..4571,4918..5163))");
+        assertEquals(GenBankLocation.Grouping.JOIN, location.getGrouping());
+        assertEquals(2, location.size());
+        assertEquals(2691, location.getMin());
+        assertEquals(5163, location.getMax());
+
+        location = GenBankLocation.parse("join(complement(4918..5163),complement(2691..4571))");
+        assertEquals(2, location.size());
+        assertEquals(4918, location.getStart(0));
+        assertEquals(2691, location.getStart(1));
+    }
+
+    @Test
+    public void site() {
+        GenBankLocation location = GenBankLocation.parse("123^124");
+        assertEquals(123, location.getStart(0));
+        assertEquals(124, location.getStop(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void remoteEntry() {
+        GenBankLocation.parse("join(1..100,J00194.1:100..202)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unbalanced() {
+        GenBankLocation.parse("join(1..100,200..300");
+    }
+
+}
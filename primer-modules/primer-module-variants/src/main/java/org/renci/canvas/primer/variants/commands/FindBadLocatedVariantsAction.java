@@ -18,6 +18,8 @@ import org.apache.karaf.shell.api.action.lifecycle.Reference;
 import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.renci.canvas.dao.CANVASDAOBeanService;
 import org.renci.canvas.dao.var.model.LocatedVariant;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,6 +32,9 @@ public class FindBadLocatedVariantsAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--genomeRefId", required = true, multiValued = false)
     private Integer genomeRefId;
 
@@ -44,142 +49,138 @@ public class FindBadLocatedVariantsAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        Executors.newSingleThreadExecutor().execute(() -> {
+        primerJobService.submit("variants:find-bad", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME, () -> {
             long start = System.currentTimeMillis();
-            try {
-
-                File outputDir = new File(outputDirectory);
-                outputDir.mkdirs();
-
-                File outputFile = new File(outputDir, String.format("badVariants-%s.txt", genomeRefId.toString()));
-
-                List<LocatedVariant> foundLocatedVariants = canvasDAOBeanService.getLocatedVariantDAO().findBad(genomeRefId);
-                logger.info("foundLocatedVariants.size(): {}", foundLocatedVariants.size());
-
-                ExecutorService es = Executors.newFixedThreadPool(3);
-
-                List<Future<String>> results = new ArrayList<>();
-
-                for (LocatedVariant locatedVariant : foundLocatedVariants) {
-
-                    Future<String> result = es.submit(() -> {
-
-                        try {
-                            Boolean foundInVariants = Boolean.FALSE;
-                            Boolean foundInBinResultsFinalDiagnostic = Boolean.FALSE;
-                            Boolean foundInClinVar = Boolean.FALSE;
-                            Boolean foundInGnomad = Boolean.FALSE;
-                            Boolean foundInHGMD = Boolean.FALSE;
-                            Boolean foundInExAC = Boolean.FALSE;
-                            Boolean foundInESP = Boolean.FALSE;
-                            Boolean foundInDBSNP = Boolean.FALSE;
-                            Boolean foundInOneKGenomeSNP = Boolean.FALSE;
-                            Boolean foundInOneKGenomeIndel = Boolean.FALSE;
-                            Boolean foundInAssembly = Boolean.FALSE;
-
-                            switch (genomeRefId) {
-                                case 2:
-                                    if (CollectionUtils.isNotEmpty(
-                                            canvasDAOBeanService.getVariants_61_2_DAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                        foundInVariants = Boolean.TRUE;
-                                    }
-                                    break;
-                                case 4:
-                                    if (CollectionUtils.isNotEmpty(
-                                            canvasDAOBeanService.getVariants_80_4_DAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                        foundInVariants = Boolean.TRUE;
-                                    }
-                                    break;
-
-                            }
-
-                            if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getBinResultsFinalDiagnosticDAO()
-                                    .findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInGnomad = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getReferenceClinicalAssertionDAO()
-                                    .findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInClinVar = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(
-                                    canvasDAOBeanService.getGnomADVariantFrequencyDAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInGnomad = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(
-                                    canvasDAOBeanService.getHGMDLocatedVariantDAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInHGMD = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(
-                                    canvasDAOBeanService.getExACVariantFrequencyDAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInExAC = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getESPSNPFrequencyPopulationDAO()
-                                    .findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInESP = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(
-                                    canvasDAOBeanService.getSNPMappingAggDAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInDBSNP = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getOneKGenomesSNPFrequencyPopulationDAO()
-                                    .findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInOneKGenomeSNP = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getOneKGenomesIndelFrequencyDAO()
-                                    .findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInOneKGenomeIndel = Boolean.TRUE;
-                            }
-
-                            if (CollectionUtils.isNotEmpty(
-                                    canvasDAOBeanService.getAssemblyLocatedVariantDAO().findByLocatedVariantId(locatedVariant.getId()))) {
-                                foundInAssembly = Boolean.TRUE;
-                            }
-
-                            return String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s", locatedVariant.toString(),
-                                    foundInVariants, foundInBinResultsFinalDiagnostic, foundInClinVar, foundInGnomad, foundInHGMD,
-                                    foundInExAC, foundInESP, foundInDBSNP, foundInOneKGenomeSNP, foundInOneKGenomeIndel, foundInAssembly);
-                        } catch (Exception e) {
-                            logger.error(e.getMessage(), e);
+
+            File outputDir = new File(outputDirectory);
+            outputDir.mkdirs();
+
+            File outputFile = new File(outputDir, String.format("badVariants-%s.txt", genomeRefId.toString()));
+
+            List<LocatedVariant> foundLocatedVariants = canvasDAOBeanService.getLocatedVariantDAO().findBad(genomeRefId);
+            logger.info("foundLocatedVariants.size(): {}", foundLocatedVariants.size());
+
+            ExecutorService es = Executors.newFixedThreadPool(3);
+
+            List<Future<String>> results = new ArrayList<>();
+
+            for (LocatedVariant locatedVariant : foundLocatedVariants) {
+
+                Future<String> result = es.submit(() -> {
+
+                    try {
+                        Boolean foundInVariants = Boolean.FALSE;
+                        Boolean foundInBinResultsFinalDiagnostic = Boolean.FALSE;
+                        Boolean foundInClinVar = Boolean.FALSE;
+                        Boolean foundInGnomad = Boolean.FALSE;
+                        Boolean foundInHGMD = Boolean.FALSE;
+                        Boolean foundInExAC = Boolean.FALSE;
+                        Boolean foundInESP = Boolean.FALSE;
+                        Boolean foundInDBSNP = Boolean.FALSE;
+                        Boolean foundInOneKGenomeSNP = Boolean.FALSE;
+                        Boolean foundInOneKGenomeIndel = Boolean.FALSE;
+                        Boolean foundInAssembly = Boolean.FALSE;
+
+                        switch (genomeRefId) {
+                            case 2:
+                                if (CollectionUtils.isNotEmpty(
+                                        canvasDAOBeanService.getVariants_61_2_DAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                                    foundInVariants = Boolean.TRUE;
+                                }
+                                break;
+                            case 4:
+                                if (CollectionUtils.isNotEmpty(
+                                        canvasDAOBeanService.getVariants_80_4_DAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                                    foundInVariants = Boolean.TRUE;
+                                }
+                                break;
+
                         }
-                        return "";
-                    });
 
-                    results.add(result);
+                        if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getBinResultsFinalDiagnosticDAO()
+                                .findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInGnomad = Boolean.TRUE;
+                        }
 
-                }
+                        if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getReferenceClinicalAssertionDAO()
+                                .findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInClinVar = Boolean.TRUE;
+                        }
 
-                try (FileWriter fw = new FileWriter(outputFile); BufferedWriter bw = new BufferedWriter(fw)) {
+                        if (CollectionUtils.isNotEmpty(
+                                canvasDAOBeanService.getGnomADVariantFrequencyDAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInGnomad = Boolean.TRUE;
+                        }
 
-                    String header = String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s", "LocatedVariant",
-                            String.format("Variants_?_%s", genomeRefId.toString()), "BinResultsFinalDiagnostic", "ClinVar", "Gnomad",
-                            "HGMD", "ExAC", "ESP", "dbSNP", "OneKGenomeSNP", "OneKGenomeIndel", "Assembly");
+                        if (CollectionUtils.isNotEmpty(
+                                canvasDAOBeanService.getHGMDLocatedVariantDAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInHGMD = Boolean.TRUE;
+                        }
 
-                    bw.write(header);
-                    bw.newLine();
-                    bw.flush();
+                        if (CollectionUtils.isNotEmpty(
+                                canvasDAOBeanService.getExACVariantFrequencyDAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInExAC = Boolean.TRUE;
+                        }
+
+                        if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getESPSNPFrequencyPopulationDAO()
+                                .findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInESP = Boolean.TRUE;
+                        }
+
+                        if (CollectionUtils.isNotEmpty(
+                                canvasDAOBeanService.getSNPMappingAggDAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInDBSNP = Boolean.TRUE;
+                        }
 
-                    for (Future<String> result : results) {
-                        bw.write(result.get());
-                        bw.newLine();
-                        bw.flush();
+                        if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getOneKGenomesSNPFrequencyPopulationDAO()
+                                .findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInOneKGenomeSNP = Boolean.TRUE;
+                        }
+
+                        if (CollectionUtils.isNotEmpty(canvasDAOBeanService.getOneKGenomesIndelFrequencyDAO()
+                                .findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInOneKGenomeIndel = Boolean.TRUE;
+                        }
+
+                        if (CollectionUtils.isNotEmpty(
+                                canvasDAOBeanService.getAssemblyLocatedVariantDAO().findByLocatedVariantId(locatedVariant.getId()))) {
+                            foundInAssembly = Boolean.TRUE;
+                        }
+
+                        return String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s", locatedVariant.toString(),
+                                foundInVariants, foundInBinResultsFinalDiagnostic, foundInClinVar, foundInGnomad, foundInHGMD,
+                                foundInExAC, foundInESP, foundInDBSNP, foundInOneKGenomeSNP, foundInOneKGenomeIndel, foundInAssembly);
+                    } catch (Exception e) {
+                        logger.error(e.getMessage(), e);
                     }
+                    return "";
+                });
 
-                }
+                results.add(result);
+
+            }
 
-                es.shutdown();
-                if (!es.awaitTermination(1L, TimeUnit.DAYS)) {
-                    es.shutdownNow();
+            try (FileWriter fw = new FileWriter(outputFile); BufferedWriter bw = new BufferedWriter(fw)) {
+
+                String header = String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s\t%s", "LocatedVariant",
+                        String.format("Variants_?_%s", genomeRefId.toString()), "BinResultsFinalDiagnostic", "ClinVar", "Gnomad",
+                        "HGMD", "ExAC", "ESP", "dbSNP", "OneKGenomeSNP", "OneKGenomeIndel", "Assembly");
+
+                bw.write(header);
+                bw.newLine();
+                bw.flush();
+
+                for (Future<String> result : results) {
+                    bw.write(result.get());
+                    bw.newLine();
+                    bw.flush();
                 }
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
+
+            }
+
+            es.shutdown();
+            if (!es.awaitTermination(1L, TimeUnit.DAYS)) {
+                es.shutdownNow();
             }
             long end = System.currentTimeMillis();
             logger.info("duration = {}", String.format("%d seconds", (end - start) / 1000));
@@ -23,7 +23,10 @@ import org.apache.karaf.shell.api.action.lifecycle.Service;
 import org.renci.canvas.dao.CANVASDAOBeanService;
 import org.renci.canvas.dao.var.model.LocatedVariant;
 import org.renci.canvas.dao.var.model.VariantType;
-import org.renci.gerese4j.core.GeReSe4jBuild;
+import org.renci.canvas.primer.commons.bulk.BulkWriterFactory;
+import org.renci.canvas.primer.commons.job.PrimerJobService;
+import org.renci.canvas.primer.commons.reference.ReferenceBuild;
+import org.renci.canvas.primer.commons.reference.ReferenceSequenceSource;
 import org.renci.gerese4j.core.impl.GeReSe4jBuild_37_3;
 import org.renci.gerese4j.core.impl.GeReSe4jBuild_38_7;
 import org.slf4j.Logger;
@@ -38,6 +41,9 @@ public class FindLocatedVariantsNotInReferenceAction implements Action {
     @Reference
     private CANVASDAOBeanService canvasDAOBeanService;
 
+    @Reference
+    private PrimerJobService primerJobService;
+
     @Option(name = "--genomeRefId", required = true, multiValued = false)
     private Integer genomeRefId;
 
@@ -55,7 +61,9 @@ public class FindLocatedVariantsNotInReferenceAction implements Action {
     public Object execute() throws Exception {
         logger.debug("ENTERING execute()");
 
-        List<GeReSe4jBuild> gerese4jBuilds = Arrays.asList(GeReSe4jBuild_37_3.getInstance(), GeReSe4jBuild_38_7.getInstance());
+        List<ReferenceSequenceSource> referenceSources = Arrays.asList(
+                ReferenceSequenceSource.of(ReferenceBuild.GRCH37_P13, GeReSe4jBuild_37_3.getInstance()),
+                ReferenceSequenceSource.of(ReferenceBuild.GRCH38_P7, GeReSe4jBuild_38_7.getInstance()));
 
         VariantType vType = canvasDAOBeanService.getVariantTypeDAO().findById(variantType);
 
@@ -64,11 +72,7 @@ public class FindLocatedVariantsNotInReferenceAction implements Action {
 
         File output = new File(outputDir, String.format("badLocatedVariantCoordinates-%s.txt", genomeRefId.toString()));
 
-        for (GeReSe4jBuild build : gerese4jBuilds) {
-            build.init();
-        }
-
-        Executors.newSingleThreadExecutor().execute(() -> {
+        primerJobService.submit("variants:find-not-in-reference", BulkWriterFactory.CANVAS_DATA_SOURCE_NAME, () -> {
             long start = System.currentTimeMillis();
 
             try (FileWriter fw = new FileWriter(output); BufferedWriter bw = new BufferedWriter(fw)) {
@@ -109,16 +113,18 @@ public class FindLocatedVariantsNotInReferenceAction implements Action {
 
                             try {
 
-                                GeReSe4jBuild build = null;
+                                ReferenceSequenceSource referenceSource = null;
                                 if (locatedVariant.getGenomeRef().getName().startsWith("37")) {
-                                    build = gerese4jBuilds.get(0);
+                                    referenceSource = referenceSources.get(0);
                                 } else {
-                                    build = gerese4jBuilds.get(1);
+                                    referenceSource = referenceSources.get(1);
                                 }
 
-                                String refSeqValue = build.getRegion(locatedVariant.getGenomeRefSeq().getId(),
-                                        Range.between(locatedVariant.getPosition(), locatedVariant.getEndPosition()),
-                                        !vType.getId().equals("ins"), false);
+                                // an insertion has no reference bases between its flanking positions
+                                int regionStart = vType.getId().equals("ins") ? locatedVariant.getPosition() + 1
+                                        : locatedVariant.getPosition();
+                                String refSeqValue = referenceSource.getRegion(locatedVariant.getGenomeRefSeq().getId(),
+                                        Range.between(regionStart, locatedVariant.getEndPosition()));
 
                                 if (!refSeqValue.equals(locatedVariant.getRef())) {
 
@@ -233,8 +239,6 @@ public class FindLocatedVariantsNotInReferenceAction implements Action {
 
                 }
 
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
             }
             long end = System.currentTimeMillis();
             logger.info("duration = {}", String.format("%d seconds", (end - start) / 1000));